@@ -0,0 +1,74 @@
+package com.revature.benchmarks.jdbc;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * SyntheticDriver.java
+ * A JDBC driver for jdbc:synthetic: urls that hands out in-memory connections, so the query building
+ * and mapping benchmarks run through ConnectionFactory without a database
+ */
+public class SyntheticDriver implements Driver {
+    public static final String URL = "jdbc:synthetic:aftermath";
+
+    static {
+        try {
+            DriverManager.registerDriver(new SyntheticDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Makes sure the driver is registered before ConnectionFactory asks DriverManager for a connection
+     */
+    public static Properties credentials() {
+        Properties props = new Properties();
+        props.setProperty("url", URL);
+        props.setProperty("username", "bench");
+        props.setProperty("password", "bench");
+        props.setProperty("currentSchema", "public");
+        return props;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        return acceptsURL(url) ? SyntheticJdbc.connection() : null;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith("jdbc:synthetic:");
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
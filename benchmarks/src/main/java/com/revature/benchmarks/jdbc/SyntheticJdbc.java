@@ -0,0 +1,181 @@
+package com.revature.benchmarks.jdbc;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.TreeMap;
+
+/**
+ * SyntheticJdbc.java
+ * Proxy based, in-memory stand-ins for the JDBC interfaces. Prepared statements render their bind
+ * values inline from toString() the same way PgJDBC does, so they read like the statements the
+ * metrics record.
+ */
+public final class SyntheticJdbc {
+    private SyntheticJdbc() { }
+
+    public static Connection connection() {
+        boolean[] autoCommit = {true};
+
+        return (Connection) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return preparedStatement((String) args[0]);
+                        case "getAutoCommit":
+                            return autoCommit[0];
+                        case "setAutoCommit":
+                            autoCommit[0] = (Boolean) args[0];
+                            return null;
+                        case "isClosed":
+                        case "isReadOnly":
+                            return false;
+                        case "isValid":
+                            return true;
+                        case "toString":
+                            return "SyntheticConnection";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    public static PreparedStatement preparedStatement(String sql) {
+        TreeMap<Integer, Object> params = new TreeMap<>();
+
+        return (PreparedStatement) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        params.put((Integer) args[0], args[1]);
+                        return null;
+                    }
+
+                    switch (name) {
+                        case "toString":
+                            return render(sql, params);
+                        case "executeQuery":
+                            return resultSet(new String[0], 0);
+                        case "executeUpdate":
+                            return 1;
+                        case "executeBatch":
+                            return new int[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * @param labels column labels of the result set
+     * @param rows amount of rows; every int column holds the row number, every string column "value-n"
+     */
+    public static ResultSet resultSet(String[] labels, int rows) {
+        int[] cursor = {0};
+        String[] strings = new String[Math.min(rows, 1024)];
+
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = "value-" + i;
+        }
+
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] {ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return labels.length;
+                        case "getColumnLabel":
+                        case "getColumnName":
+                            return labels[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            return Types.VARCHAR;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+
+        return (ResultSet) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] <= rows;
+                        case "getMetaData":
+                            return meta;
+                        case "getInt":
+                        case "getLong":
+                            return method.getReturnType() == int.class ? cursor[0] : (Object) (long) cursor[0];
+                        case "getDouble":
+                            return cursor[0] * 1.5;
+                        case "getString":
+                        case "getObject":
+                            return strings[cursor[0] % strings.length];
+                        case "wasNull":
+                        case "isClosed":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static String render(String sql, TreeMap<Integer, Object> params) {
+        StringBuilder rendered = new StringBuilder(sql.length() + params.size() * 8);
+        int param = 1;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (c == '?' && params.containsKey(param)) {
+                Object value = params.get(param++);
+
+                if (value == null) {
+                    rendered.append("NULL");
+                } else if (value instanceof Number) {
+                    rendered.append(value);
+                } else {
+                    rendered.append('\'').append(String.valueOf(value).replace("'", "''")).append('\'');
+                }
+            } else {
+                param += c == '?' ? 1 : 0;
+                rendered.append(c);
+            }
+        }
+
+        return rendered.toString();
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        }
+
+        return null;
+    }
+}
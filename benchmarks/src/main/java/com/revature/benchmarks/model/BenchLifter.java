@@ -0,0 +1,77 @@
+package com.revature.benchmarks.model;
+
+import com.revature.annotations.Attr;
+import com.revature.annotations.FK;
+import com.revature.annotations.PK;
+import com.revature.annotations.Table;
+
+@Table(tableName = "bench_lifters")
+public class BenchLifter {
+    @PK(columnName = "lifter_id")
+    @Attr(columnName = "lifter_id")
+    private int id;
+
+    @Attr(columnName = "firstname")
+    private String firstName;
+
+    @Attr(columnName = "lastname")
+    private String lastName;
+
+    @Attr(columnName = "weight")
+    private double weight;
+
+    @Attr(columnName = "height")
+    private double height;
+
+    @Attr(columnName = "country_id")
+    @FK(columnName = "country_id")
+    private int countryId;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public void setHeight(double height) {
+        this.height = height;
+    }
+
+    public int getCountryId() {
+        return countryId;
+    }
+
+    public void setCountryId(int countryId) {
+        this.countryId = countryId;
+    }
+}
@@ -0,0 +1,273 @@
+package com.revature.benchmarks.model;
+
+import com.revature.annotations.Attr;
+import com.revature.annotations.PK;
+import com.revature.annotations.Table;
+
+@Table(tableName = "bench_wide_rows")
+public class WideRow {
+    @PK(columnName = "row_id")
+    @Attr(columnName = "row_id")
+    private int id;
+
+    @Attr(columnName = "int_1")
+    private int int1;
+
+    @Attr(columnName = "int_2")
+    private int int2;
+
+    @Attr(columnName = "int_3")
+    private int int3;
+
+    @Attr(columnName = "int_4")
+    private int int4;
+
+    @Attr(columnName = "int_5")
+    private int int5;
+
+    @Attr(columnName = "int_6")
+    private int int6;
+
+    @Attr(columnName = "int_7")
+    private int int7;
+
+    @Attr(columnName = "double_1")
+    private double double1;
+
+    @Attr(columnName = "double_2")
+    private double double2;
+
+    @Attr(columnName = "double_3")
+    private double double3;
+
+    @Attr(columnName = "double_4")
+    private double double4;
+
+    @Attr(columnName = "double_5")
+    private double double5;
+
+    @Attr(columnName = "double_6")
+    private double double6;
+
+    @Attr(columnName = "double_7")
+    private double double7;
+
+    @Attr(columnName = "double_8")
+    private double double8;
+
+    @Attr(columnName = "string_1")
+    private String string1;
+
+    @Attr(columnName = "string_2")
+    private String string2;
+
+    @Attr(columnName = "string_3")
+    private String string3;
+
+    @Attr(columnName = "string_4")
+    private String string4;
+
+    @Attr(columnName = "string_5")
+    private String string5;
+
+    @Attr(columnName = "string_6")
+    private String string6;
+
+    @Attr(columnName = "string_7")
+    private String string7;
+
+    @Attr(columnName = "string_8")
+    private String string8;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getInt1() {
+        return int1;
+    }
+
+    public void setInt1(int int1) {
+        this.int1 = int1;
+    }
+
+    public int getInt2() {
+        return int2;
+    }
+
+    public void setInt2(int int2) {
+        this.int2 = int2;
+    }
+
+    public int getInt3() {
+        return int3;
+    }
+
+    public void setInt3(int int3) {
+        this.int3 = int3;
+    }
+
+    public int getInt4() {
+        return int4;
+    }
+
+    public void setInt4(int int4) {
+        this.int4 = int4;
+    }
+
+    public int getInt5() {
+        return int5;
+    }
+
+    public void setInt5(int int5) {
+        this.int5 = int5;
+    }
+
+    public int getInt6() {
+        return int6;
+    }
+
+    public void setInt6(int int6) {
+        this.int6 = int6;
+    }
+
+    public int getInt7() {
+        return int7;
+    }
+
+    public void setInt7(int int7) {
+        this.int7 = int7;
+    }
+
+    public double getDouble1() {
+        return double1;
+    }
+
+    public void setDouble1(double double1) {
+        this.double1 = double1;
+    }
+
+    public double getDouble2() {
+        return double2;
+    }
+
+    public void setDouble2(double double2) {
+        this.double2 = double2;
+    }
+
+    public double getDouble3() {
+        return double3;
+    }
+
+    public void setDouble3(double double3) {
+        this.double3 = double3;
+    }
+
+    public double getDouble4() {
+        return double4;
+    }
+
+    public void setDouble4(double double4) {
+        this.double4 = double4;
+    }
+
+    public double getDouble5() {
+        return double5;
+    }
+
+    public void setDouble5(double double5) {
+        this.double5 = double5;
+    }
+
+    public double getDouble6() {
+        return double6;
+    }
+
+    public void setDouble6(double double6) {
+        this.double6 = double6;
+    }
+
+    public double getDouble7() {
+        return double7;
+    }
+
+    public void setDouble7(double double7) {
+        this.double7 = double7;
+    }
+
+    public double getDouble8() {
+        return double8;
+    }
+
+    public void setDouble8(double double8) {
+        this.double8 = double8;
+    }
+
+    public String getString1() {
+        return string1;
+    }
+
+    public void setString1(String string1) {
+        this.string1 = string1;
+    }
+
+    public String getString2() {
+        return string2;
+    }
+
+    public void setString2(String string2) {
+        this.string2 = string2;
+    }
+
+    public String getString3() {
+        return string3;
+    }
+
+    public void setString3(String string3) {
+        this.string3 = string3;
+    }
+
+    public String getString4() {
+        return string4;
+    }
+
+    public void setString4(String string4) {
+        this.string4 = string4;
+    }
+
+    public String getString5() {
+        return string5;
+    }
+
+    public void setString5(String string5) {
+        this.string5 = string5;
+    }
+
+    public String getString6() {
+        return string6;
+    }
+
+    public void setString6(String string6) {
+        this.string6 = string6;
+    }
+
+    public String getString7() {
+        return string7;
+    }
+
+    public void setString7(String string7) {
+        this.string7 = string7;
+    }
+
+    public String getString8() {
+        return string8;
+    }
+
+    public void setString8(String string8) {
+        this.string8 = string8;
+    }
+}
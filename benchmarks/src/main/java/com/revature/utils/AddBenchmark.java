@@ -0,0 +1,47 @@
+package com.revature.utils;
+
+import com.revature.benchmarks.jdbc.SyntheticDriver;
+import com.revature.benchmarks.model.BenchLifter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AddBenchmark.java
+ * Cost of building multi-row insert statements with add() and addValues()
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddBenchmark {
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    private CrudModel<BenchLifter> lifters;
+    private String[][] values;
+
+    @Setup
+    public void setUp() throws Exception {
+        ConnectionFactory.addCredentials(SyntheticDriver.credentials());
+        lifters = new CrudModel<>(BenchLifter.class);
+        values = new String[rows][];
+
+        for (int i = 0; i < rows; i++) {
+            values[i] = new String[] {"first" + i, "last" + i, String.valueOf(60 + i % 100), "175", String.valueOf(i % 5 + 1)};
+        }
+    }
+
+    @Benchmark
+    public String addValues() throws Exception {
+        lifters.add("firstname", "lastname", "weight", "height", "country_id");
+
+        for (String[] row : values) {
+            lifters.addValues(row);
+        }
+
+        return lifters.getPreparedStatement();
+    }
+}
@@ -0,0 +1,100 @@
+package com.revature.utils;
+
+import com.revature.benchmarks.model.BenchLifter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.revature.utils.Conditions.*;
+
+/**
+ * EndToEndBenchmark.java
+ * Grabs and inserts against a real, locally started database. Point the aftermath.properties system
+ * property at an application.properties file; the bench_lifters table is created and dropped by the benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+    private static final int SEEDED_ROWS = 10_000;
+
+    @Param({"1", "100"})
+    public int insertRows;
+
+    private CrudModel<BenchLifter> lifters;
+    private CrudModel<BenchLifter> filteredLifters;
+
+    @Setup
+    public void setUp() throws Exception {
+        String path = System.getProperty("aftermath.properties", "src/main/resources/application.properties");
+        Properties props = new Properties();
+        props.load(new FileReader(path));
+        ConnectionFactory.addCredentials(props);
+
+        Connection conn = ConnectionFactory.getInstance().getConnection();
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("drop table if exists bench_lifters");
+            st.execute("create table bench_lifters (lifter_id serial primary key, firstname varchar(50), "
+                    + "lastname varchar(50), weight double precision, height double precision, country_id int)");
+        }
+
+        lifters = new CrudModel<>(BenchLifter.class);
+
+        for (int batch = 0; batch < SEEDED_ROWS / 1000; batch++) {
+            lifters.add("firstname", "lastname", "weight", "height", "country_id");
+
+            for (int i = 0; i < 1000; i++) {
+                int row = batch * 1000 + i;
+                lifters.addValues("first" + row, "last" + row, String.valueOf(60 + row % 100), "175", String.valueOf(row % 5 + 1));
+            }
+
+            lifters.runAdd();
+        }
+    }
+
+    // a where clause can only be built once per CrudModel, so every invocation gets a fresh one
+    @Setup(Level.Invocation)
+    public void newFilteredModel() throws SQLException {
+        filteredLifters = new CrudModel<>(BenchLifter.class);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement st = ConnectionFactory.getInstance().getConnection().createStatement()) {
+            st.execute("drop table if exists bench_lifters");
+        }
+    }
+
+    @Benchmark
+    public ArrayList<BenchLifter> grabAll() {
+        return lifters.grab().runGrab();
+    }
+
+    @Benchmark
+    public ArrayList<BenchLifter> grabWhere() throws Exception {
+        return filteredLifters.grab()
+                .where(EQUALS, "country_id", "2")
+                .runGrab();
+    }
+
+    @Benchmark
+    public int insert() throws Exception {
+        lifters.add("firstname", "lastname", "weight", "height", "country_id");
+
+        for (int i = 0; i < insertRows; i++) {
+            lifters.addValues("bench", "insert", "80", "175", "1");
+        }
+
+        return lifters.runAdd();
+    }
+}
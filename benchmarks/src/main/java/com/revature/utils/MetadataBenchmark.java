@@ -0,0 +1,47 @@
+package com.revature.utils;
+
+import com.revature.benchmarks.jdbc.SyntheticDriver;
+import com.revature.benchmarks.model.BenchLifter;
+import com.revature.benchmarks.model.WideRow;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MetadataBenchmark.java
+ * Cost of scraping an entity's annotations and of constructing a CrudModel (which scrapes the
+ * entity once per operation it supports)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Setup
+    public void setUp() {
+        ConnectionFactory.addCredentials(SyntheticDriver.credentials());
+    }
+
+    @Benchmark
+    public ModelScraper scrapeNarrowEntity() {
+        ModelScraper scraper = new ModelScraper();
+        scraper.setTargetClass(BenchLifter.class);
+        return scraper;
+    }
+
+    @Benchmark
+    public ModelScraper scrapeWideEntity() {
+        ModelScraper scraper = new ModelScraper();
+        scraper.setTargetClass(WideRow.class);
+        return scraper;
+    }
+
+    @Benchmark
+    public CrudModel<BenchLifter> constructCrudModel() throws SQLException {
+        return new CrudModel<>(BenchLifter.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.revature.utils;
+
+import com.revature.benchmarks.jdbc.SyntheticDriver;
+import com.revature.benchmarks.jdbc.SyntheticJdbc;
+import com.revature.benchmarks.model.BenchLifter;
+import com.revature.benchmarks.model.WideRow;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSetParserBenchmark.java
+ * Cost of mapping synthetic result sets into models; narrow rows have 6 columns, wide rows have 24
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetParserBenchmark {
+    @Param({"narrow", "wide"})
+    public String width;
+
+    @Param({"1", "1000", "100000"})
+    public int rows;
+
+    private Callable<ArrayList<?>> mapping;
+
+    @Setup
+    public void setUp() throws Exception {
+        ConnectionFactory.addCredentials(SyntheticDriver.credentials());
+        mapping = "wide".equals(width) ? mappingOf(WideRow.class) : mappingOf(BenchLifter.class);
+    }
+
+    @Benchmark
+    public ArrayList<?> mapResultSet() throws Exception {
+        return mapping.call();
+    }
+
+    private <T> Callable<ArrayList<?>> mappingOf(Class<T> clas) throws Exception {
+        Grab<T> grab = new Grab<>(new CrudModel<>(clas));
+        grab.setAppliedFields(new ArrayList<>(grab.attrFields));
+
+        String[] labels = grab.attrFields.stream().map(AttrField::getColumnName).toArray(String[]::new);
+
+        return () -> new ResultSetParser<>(clas, grab).mapResultSet(SyntheticJdbc.resultSet(labels, rows));
+    }
+}
@@ -0,0 +1,62 @@
+package com.revature.utils;
+
+import com.revature.benchmarks.model.BenchLifter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SaveAllBenchmark.java
+ * Round trips of saveAll() and upsertAll() against an in-process H2 database, so the statements are
+ * actually prepared, bound, and executed without a database server
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveAllBenchmark {
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    private CrudModel<BenchLifter> lifters;
+    private ArrayList<BenchLifter> models;
+
+    @Setup
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        props.setProperty("username", "sa");
+        props.setProperty("password", "");
+        props.setProperty("currentSchema", "public");
+        ConnectionFactory.addCredentials(props);
+        SchemaGenerator.createSchema(ConnectionFactory.getInstance().getConnection(), true, BenchLifter.class);
+
+        lifters = new CrudModel<>(BenchLifter.class);
+        models = new ArrayList<>();
+
+        for (int i = 0; i < rows; i++) {
+            BenchLifter lifter = new BenchLifter();
+            lifter.setId(i + 1); // upsertAll() conflicts on it, saveAll() overwrites it with the generated key
+            lifter.setFirstName("first" + i);
+            lifter.setLastName("last" + i);
+            lifter.setWeight(60 + i % 100);
+            lifter.setHeight(175);
+            lifter.setCountryId(i % 5 + 1);
+            models.add(lifter);
+        }
+    }
+
+    @Benchmark
+    public int saveAll() throws Exception {
+        return lifters.saveAll(models);
+    }
+
+    @Benchmark
+    public UpsertResult upsertAll() throws Exception {
+        return lifters.upsertAll(models);
+    }
+}
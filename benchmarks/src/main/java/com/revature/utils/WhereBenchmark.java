@@ -0,0 +1,58 @@
+package com.revature.utils;
+
+import com.revature.benchmarks.jdbc.SyntheticDriver;
+import com.revature.benchmarks.model.BenchLifter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.revature.utils.Conditions.*;
+
+/**
+ * WhereBenchmark.java
+ * Cost of building select statements with where clauses of growing length
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WhereBenchmark {
+    private CrudModel<BenchLifter> lifters;
+
+    @Setup
+    public void setUp() {
+        ConnectionFactory.addCredentials(SyntheticDriver.credentials());
+    }
+
+    // a where clause can only be built once per CrudModel, so every invocation gets a fresh one
+    @Setup(Level.Invocation)
+    public void newModel() throws Exception {
+        lifters = new CrudModel<>(BenchLifter.class);
+    }
+
+    @Benchmark
+    public String grabWithoutWhere() throws Exception {
+        return lifters.grab("firstname", "lastname").getPreparedStatement();
+    }
+
+    @Benchmark
+    public String grabWithOneCondition() throws Exception {
+        return lifters.grab()
+                .where(EQUALS, "country_id", "2")
+                .getPreparedStatement();
+    }
+
+    @Benchmark
+    public String grabWithFiveConditions() throws Exception {
+        return lifters.grab()
+                .where(EQUALS, "country_id", "2")
+                .and(EQUALS, "firstname", "Tatiana")
+                .and(GT, "weight", "75.5")
+                .or(LTE, "height", "180")
+                .and()
+                .not(EQUALS, "lastname", "Kashirina")
+                .getPreparedStatement();
+    }
+}
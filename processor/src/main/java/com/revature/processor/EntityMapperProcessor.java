@@ -0,0 +1,240 @@
+package com.revature.processor;
+
+import com.revature.annotations.Attr;
+import com.revature.annotations.FK;
+import com.revature.annotations.PK;
+import com.revature.annotations.Table;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * EntityMapperProcessor.java
+ * Generates a reflection-free <Entity>Mapper for every top level class annotated with @Table.
+ * Add this module to the annotation processor path of the project that holds your entities.
+ */
+@SupportedAnnotationTypes("com.revature.annotations.Table")
+public class EntityMapperProcessor extends AbstractProcessor {
+    private static final String SUFFIX = "Mapper";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+
+            TypeElement entity = (TypeElement) element;
+
+            if (entity.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Aftermath only generates mappers for top level entities; "
+                                + entity.getQualifiedName() + " will be mapped through reflection", entity);
+                continue;
+            }
+
+            try {
+                List<MappedColumn> columns = scrapeColumns(entity);
+
+                if (columns != null) {
+                    write(entity, columns);
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Could not write the mapper of " + entity.getQualifiedName() + ": " + e.getMessage(), entity);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the mapped columns in field declaration order, or null if the entity can't be mapped
+     */
+    private List<MappedColumn> scrapeColumns(TypeElement entity) {
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(entity));
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(entity.getEnclosedElements());
+        boolean valid = constructors.isEmpty() || constructors.stream().anyMatch(c ->
+                c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC));
+
+        if (!valid || entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Aftermath entities need to be concrete classes with a public no-args constructor", entity);
+            return null;
+        }
+
+        ArrayList<MappedColumn> columns = new ArrayList<>();
+        LinkedHashSet<String> seen = new LinkedHashSet<>();
+        int pkIndex = -1;
+
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            PK pk = field.getAnnotation(PK.class);
+            FK fk = field.getAnnotation(FK.class);
+            Attr attr = field.getAnnotation(Attr.class);
+            String columnName = attr != null ? attr.columnName()
+                    : pk != null ? pk.columnName()
+                    : fk != null ? fk.columnName()
+                    : null;
+
+            if (columnName == null || !seen.add(columnName.toLowerCase())) {
+                continue;
+            }
+
+            MappedColumn column = new MappedColumn(columnName, field);
+
+            if (!hasMethod(methods, column.setter, 1) || !hasMethod(methods, column.getter, 0)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Aftermath needs a public "
+                        + column.getter + "() and " + column.setter + "() for the mapped field " + field, field);
+                valid = false;
+            }
+
+            if (pk != null) {
+                pkIndex = columns.size();
+            }
+
+            columns.add(column);
+        }
+
+        if (columns.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "No columns found in: " + entity.getQualifiedName(), entity);
+            return null;
+        }
+
+        if (pkIndex >= 0) {
+            columns.get(pkIndex).primaryKey = true;
+        }
+
+        return valid ? columns : null;
+    }
+
+    private static boolean hasMethod(List<ExecutableElement> methods, String name, int parameters) {
+        return methods.stream().anyMatch(method -> method.getSimpleName().contentEquals(name)
+                && method.getParameters().size() == parameters
+                && method.getModifiers().contains(Modifier.PUBLIC));
+    }
+
+    private void write(TypeElement entity, List<MappedColumn> columns) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String entityName = entity.getSimpleName().toString();
+        String mapperName = entityName + SUFFIX;
+        String tableName = entity.getAnnotation(Table.class).tableName();
+        int pkIndex = -1;
+
+        StringBuilder src = new StringBuilder();
+
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+
+        src.append("import com.revature.utils.EntityMapper;\n\n")
+                .append("import java.sql.PreparedStatement;\n")
+                .append("import java.sql.ResultSet;\n")
+                .append("import java.sql.SQLException;\n")
+                .append("import java.sql.Types;\n\n")
+                .append("/**\n * ").append(mapperName).append(".java\n")
+                .append(" * Generated by Aftermath's EntityMapperProcessor from ").append(entityName)
+                .append(". Do not edit.\n */\n")
+                .append("public final class ").append(mapperName).append(" implements EntityMapper<")
+                .append(entityName).append("> {\n")
+                .append("    private static final String[] COLUMNS = {");
+
+        for (int i = 0; i < columns.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append(literal(columns.get(i).name));
+
+            if (columns.get(i).primaryKey) {
+                pkIndex = i;
+            }
+        }
+
+        src.append("};\n\n")
+                .append("    @Override\n    public String tableName() {\n        return ")
+                .append(literal(tableName)).append(";\n    }\n\n")
+                .append("    @Override\n    public String[] columns() {\n        return COLUMNS.clone();\n    }\n\n")
+                .append("    @Override\n    public int primaryKeyIndex() {\n        return ").append(pkIndex)
+                .append(";\n    }\n\n")
+                .append("    @Override\n    public ").append(entityName).append(" newInstance() {\n        return new ")
+                .append(entityName).append("();\n    }\n\n");
+
+        src.append("    @Override\n    public ").append(entityName)
+                .append(" map(ResultSet rs, int[] columnIndexes) throws SQLException {\n        ")
+                .append(entityName).append(" entity = new ").append(entityName).append("();\n");
+
+        for (int i = 0; i < columns.size(); i++) {
+            src.append("\n        if (columnIndexes[").append(i).append("] > 0) {\n")
+                    .append(columns.get(i).readCode("columnIndexes[" + i + "]"))
+                    .append("        }\n");
+        }
+
+        src.append("\n        return entity;\n    }\n\n")
+                .append("    @Override\n    public void bind(PreparedStatement ps, int parameterIndex, ")
+                .append(entityName).append(" entity, int column) throws SQLException {\n")
+                .append("        switch (column) {\n");
+
+        for (int i = 0; i < columns.size(); i++) {
+            src.append("            case ").append(i).append(":\n")
+                    .append(columns.get(i).bindCode())
+                    .append("                return;\n");
+        }
+
+        src.append("            default:\n                throw new IndexOutOfBoundsException(\"No column \" + column);\n")
+                .append("        }\n    }\n\n")
+                .append("    @Override\n    public Object get(").append(entityName).append(" entity, int column) {\n")
+                .append("        switch (column) {\n");
+
+        for (int i = 0; i < columns.size(); i++) {
+            src.append("            case ").append(i).append(":\n                return entity.")
+                    .append(columns.get(i).getter).append("();\n");
+        }
+
+        src.append("            default:\n                throw new IndexOutOfBoundsException(\"No column \" + column);\n")
+                .append("        }\n    }\n\n")
+                .append("    @Override\n    public void set(").append(entityName)
+                .append(" entity, int column, Object value) {\n")
+                .append("        switch (column) {\n");
+
+        for (int i = 0; i < columns.size(); i++) {
+            src.append("            case ").append(i).append(":\n                entity.")
+                    .append(columns.get(i).setter).append("(").append(columns.get(i).convertCode("value"))
+                    .append(");\n                return;\n");
+        }
+
+        src.append("            default:\n                throw new IndexOutOfBoundsException(\"No column \" + column);\n")
+                .append("        }\n    }\n}\n");
+
+        String qualifiedName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, entity);
+
+        try (Writer writer = file.openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
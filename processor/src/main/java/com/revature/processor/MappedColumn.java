@@ -0,0 +1,172 @@
+package com.revature.processor;
+
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * MappedColumn.java
+ * A column of an entity and the code the generated mapper uses to read, bind, and convert it
+ */
+class MappedColumn {
+    final String name;
+    final String getter;
+    final String setter;
+    boolean primaryKey;
+
+    private final String type;
+    private final String accessor;   // suffix of the ResultSet/PreparedStatement methods, e.g. Int for getInt()
+    private final String sqlType;    // java.sql.Types constant used to bind nulls
+    private final boolean primitive;
+
+    MappedColumn(String name, VariableElement field) {
+        this.name = name;
+
+        String fieldName = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        TypeMirror mirror = field.asType();
+
+        this.primitive = mirror.getKind().isPrimitive();
+        this.type = primitive ? mirror.toString() : erasure(mirror.toString());
+        this.setter = "set" + capitalized;
+        this.getter = (mirror.getKind() == TypeKind.BOOLEAN ? "is" : "get") + capitalized;
+
+        switch (primitive ? boxed(type) : type) {
+            case "java.lang.Integer":
+                accessor = "Int";
+                sqlType = "INTEGER";
+                break;
+            case "java.lang.Long":
+                accessor = "Long";
+                sqlType = "BIGINT";
+                break;
+            case "java.lang.Double":
+                accessor = "Double";
+                sqlType = "DOUBLE";
+                break;
+            case "java.lang.Float":
+                accessor = "Float";
+                sqlType = "REAL";
+                break;
+            case "java.lang.Short":
+                accessor = "Short";
+                sqlType = "SMALLINT";
+                break;
+            case "java.lang.Byte":
+                accessor = "Byte";
+                sqlType = "TINYINT";
+                break;
+            case "java.lang.Boolean":
+                accessor = "Boolean";
+                sqlType = "BOOLEAN";
+                break;
+            case "java.lang.String":
+                accessor = "String";
+                sqlType = "VARCHAR";
+                break;
+            case "java.lang.Character":
+                // JDBC has no getChar(); a char is read and bound as a string of length one
+                accessor = "Character";
+                sqlType = "CHAR";
+                break;
+            case "java.math.BigDecimal":
+                accessor = "BigDecimal";
+                sqlType = "NUMERIC";
+                break;
+            default:
+                accessor = null;
+                sqlType = "OTHER";
+        }
+    }
+
+    String readCode(String index) {
+        String indent = "            ";
+
+        if (accessor == null) {
+            return indent + "entity." + setter + "(rs.getObject(" + index + ", " + type + ".class));\n";
+        }
+
+        if ("Character".equals(accessor)) {
+            return indent + "String value = rs.getString(" + index + ");\n"
+                    + indent + "entity." + setter + "(value == null || value.isEmpty() ? "
+                    + (primitive ? "'\\0'" : "null") + " : value.charAt(0));\n";
+        }
+
+        if (primitive || isReference()) {
+            return indent + "entity." + setter + "(rs.get" + accessor + "(" + index + "));\n";
+        }
+
+        // boxed numbers and booleans come back as 0/false for SQL nulls unless wasNull() is checked
+        return indent + type + " value = rs.get" + accessor + "(" + index + ");\n"
+                + indent + "entity." + setter + "(rs.wasNull() ? null : value);\n";
+    }
+
+    String bindCode() {
+        String indent = "                ";
+
+        if (accessor == null) {
+            return indent + "ps.setObject(parameterIndex, entity." + getter + "());\n";
+        }
+
+        boolean character = "Character".equals(accessor);
+        String bind = indent + "ps.set" + (character ? "String" : accessor) + "(parameterIndex, "
+                + (character ? "String.valueOf(entity." + getter + "())" : "entity." + getter + "()") + ");\n";
+
+        if (primitive) {
+            return bind;
+        }
+
+        return indent + "if (entity." + getter + "() == null) {\n"
+                + indent + "    ps.setNull(parameterIndex, Types." + sqlType + ");\n"
+                + indent + "} else {\n"
+                + "    " + bind
+                + indent + "}\n";
+    }
+
+    String convertCode(String value) {
+        if (accessor == null) {
+            return "(" + type + ") " + value;
+        }
+
+        switch (accessor) {
+            case "String":
+                return value + " == null ? null : " + value + ".toString()";
+            case "BigDecimal":
+                return value + " == null || " + value + " instanceof java.math.BigDecimal ? (java.math.BigDecimal) "
+                        + value + " : new java.math.BigDecimal(" + value + ".toString())";
+            case "Boolean":
+                return "(Boolean) " + value;
+            case "Character":
+                String character = value + " instanceof Character ? (Character) " + value + " : "
+                        + (primitive ? "" : "Character.valueOf(") + value + ".toString().charAt(0)" + (primitive ? "" : ")");
+                return value + " == null ? " + (primitive ? "'\\0'" : "null") + " : " + character;
+            default:
+                String number = "((Number) " + value + ")." + type(accessor) + "Value()";
+                return primitive ? number : value + " == null ? null : " + number;
+        }
+    }
+
+    private boolean isReference() {
+        return "String".equals(accessor) || "BigDecimal".equals(accessor);
+    }
+
+    private static String type(String accessor) {
+        return accessor.toLowerCase();
+    }
+
+    private static String boxed(String primitive) {
+        switch (primitive) {
+            case "int":
+                return "java.lang.Integer";
+            case "char":
+                return "java.lang.Character";
+            default:
+                return "java.lang." + Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+        }
+    }
+
+    private static String erasure(String type) {
+        int generic = type.indexOf('<');
+        return generic < 0 ? type : type.substring(0, generic);
+    }
+}
@@ -0,0 +1,217 @@
+package unitTests;
+
+import com.revature.annotations.Table;
+import com.revature.processor.EntityMapperProcessor;
+import com.revature.utils.EntityMapper;
+import com.revature.utils.EntityMappers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class EntityMapperProcessorTest {
+    private static final String GRADE = "package mocks;\n"
+            + "import com.revature.annotations.*;\n"
+            + "import java.math.BigDecimal;\n"
+            + "@Table(tableName = \"grades\")\n"
+            + "public class Grade {\n"
+            + "    @PK(columnName = \"grade_id\") private int gradeId;\n"
+            + "    @Attr(columnName = \"letter\") private char letter;\n"
+            + "    @Attr(columnName = \"modifier\") private Character modifier;\n"
+            + "    @Attr(columnName = \"student\") private String student;\n"
+            + "    @Attr(columnName = \"attempts\") private Integer attempts;\n"
+            + "    @Attr(columnName = \"score\") private BigDecimal score;\n"
+            + "    @Attr(columnName = \"passed\") private boolean passed;\n"
+            + "    public int getGradeId() { return gradeId; }\n"
+            + "    public void setGradeId(int gradeId) { this.gradeId = gradeId; }\n"
+            + "    public char getLetter() { return letter; }\n"
+            + "    public void setLetter(char letter) { this.letter = letter; }\n"
+            + "    public Character getModifier() { return modifier; }\n"
+            + "    public void setModifier(Character modifier) { this.modifier = modifier; }\n"
+            + "    public String getStudent() { return student; }\n"
+            + "    public void setStudent(String student) { this.student = student; }\n"
+            + "    public Integer getAttempts() { return attempts; }\n"
+            + "    public void setAttempts(Integer attempts) { this.attempts = attempts; }\n"
+            + "    public BigDecimal getScore() { return score; }\n"
+            + "    public void setScore(BigDecimal score) { this.score = score; }\n"
+            + "    public boolean isPassed() { return passed; }\n"
+            + "    public void setPassed(boolean passed) { this.passed = passed; }\n"
+            + "}\n";
+
+    private Path output;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        output = Files.createTempDirectory("aftermath-processor");
+        diagnostics = new DiagnosticCollector<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(output)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void processorShouldGenerateAMapperForTopLevelEntities() throws Exception {
+        assertTrue(errors(), compile("mocks.Grade", GRADE));
+        assertTrue(Files.exists(output.resolve("mocks/GradeMapper.java")));
+
+        EntityMapper<Object> mapper = load("mocks.GradeMapper");
+        Class<?> entity = mapper.newInstance().getClass();
+
+        assertEquals("grades", mapper.tableName());
+        assertSame(mapper.getClass(), EntityMappers.find(entity).getClass());
+        assertArrayEquals(new String[] {"grade_id", "letter", "modifier", "student", "attempts", "score", "passed"},
+                mapper.columns());
+        assertEquals(0, mapper.primaryKeyIndex());
+    }
+
+    @Test
+    public void processorShouldRejectEntitiesWithoutAccessors() {
+        String source = "package mocks;\n"
+                + "import com.revature.annotations.*;\n"
+                + "@Table(tableName = \"notes\")\n"
+                + "public class Note {\n"
+                + "    @PK(columnName = \"note_id\") private int noteId;\n"
+                + "    public int getNoteId() { return noteId; }\n"
+                + "}\n";
+
+        assertFalse(compile("mocks.Note", source));
+        assertTrue(errors(), errors().contains("Aftermath needs a public getNoteId() and setNoteId()"));
+    }
+
+    @Test
+    public void processorShouldWarnAboutNestedEntities() {
+        String source = "package mocks;\n"
+                + "import com.revature.annotations.*;\n"
+                + "public class Outer {\n"
+                + "    @Table(tableName = \"inners\")\n"
+                + "    public static class Inner {\n"
+                + "        @PK(columnName = \"inner_id\") private int innerId;\n"
+                + "        public int getInnerId() { return innerId; }\n"
+                + "        public void setInnerId(int innerId) { this.innerId = innerId; }\n"
+                + "    }\n"
+                + "}\n";
+
+        assertTrue(errors(), compile("mocks.Outer", source));
+        assertFalse(Files.exists(output.resolve("mocks/Outer$InnerMapper.java")));
+        assertTrue(diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.WARNING
+                && d.getMessage(null).contains("only generates mappers for top level entities")));
+    }
+
+    @Test
+    public void generatedMapperShouldRoundTripEveryColumnThroughTheDatabase() throws Exception {
+        assertTrue(errors(), compile("mocks.Grade", GRADE));
+        EntityMapper<Object> mapper = load("mocks.GradeMapper");
+
+        Object grade = mapper.newInstance();
+        mapper.set(grade, 0, 7L); // converted to the int of the field
+        mapper.set(grade, 1, "B");
+        mapper.set(grade, 2, '+');
+        mapper.set(grade, 3, "Ada");
+        mapper.set(grade, 4, null);
+        mapper.set(grade, 5, 91.5);
+        mapper.set(grade, 6, true);
+
+        Object copy;
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:")) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("create table grades (grade_id int primary key, letter char(1), modifier char(1), "
+                        + "student varchar(32), attempts int, score numeric(5, 2), passed boolean)");
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("insert into grades values (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int column = 0; column < mapper.columns().length; column++) {
+                    mapper.bind(ps, column + 1, grade, column);
+                }
+
+                ps.executeUpdate();
+            }
+
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("select * from grades")) {
+                assertTrue(rs.next());
+                copy = mapper.map(rs, new int[] {1, 2, 3, 4, 5, 6, 7});
+            }
+        }
+
+        assertEquals(7, mapper.get(copy, 0));
+        assertEquals('B', mapper.get(copy, 1));
+        assertEquals('+', mapper.get(copy, 2));
+        assertEquals("Ada", mapper.get(copy, 3));
+        assertNull(mapper.get(copy, 4));
+        assertEquals(0, new BigDecimal("91.5").compareTo((BigDecimal) mapper.get(copy, 5)));
+        assertEquals(true, mapper.get(copy, 6));
+    }
+
+    private boolean compile(String className, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null);
+        JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                Arrays.asList("-d", output.toString(), "-s", output.toString(), "-classpath", classpath()),
+                null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new EntityMapperProcessor()));
+
+        return task.call();
+    }
+
+    @SuppressWarnings("unchecked")
+    private EntityMapper<Object> load(String className) throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[] {output.toUri().toURL()}, getClass().getClassLoader());
+        return (EntityMapper<Object>) loader.loadClass(className).newInstance();
+    }
+
+    private String errors() {
+        return diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                .map(d -> d.getMessage(null))
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    // surefire may run the tests from a manifest-only jar, so the classpath is taken from the classes themselves
+    private static String classpath() {
+        return Stream.of(Table.class, EntityMapper.class)
+                .map(clas -> clas.getProtectionDomain().getCodeSource().getLocation().getPath())
+                .distinct()
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+}
@@ -0,0 +1,11 @@
+package com.revature.exceptions;
+
+/**
+ * Thrown when a snapshot file is corrupt, was written by another format version, or no longer matches
+ * the mapping of its entity
+ */
+public class InvalidSnapshotException extends RuntimeException {
+    public InvalidSnapshotException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.revature.exceptions;
+
+import java.util.List;
+
+public class OptimisticLockException extends RuntimeException {
+    private final List<Object> conflicts;
+
+    public OptimisticLockException(String message, List<Object> conflicts) {
+        super(message);
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * @return the entities whose rows were changed or removed by someone else since they were read;
+     * empty if the update wasn't made through entities
+     */
+    public List<Object> getConflicts() {
+        return conflicts;
+    }
+}
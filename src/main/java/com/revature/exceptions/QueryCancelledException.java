@@ -0,0 +1,10 @@
+package com.revature.exceptions;
+
+/**
+ * Thrown when a running statement is cancelled through its QueryHandle
+ */
+public class QueryCancelledException extends RuntimeException {
+    public QueryCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,10 @@
+package com.revature.exceptions;
+
+/**
+ * Thrown when a statement runs longer than its timeout; the database cancels it and the connection stays usable
+ */
+public class QueryTimeoutException extends RuntimeException {
+    public QueryTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
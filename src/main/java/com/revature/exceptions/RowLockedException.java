@@ -0,0 +1,10 @@
+package com.revature.exceptions;
+
+/**
+ * Thrown when a grab with noWait() runs into a row that another transaction has locked
+ */
+public class RowLockedException extends RuntimeException {
+    public RowLockedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package com.revature.exceptions;
+
+import java.util.List;
+
+public class SchemaValidationException extends RuntimeException {
+    private final List<String> problems;
+
+    public SchemaValidationException(List<String> problems) {
+        super("The entities don't match the database schema:\n  " + String.join("\n  ", problems));
+        this.problems = problems;
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+}
@@ -0,0 +1,5 @@
+package com.revature.metrics;
+
+public enum OperationType {
+    GRAB, ADD, CHANGE, REMOVE, UPSERT, NATIVE
+}
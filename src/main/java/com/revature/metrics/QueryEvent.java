@@ -0,0 +1,93 @@
+package com.revature.metrics;
+
+/**
+ * QueryEvent.java
+ * Timings and outcome of a single terminal operation (runGrab(), runAdd(), runChange(), runRemove())
+ */
+public class QueryEvent {
+    private final String table;
+    private final OperationType operation;
+    private final String statement;
+    private final long prepareNanos;
+    private final long executeNanos;
+    private final long mappingNanos;
+    private final int rows;
+    private final Throwable error;
+
+    public QueryEvent(String table, OperationType operation, String statement, long prepareNanos,
+                      long executeNanos, long mappingNanos, int rows, Throwable error) {
+        this.table = table;
+        this.operation = operation;
+        this.statement = statement;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.mappingNanos = mappingNanos;
+        this.rows = rows;
+        this.error = error;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public OperationType getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the statement as it was sent to the database
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /**
+     * @return time spent mapping the result set into models; always 0 for writes
+     */
+    public long getMappingNanos() {
+        return mappingNanos;
+    }
+
+    public long getTotalNanos() {
+        return prepareNanos + executeNanos + mappingNanos;
+    }
+
+    /**
+     * @return rows returned for grabs, rows affected for writes
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the exception the operation failed with, or null if it succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryEvent {" +
+                "table='" + table + '\'' +
+                ", operation=" + operation +
+                ", prepareNanos=" + prepareNanos +
+                ", executeNanos=" + executeNanos +
+                ", mappingNanos=" + mappingNanos +
+                ", rows=" + rows +
+                ", failed=" + isFailed() +
+                '}';
+    }
+}
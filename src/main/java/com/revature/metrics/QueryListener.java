@@ -0,0 +1,10 @@
+package com.revature.metrics;
+
+/**
+ * QueryListener.java
+ * SPI for bridging Aftermath's query metrics to another metrics backend. Listeners are called
+ * synchronously on the thread that ran the query, so they should hand the event off quickly.
+ */
+public interface QueryListener {
+    void onQuery(QueryEvent event);
+}
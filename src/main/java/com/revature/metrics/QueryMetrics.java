@@ -0,0 +1,156 @@
+package com.revature.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * QueryMetrics.java
+ * Registry of the statistics collected around every terminal operation. Statistics are tagged by
+ * @Table name and operation type, exposed as MBeans under com.revature.aftermath:type=QueryStats
+ * and forwarded to every registered QueryListener. Transactions are tracked separately, under
+ * com.revature.aftermath:type=TransactionStats.
+ */
+public class QueryMetrics {
+    private static final String JMX_DOMAIN = "com.revature.aftermath";
+
+    private static final ConcurrentHashMap<String, QueryStats> stats = new ConcurrentHashMap<>();
+    private static final CopyOnWriteArrayList<QueryListener> listeners = new CopyOnWriteArrayList<>();
+    private static final TransactionStats transactions = new TransactionStats();
+    private static volatile boolean transactionsRegistered;
+    private static volatile boolean enabled = true;
+    private static volatile boolean jmxEnabled = true;
+
+    private QueryMetrics() { }
+
+    public static void setEnabled(boolean enabled) {
+        QueryMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns the registration of new MBeans on or off; already registered MBeans stay registered
+     */
+    public static void setJmxEnabled(boolean jmxEnabled) {
+        QueryMetrics.jmxEnabled = jmxEnabled;
+    }
+
+    public static void addListener(QueryListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener can't be null");
+        }
+
+        listeners.add(listener);
+    }
+
+    public static void removeListener(QueryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return statistics for the table and operation, or null if no such query ran yet
+     */
+    public static QueryStats getStats(String table, OperationType operation) {
+        return stats.get(key(table, operation));
+    }
+
+    public static Collection<QueryStats> getAllStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    public static void record(QueryEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        stats.computeIfAbsent(key(event.getTable(), event.getOperation()),
+                k -> register(new QueryStats(event.getTable(), event.getOperation())))
+                .record(event);
+
+        for (QueryListener listener : listeners) {
+            try {
+                listener.onQuery(event);
+            } catch (RuntimeException e) {
+                // a broken listener shouldn't fail the query that was already run
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    public static TransactionStats getTransactionStats() {
+        return transactions;
+    }
+
+    /**
+     * @param durationNanos time from the start of the first attempt until the commit or final rollback
+     * @param attempts amount of times the transaction was run, 1 if it wasn't retried
+     * @param committed whether the transaction ended up committing
+     */
+    public static void recordTransaction(long durationNanos, int attempts, boolean committed) {
+        if (!enabled) {
+            return;
+        }
+
+        if (!transactionsRegistered) {
+            registerTransactions();
+        }
+
+        transactions.record(durationNanos, attempts, committed);
+    }
+
+    public static void reset() {
+        stats.values().forEach(QueryStats::reset);
+        transactions.reset();
+    }
+
+    private static synchronized void registerTransactions() {
+        if (transactionsRegistered || !jmxEnabled) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=TransactionStats");
+
+            if (!server.isRegistered(name)) {
+                server.registerMBean(transactions, name);
+            }
+        } catch (JMException e) {
+            System.out.println(e.getMessage());
+        }
+
+        transactionsRegistered = true;
+    }
+
+    private static QueryStats register(QueryStats queryStats) {
+        if (!jmxEnabled) {
+            return queryStats;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=QueryStats,table="
+                    + ObjectName.quote(queryStats.getTable()) + ",operation=" + queryStats.getOperation());
+
+            if (!server.isRegistered(name)) {
+                server.registerMBean(queryStats, name);
+            }
+        } catch (JMException e) {
+            System.out.println(e.getMessage());
+        }
+
+        return queryStats;
+    }
+
+    private static String key(String table, OperationType operation) {
+        return table + "#" + operation.name();
+    }
+}
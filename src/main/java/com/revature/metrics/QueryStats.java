@@ -0,0 +1,116 @@
+package com.revature.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryStats.java
+ * Statistics collected for one table and operation type
+ */
+public class QueryStats implements QueryStatsMBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String table;
+    private final OperationType operation;
+    private final LatencyHistogram prepare = new LatencyHistogram();
+    private final LatencyHistogram execute = new LatencyHistogram();
+    private final LatencyHistogram mapping = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    QueryStats(String table, OperationType operation) {
+        this.table = table;
+        this.operation = operation;
+    }
+
+    void record(QueryEvent event) {
+        prepare.record(event.getPrepareNanos());
+        execute.record(event.getExecuteNanos());
+        mapping.record(event.getMappingNanos());
+        rows.add(event.getRows());
+
+        if (event.isFailed()) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getPrepareHistogram() {
+        return prepare;
+    }
+
+    public LatencyHistogram getExecuteHistogram() {
+        return execute;
+    }
+
+    public LatencyHistogram getMappingHistogram() {
+        return mapping;
+    }
+
+    @Override
+    public String getTable() {
+        return table;
+    }
+
+    @Override
+    public String getOperation() {
+        return operation.name();
+    }
+
+    @Override
+    public long getCount() {
+        return execute.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanPrepareMillis() {
+        return prepare.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanExecuteMillis() {
+        return execute.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanMappingMillis() {
+        return mapping.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50ExecuteMillis() {
+        return execute.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP95ExecuteMillis() {
+        return execute.getPercentile(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99ExecuteMillis() {
+        return execute.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxExecuteMillis() {
+        return execute.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        prepare.reset();
+        execute.reset();
+        mapping.reset();
+        errors.reset();
+        rows.reset();
+    }
+}
@@ -0,0 +1,33 @@
+package com.revature.metrics;
+
+/**
+ * QueryStatsMBean.java
+ * JMX view of the statistics collected for one table and operation type
+ */
+public interface QueryStatsMBean {
+    String getTable();
+
+    String getOperation();
+
+    long getCount();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanPrepareMillis();
+
+    double getMeanExecuteMillis();
+
+    double getMeanMappingMillis();
+
+    double getP50ExecuteMillis();
+
+    double getP95ExecuteMillis();
+
+    double getP99ExecuteMillis();
+
+    double getMaxExecuteMillis();
+
+    void reset();
+}
@@ -0,0 +1,100 @@
+package com.revature.metrics;
+
+import java.util.List;
+
+/**
+ * SlowQuery.java
+ * A query that ran for longer than the slow query threshold
+ */
+public class SlowQuery {
+    private final long timestamp;
+    private final String table;
+    private final OperationType operation;
+    private final String normalizedStatement;
+    private final List<String> bindValues;
+    private final long durationNanos;
+    private final int rows;
+    private final String origin;
+    private volatile String plan;
+
+    SlowQuery(long timestamp, String table, OperationType operation, String normalizedStatement,
+              List<String> bindValues, long durationNanos, int rows, String origin) {
+        this.timestamp = timestamp;
+        this.table = table;
+        this.operation = operation;
+        this.normalizedStatement = normalizedStatement;
+        this.bindValues = bindValues;
+        this.durationNanos = durationNanos;
+        this.rows = rows;
+        this.origin = origin;
+    }
+
+    /**
+     * @return epoch milliseconds of when the query finished
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public OperationType getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the statement with every literal replaced by a ? placeholder
+     */
+    public String getNormalizedStatement() {
+        return normalizedStatement;
+    }
+
+    /**
+     * @return the literals taken out of the statement in order, or *** for each one if masked
+     */
+    public List<String> getBindValues() {
+        return bindValues;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the first application stack frame outside of Aftermath that ran the query
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return the EXPLAIN ANALYZE output if this query was sampled for a plan, with its literals masked if
+     * bind values are; null if it wasn't sampled or the plan is still being captured
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery {" +
+                "table='" + table + '\'' +
+                ", operation=" + operation +
+                ", durationMillis=" + durationNanos / 1_000_000.0 +
+                ", rows=" + rows +
+                ", statement='" + normalizedStatement + '\'' +
+                ", bindValues=" + bindValues +
+                ", origin='" + origin + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,219 @@
+package com.revature.metrics;
+
+import com.revature.utils.ConnectionFactory;
+import com.revature.utils.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SlowQueryLog.java
+ * A QueryListener that logs every query running for longer than a threshold and keeps the most recent
+ * ones in a bounded ring buffer. A sampled subset of slow grabs can have their plan captured with
+ * the EXPLAIN ANALYZE of the dialect; writes are never explained since ANALYZE would run them a second time,
+ * and neither are locking grabs, whose rows are still locked by the transaction that was slow.
+ * Plans are captured on a background thread, so the query that was slow isn't held up by running it
+ * again; while that thread is behind, further samples are dropped.
+ */
+public class SlowQueryLog implements QueryListener {
+    private static final Logger logger = Logger.getLogger("com.revature.aftermath.slowquery");
+
+    // quoted strings (with an optional ::type cast) and numbers that aren't a part of an identifier
+    private static final Pattern LITERAL = Pattern.compile(
+            "'(?:[^']|'')*'(?:::\\w+(?: precision| varying)?)?|(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    // quoted strings and the numbers compared against in the conditions of a plan
+    private static final Pattern PLAN_LITERAL = Pattern.compile(
+            "'(?:[^']|'')*'|(?<=[=<>] )-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern LOCKING_CLAUSE = Pattern.compile(
+            "\\bfor\\s+(?:no\\s+key\\s+)?(?:key\\s+)?(?:update|share)\\b|\\block\\s+in\\s+share\\s+mode\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final String MASK = "***";
+    private static final AtomicLong explainThreads = new AtomicLong();
+    private static final ThreadPoolExecutor explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16), task -> {
+                Thread thread = new Thread(task, "aftermath-explain-" + explainThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    private final long thresholdNanos;
+    private final AtomicReferenceArray<SlowQuery> ring;
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean maskBindValues;
+    private volatile double explainSampleRate;
+
+    /**
+     * @param threshold queries running for at least this long are logged
+     * @param unit unit of the threshold
+     * @param capacity amount of slow queries kept in memory
+     */
+    public SlowQueryLog(long threshold, TimeUnit unit, int capacity) {
+        if (threshold < 0 || capacity <= 0) {
+            throw new IllegalArgumentException("The slow query threshold can't be negative and the capacity has to be positive");
+        }
+
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Builds a slow query log from the slowQueryThresholdMillis, slowQueryCapacity, slowQueryMaskValues
+     * and slowQueryExplainRate properties
+     */
+    public static SlowQueryLog fromProperties(Properties props) {
+        SlowQueryLog log = new SlowQueryLog(
+                Long.parseLong(props.getProperty("slowQueryThresholdMillis", "500")), TimeUnit.MILLISECONDS,
+                Integer.parseInt(props.getProperty("slowQueryCapacity", "100")));
+        log.setMaskBindValues(Boolean.parseBoolean(props.getProperty("slowQueryMaskValues", "false")));
+        log.setExplainSampleRate(Double.parseDouble(props.getProperty("slowQueryExplainRate", "0")));
+
+        return log;
+    }
+
+    public void setMaskBindValues(boolean maskBindValues) {
+        this.maskBindValues = maskBindValues;
+    }
+
+    /**
+     * @param explainSampleRate fraction (0 to 1) of slow grabs that get their plan captured
+     */
+    public void setExplainSampleRate(double explainSampleRate) {
+        if (explainSampleRate < 0 || explainSampleRate > 1) {
+            throw new IllegalArgumentException("The explain sample rate has to be between 0 and 1");
+        }
+
+        this.explainSampleRate = explainSampleRate;
+    }
+
+    @Override
+    public void onQuery(QueryEvent event) {
+        long duration = event.getTotalNanos();
+
+        if (duration < thresholdNanos || event.getStatement() == null) {
+            return;
+        }
+
+        ArrayList<String> bindValues = new ArrayList<>();
+        String normalized = normalize(event.getStatement(), bindValues);
+
+        if (maskBindValues) {
+            Collections.fill(bindValues, MASK);
+        }
+
+        SlowQuery slowQuery = new SlowQuery(System.currentTimeMillis(), event.getTable(), event.getOperation(),
+                normalized, Collections.unmodifiableList(bindValues), duration, event.getRows(), findOrigin());
+
+        // ANALYZE runs on another connection, so it would wait for the locks of the slow query's transaction
+        if (event.getOperation() == OperationType.GRAB && !event.isFailed() && explainSampleRate > 0
+                && !LOCKING_CLAUSE.matcher(event.getStatement()).find()
+                && ThreadLocalRandom.current().nextDouble() < explainSampleRate) {
+            boolean mask = maskBindValues;
+            explainer.execute(() -> {
+                String plan = explain(event.getStatement());
+                slowQuery.setPlan(mask ? PLAN_LITERAL.matcher(plan).replaceAll(MASK) : plan);
+            });
+        }
+
+        ring.set((int) (written.getAndIncrement() % ring.length()), slowQuery);
+        logger.warning("Slow query: " + slowQuery);
+    }
+
+    /**
+     * @return the slow queries still in the ring buffer, most recent first
+     */
+    public List<SlowQuery> getRecent() {
+        ArrayList<SlowQuery> recent = new ArrayList<>();
+        long end = written.get();
+        long start = Math.max(0, end - ring.length());
+
+        for (long i = end - 1; i >= start; i--) {
+            SlowQuery slowQuery = ring.get((int) (i % ring.length()));
+
+            if (slowQuery != null) {
+                recent.add(slowQuery);
+            }
+        }
+
+        return recent;
+    }
+
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++) {
+            ring.set(i, null);
+        }
+
+        written.set(0);
+    }
+
+    /**
+     * Replaces every literal in the statement with a ? placeholder
+     * @param statement statement with its bind values rendered inline
+     * @param bindValues list that the replaced literals are added to
+     * @return the normalized statement
+     */
+    public static String normalize(String statement, List<String> bindValues) {
+        Matcher matcher = LITERAL.matcher(statement.trim().replaceAll("\\s+", " "));
+        StringBuffer normalized = new StringBuffer();
+
+        while (matcher.find()) {
+            bindValues.add(matcher.group());
+            matcher.appendReplacement(normalized, "?");
+        }
+
+        matcher.appendTail(normalized);
+        return normalized.toString();
+    }
+
+    private static String findOrigin() {
+        for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+            String className = frame.getClassName();
+
+            if (!className.startsWith("com.revature.utils.") && !className.startsWith("com.revature.metrics.")
+                    && !className.startsWith("java.")
+                    && !className.startsWith("javax.") && !className.startsWith("sun.")
+                    && !className.startsWith("jdk.")) {
+                return frame.toString();
+            }
+        }
+
+        return "unknown";
+    }
+
+    private static String explain(String statement) {
+        ConnectionPool pool = ConnectionFactory.getInstance().getPool();
+        Connection conn = null;
+        StringBuilder plan = new StringBuilder();
+
+        try {
+            conn = pool.acquire();
+
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(ConnectionFactory.getInstance().getDialect().explain(statement))) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append(System.lineSeparator());
+                }
+            }
+        } catch (SQLException e) {
+            plan.append("Could not explain the statement: ").append(e.getMessage());
+        } finally {
+            pool.release(conn);
+        }
+
+        return plan.toString();
+    }
+}
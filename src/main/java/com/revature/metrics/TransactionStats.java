@@ -0,0 +1,82 @@
+package com.revature.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TransactionStats.java
+ * Statistics collected for transactions run through Aftermath.inTransaction(). The duration of a
+ * transaction covers every attempt, including the time spent backing off between retries.
+ */
+public class TransactionStats implements TransactionStatsMBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LatencyHistogram duration = new LatencyHistogram();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    TransactionStats() { }
+
+    void record(long durationNanos, int attempts, boolean committed) {
+        duration.record(durationNanos);
+        retries.add(attempts - 1);
+
+        if (committed) {
+            commits.increment();
+        } else {
+            rollbacks.increment();
+        }
+    }
+
+    public LatencyHistogram getDurationHistogram() {
+        return duration;
+    }
+
+    @Override
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    @Override
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public double getMeanDurationMillis() {
+        return duration.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50DurationMillis() {
+        return duration.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP95DurationMillis() {
+        return duration.getPercentile(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99DurationMillis() {
+        return duration.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxDurationMillis() {
+        return duration.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        duration.reset();
+        commits.reset();
+        rollbacks.reset();
+        retries.reset();
+    }
+}
@@ -0,0 +1,25 @@
+package com.revature.metrics;
+
+/**
+ * TransactionStatsMBean.java
+ * JMX view of the statistics collected for transactions run through Aftermath.inTransaction()
+ */
+public interface TransactionStatsMBean {
+    long getCommits();
+
+    long getRollbacks();
+
+    long getRetries();
+
+    double getMeanDurationMillis();
+
+    double getP50DurationMillis();
+
+    double getP95DurationMillis();
+
+    double getP99DurationMillis();
+
+    double getMaxDurationMillis();
+
+    void reset();
+}
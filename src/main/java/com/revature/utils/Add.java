@@ -4,21 +4,31 @@ import com.revature.annotations.Table;
 import com.revature.exceptions.BadMethodChainCallException;
 import com.revature.exceptions.InvalidInputException;
 import com.revature.exceptions.MismatchedInsertArgumentsException;
+import com.revature.metrics.OperationType;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 class Add<T> extends ModelScraper {
-    PreparedStatement ps;
-    private Connection conn;
+    static final int MAX_BATCH_SIZE = 1000;
+
+    SqlStatement ps;
     private CrudModel<T> ref;
     private ArrayList<AttrField> appliedAttrs;
+    private ArrayList<String[]> rows = new ArrayList<>(); // kept around to split the rows of sharded entities
 
     Add (CrudModel<T> ref) {
         setTargetClass(ref.clas);
-        this.conn = ref.conn;
         this.ref = ref;
         this.ps = ref.ps;
         appliedAttrs = new ArrayList<>();
@@ -31,31 +41,27 @@ class Add<T> extends ModelScraper {
 
         ps = null;
         appliedAttrs.clear();
+        rows.clear();
 
-        try {
-            Table table = ref.clas.getAnnotation(Table.class);
-            ArrayList<String> attrFilter = new ArrayList<>();
-            StringBuilder queryPlaceholders = new StringBuilder();
-            String tableName = table.tableName();
-            String delimiter;
-
-            for (String attrStr: attrs) {
-                attrFields.stream()
-                        .filter(attr -> attr.getColumnName().equals(attrStr))
-                        .forEach(attr -> { attrFilter.add(attrStr); appliedAttrs.add(attr); });
-            }
+        Table table = ref.clas.getAnnotation(Table.class);
+        ArrayList<String> attrFilter = new ArrayList<>();
+        StringBuilder queryPlaceholders = new StringBuilder();
+        String tableName = table.tableName();
+        String delimiter;
 
-            for (int i=0; i<attrFilter.size(); i++) {
-                delimiter = (i < attrFilter.size() - 1) ? ", " : "";
-                queryPlaceholders.append(attrFilter.get(i) + delimiter);
-            }
+        for (String attrStr: attrs) {
+            attrFields.stream()
+                    .filter(attr -> attr.getColumnName().equals(attrStr))
+                    .forEach(attr -> { attrFilter.add(attrStr); appliedAttrs.add(attr); });
+        }
 
-            ps = conn.prepareStatement("insert into " + tableName
-                    + " (" + queryPlaceholders.toString() + ") values ");
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        for (int i=0; i<attrFilter.size(); i++) {
+            delimiter = (i < attrFilter.size() - 1) ? ", " : "";
+            queryPlaceholders.append(attrFilter.get(i) + delimiter);
         }
 
+        ps = new SqlStatement("insert into " + tableName + " (" + queryPlaceholders.toString() + ") values ");
+
         return ref;
     }
 
@@ -64,11 +70,12 @@ class Add<T> extends ModelScraper {
             throw new MismatchedInsertArgumentsException();
         }
 
-        if (!ps.toString().startsWith("insert")) {
+        if (ps == null || !ps.startsWith("insert")) {
             throw new BadMethodChainCallException("addValues() needs to be called off of either an add() method"
                     + " or another addValues() method.");
         }
 
+        rows.add(values.clone());
         StringBuilder rowInsertPlaceholder = new StringBuilder();
         String delimiter;
 
@@ -77,36 +84,309 @@ class Add<T> extends ModelScraper {
             rowInsertPlaceholder.append("?" + delimiter);
         }
 
-        try {
-            String psStr = ps.toString();
-            ps = conn.prepareStatement(psStr + "(" + rowInsertPlaceholder.toString() + "), ");
-
-            for (int i=0; i<appliedAttrs.size(); i++) {
-                Class<?> type = appliedAttrs.get(i).getType();
+        ps.append("(" + rowInsertPlaceholder.toString() + "), ");
 
-                if (type == String.class) {
-                    ps.setString(i+1, values[i]);
-                } else if (type == int.class) {
-                    ps.setInt(i+1, Integer.parseInt(values[i]));
-                } else if (type == double.class) {
-                    ps.setDouble(i+1, Double.parseDouble(values[i]));
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        for (int i=0; i<appliedAttrs.size(); i++) {
+            bindValue(ps, appliedAttrs.get(i), values[i]);
         }
 
         return ref;
     }
 
     int runAdd() throws Exception {
-        if (!ps.toString().startsWith("insert")) {
+        if (ps == null || !ps.startsWith("insert")) {
             throw new BadMethodChainCallException("runAdd() can only be called from addValues()");
         }
 
-        String psStr = ps.toString();
-        ps = conn.prepareStatement(psStr.substring(0, psStr.length() - 2));
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            return runAddSharded(null);
+        }
+
+        SqlStatement insert = valuesStatement();
+        long start = System.nanoTime();
+        long prepared = start;
+        int rowsAffected = 0;
+        Exception error = null;
+
+        try (PreparedStatement st = insert.prepare(ref.connection())) {
+            prepared = System.nanoTime();
+            prepareNanos = prepared - start;
+            rowsAffected = ref.getQueryHandle().execute(st, PreparedStatement::executeUpdate);
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordQuery(OperationType.ADD, insert.toString(), System.nanoTime() - prepared, 0, rowsAffected, error);
+        }
+    }
+
+    /**
+     * Same as runAdd(), but hands back the @PK the database generated for every inserted row
+     * @return the generated keys in the order the rows were added
+     */
+    List<Object> runAddReturningKeys() throws Exception {
+        if (ps == null || !ps.startsWith("insert")) {
+            throw new BadMethodChainCallException("runAddReturningKeys() can only be called from addValues()");
+        }
+
+        Object[] keys = new Object[rows.size()];
+
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            runAddSharded(keys);
+        } else {
+            ArrayList<Integer> added = new ArrayList<>();
+
+            for (int i = 0; i < rows.size(); i++) {
+                added.add(i);
+            }
+
+            addReturningKeys(ref.connection(), added, keys);
+        }
+
+        return new ArrayList<>(Arrays.asList(keys));
+    }
+
+    /**
+     * @return the insert of the added rows, without the separator after the last one
+     */
+    private SqlStatement valuesStatement() {
+        String sql = ps.getSql();
+        return ps.withSql(sql.endsWith(", ") ? sql.substring(0, sql.length() - 2) : sql);
+    }
+
+    /**
+     * Splits the added rows by the shard their @ShardKey value belongs to and inserts every group of
+     * rows on its own shard
+     * @param keys array to put the generated @PK of every row in, in the order the rows were added;
+     *             null to not return the keys
+     * @return amount of rows inserted
+     */
+    private int runAddSharded(Object[] keys) throws SQLException {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        AttrField shardKey = EntityRegistry.get(clas).getShardKey();
+        int keyIndex = appliedAttrs.indexOf(shardKey);
+
+        if (keyIndex < 0) {
+            throw new InvalidInputException("add() needs the @ShardKey column " + shardKey.getColumnName()
+                    + " to know which shard to insert the rows into");
+        }
+
+        LinkedHashMap<Integer, ArrayList<Integer>> rowsByShard = new LinkedHashMap<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            rowsByShard.computeIfAbsent(shards.shardOf(shardKey, rows.get(i)[keyIndex]), s -> new ArrayList<>()).add(i);
+        }
+
+        StringBuilder row = new StringBuilder("(");
+
+        for (AttrField attr : appliedAttrs) {
+            row.append(row.length() == 1 ? "?" : ", ?");
+        }
+
+        row.append(")");
+        int rowsAffected = 0;
+
+        for (Map.Entry<Integer, ArrayList<Integer>> shard : rowsByShard.entrySet()) {
+            ArrayList<Integer> shardRows = shard.getValue();
+
+            if (keys != null) {
+                rowsAffected += shards.onShards(Collections.singletonList(shard.getKey()),
+                        conn -> addReturningKeys(conn, shardRows, keys)).get(0);
+                continue;
+            }
+
+            StringBuilder sql = new StringBuilder("insert into ").append(getTableName())
+                    .append(" (").append(columnList()).append(") values ");
+
+            for (int i = 0; i < shardRows.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append(row);
+            }
+
+            long start = System.nanoTime();
+            int inserted = 0;
+            Exception error = null;
+
+            try {
+                inserted = shards.onShards(Collections.singletonList(shard.getKey()), conn -> {
+                    try (PreparedStatement insert = conn.prepareStatement(sql.toString())) {
+                        int index = 1;
+
+                        for (int rowIndex : shardRows) {
+                            for (int i = 0; i < appliedAttrs.size(); i++) {
+                                bindValue(insert, index++, appliedAttrs.get(i), rows.get(rowIndex)[i]);
+                            }
+                        }
+
+                        return ref.getQueryHandle().execute(insert, PreparedStatement::executeUpdate);
+                    }
+                }).get(0);
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                recordQuery(OperationType.ADD, sql.toString(), System.nanoTime() - start, 0, inserted, error);
+            }
+
+            rowsAffected += inserted;
+        }
+
+        return rowsAffected;
+    }
+
+    /**
+     * Inserts the given added rows as a JDBC batch of single-row inserts, like saveAll() does, since a
+     * multi-row insert doesn't promise to return its keys in the order of its rows
+     * @param added indices of the rows to insert, in the order they were added
+     * @param keys array to put the generated @PK of every row in, at the index of the row
+     * @return amount of rows inserted
+     */
+    private int addReturningKeys(Connection conn, List<Integer> added, Object[] keys) throws SQLException {
+        StringBuilder row = new StringBuilder();
 
-        return ps.executeUpdate();
+        for (AttrField attr : appliedAttrs) {
+            row.append(row.length() == 0 ? "?" : ", ?");
+        }
+
+        String sql = "insert into " + getTableName() + " (" + columnList() + ") values (" + row + ")";
+        long start = System.nanoTime();
+        long prepared = start;
+        int rowsAffected = 0;
+        Exception error = null;
+
+        try (PreparedStatement insert = ConnectionFactory.getInstance().getDialect()
+                .prepareReturningKeys(conn, sql, getPrimaryKey().getColumnName())) {
+            for (int rowIndex : added) {
+                for (int i = 0; i < appliedAttrs.size(); i++) {
+                    bindValue(insert, i + 1, appliedAttrs.get(i), rows.get(rowIndex)[i]);
+                }
+
+                insert.addBatch();
+            }
+
+            prepared = System.nanoTime();
+            prepareNanos = prepared - start;
+
+            for (int count : ref.getQueryHandle().execute(insert, PreparedStatement::executeBatch)) {
+                rowsAffected += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+
+            try (ResultSet rs = insert.getGeneratedKeys()) {
+                for (int key = 0; key < added.size() && rs.next(); key++) {
+                    keys[added.get(key)] = rs.getObject(1);
+                }
+            }
+
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordQuery(OperationType.ADD, sql, System.nanoTime() - prepared, 0, rowsAffected, error);
+        }
+    }
+
+    private String columnList() {
+        StringBuilder columns = new StringBuilder();
+
+        for (AttrField attr : appliedAttrs) {
+            columns.append(columns.length() == 0 ? "" : ", ").append(attr.getColumnName());
+        }
+
+        return columns.toString();
+    }
+
+    /**
+     * Inserts the models in batches of up to MAX_BATCH_SIZE rows, one round trip per batch, and writes
+     * the generated @PK back into each of them
+     * @return amount of rows inserted
+     */
+    int saveAll(Collection<T> models) throws SQLException {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        List<AttrField> columns = metadata.getInsertableFields();
+        int batchSize = MAX_BATCH_SIZE;
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        int rowsAffected = 0;
+
+        if (!shards.isSharded(metadata)) {
+            ArrayList<T> pending = new ArrayList<>(models);
+
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                rowsAffected += saveBatch(ref.connection(), metadata, columns,
+                        pending.subList(from, Math.min(pending.size(), from + batchSize)));
+            }
+
+            return rowsAffected;
+        }
+
+        LinkedHashMap<Integer, ArrayList<T>> modelsByShard = new LinkedHashMap<>();
+
+        for (T model : models) {
+            int shard = shards.shardOf(metadata.getShardKey(), metadata.getValue(model, metadata.getShardKey()));
+            modelsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(model);
+        }
+
+        for (Map.Entry<Integer, ArrayList<T>> shard : modelsByShard.entrySet()) {
+            ArrayList<T> pending = shard.getValue();
+
+            rowsAffected += shards.onShards(Collections.singletonList(shard.getKey()), conn -> {
+                int inserted = 0;
+
+                for (int from = 0; from < pending.size(); from += batchSize) {
+                    inserted += saveBatch(conn, metadata, columns,
+                            pending.subList(from, Math.min(pending.size(), from + batchSize)));
+                }
+
+                return inserted;
+            }).get(0);
+        }
+
+        return rowsAffected;
+    }
+
+    private int saveBatch(Connection conn, EntityMetadata metadata, List<AttrField> columns, List<T> batch)
+            throws SQLException {
+        long start = System.nanoTime();
+        String sql = metadata.getInsertSql();
+
+        // a multi-row insert doesn't promise to return its keys in the order of its rows, so every row is
+        // its own insert in one JDBC batch, whose keys come back in the order of the batch
+        try (PreparedStatement insert = ConnectionFactory.getInstance().getDialect()
+                .prepareReturningKeys(conn, sql, metadata.getPrimaryKey().getColumnName())) {
+            for (T model : batch) {
+                int index = 1;
+
+                for (AttrField attr : columns) {
+                    TypeRegistry.bindObject(insert, index++, metadata.getValue(model, attr),
+                            metadata.getColumnType(attr.getColumnName()));
+                }
+
+                insert.addBatch();
+            }
+
+            long prepared = System.nanoTime();
+            prepareNanos = prepared - start;
+            int rowsAffected = 0;
+            Exception error = null;
+
+            try {
+                for (int count : ref.getQueryHandle().execute(insert, PreparedStatement::executeBatch)) {
+                    rowsAffected += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                }
+
+                try (ResultSet rs = insert.getGeneratedKeys()) {
+                    for (int row = 0; row < batch.size() && rs.next(); row++) {
+                        metadata.setPrimaryKeyValue(batch.get(row), rs.getObject(1));
+                    }
+                }
+
+                return rowsAffected;
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                recordQuery(OperationType.ADD, sql, System.nanoTime() - prepared, 0, rowsAffected, error);
+            }
+        }
     }
 }
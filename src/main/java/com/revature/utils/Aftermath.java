@@ -0,0 +1,224 @@
+package com.revature.utils;
+
+import com.revature.annotations.Table;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Aftermath.java
+ * Bootstraps Aftermath at application startup, so that the first requests that touch an entity
+ * don't pay for scraping it, opening connections, or preparing its statements
+ */
+public class Aftermath {
+
+    private Aftermath() { }
+
+    /**
+     * Loads the credentials, scans the packages for @Table classes, builds their metadata in parallel,
+     * validates them against the database if the validateSchema property is warn or fail, and opens the
+     * shared connection along with minPoolSize pooled connections. If the prepareStatements
+     * property is true, each entity's find by id, insert, and update statements are prepared and
+     * described by the database up front as well.
+     * @param props the contents of your application.properties file
+     * @param packages packages (including their subpackages) that hold your entities
+     * @return every entity that was registered
+     */
+    public static List<Class<?>> init(Properties props, String... packages) throws IOException, SQLException {
+        ConnectionFactory.addCredentials(props);
+
+        List<Class<?>> entities = scan(packages);
+        register(entities.toArray(new Class<?>[0]));
+
+        Connection conn = ConnectionFactory.getInstance().getConnection();
+
+        if (conn == null) {
+            throw new SQLException("Could not connect to " + props.getProperty("url"));
+        }
+
+        String validation = props.getProperty("validateSchema", "off");
+
+        if (!"off".equalsIgnoreCase(validation)) {
+            validateSchema("fail".equalsIgnoreCase(validation));
+        }
+
+        ConnectionFactory.getInstance().getPool().warmUp(Integer.parseInt(props.getProperty("minPoolSize", "0")));
+
+        if (Boolean.parseBoolean(props.getProperty("prepareStatements", "false"))) {
+            for (Class<?> entity : entities) {
+                prepareStatements(conn, EntityRegistry.get(entity));
+            }
+        }
+
+        return entities;
+    }
+
+    /**
+     * Runs the callback in a read committed transaction; see inTransaction(int, TransactionCallback)
+     */
+    public static <R> R inTransaction(TransactionCallback<R> callback) throws Exception {
+        return inTransaction(Connection.TRANSACTION_READ_COMMITTED, callback);
+    }
+
+    /**
+     * Runs the callback in a transaction on a pooled connection. Every CrudModel used by the callback on
+     * this thread runs on that connection, whether it was created inside of the callback or not. The
+     * transaction commits when the callback returns and rolls back when it throws; serialization
+     * failures and deadlocks are retried with a jittered backoff. Calling inTransaction() from inside
+     * of a callback runs the inner callback in a savepoint of the outer transaction instead.
+     * @param isolation one of the Connection.TRANSACTION_* isolation levels; ignored for nested calls
+     * @return whatever the callback returns
+     */
+    public static <R> R inTransaction(int isolation, TransactionCallback<R> callback) throws Exception {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback can't be null");
+        }
+
+        return Transaction.run(isolation, callback);
+    }
+
+    /**
+     * Checks every registered entity against information_schema.columns: that its table and columns exist,
+     * that the column types can be mapped to the field types, and that primitive fields aren't mapped to
+     * nullable columns. The database type of every column is cached so that values are bound with it.
+     * @param failFast whether to throw a SchemaValidationException on errors instead of only logging them
+     * @return every error and warning found
+     */
+    public static List<String> validateSchema(boolean failFast) throws SQLException {
+        return SchemaValidator.validate(ConnectionFactory.getInstance().getConnection(),
+                EntityRegistry.getAll(), failFast);
+    }
+
+    /**
+     * Builds the metadata of the given entities in parallel
+     */
+    public static void register(Class<?>... entities) {
+        Stream.of(entities).parallel().forEach(EntityRegistry::get);
+    }
+
+    /**
+     * @return every class annotated with @Table in the given packages and their subpackages
+     */
+    public static List<Class<?>> scan(String... packages) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        if (loader == null) {
+            loader = Aftermath.class.getClassLoader();
+        }
+
+        ArrayList<String> classNames = new ArrayList<>();
+
+        for (String pkg : packages) {
+            String path = pkg.replace('.', '/');
+            Enumeration<URL> resources = loader.getResources(path);
+
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+
+                if ("jar".equals(resource.getProtocol())) {
+                    classNames.addAll(scanJar(resource, path));
+                } else if ("file".equals(resource.getProtocol())) {
+                    classNames.addAll(scanDirectory(resource, pkg));
+                }
+            }
+        }
+
+        ArrayList<Class<?>> entities = new ArrayList<>();
+
+        for (String className : classNames) {
+            try {
+                Class<?> clas = Class.forName(className, false, loader);
+
+                if (clas.isAnnotationPresent(Table.class)) {
+                    entities.add(clas);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                // classes that can't be loaded can't be entities either
+            }
+        }
+
+        return entities;
+    }
+
+    private static List<String> scanDirectory(URL resource, String pkg) throws IOException {
+        Path root;
+
+        try {
+            root = Paths.get(resource.toURI());
+        } catch (URISyntaxException e) {
+            root = new File(URLDecoder.decode(resource.getPath(), "UTF-8")).toPath();
+        }
+
+        Path base = root;
+
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(file -> file.toString().endsWith(".class"))
+                    .map(file -> {
+                        String relative = base.relativize(file).toString().replace(File.separatorChar, '.');
+                        return pkg + "." + relative.substring(0, relative.length() - ".class".length());
+                    })
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> scanJar(URL resource, String path) throws IOException {
+        JarURLConnection jarConn = (JarURLConnection) resource.openConnection();
+        jarConn.setUseCaches(false);
+        ArrayList<String> classNames = new ArrayList<>();
+
+        try (JarFile jar = jarConn.getJarFile()) {
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                String name = entry.getName();
+
+                if (name.startsWith(path + "/") && name.endsWith(".class")) {
+                    classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                }
+            }
+        }
+
+        return classNames;
+    }
+
+    private static void prepareStatements(Connection conn, EntityMetadata metadata) throws SQLException {
+        if (metadata.getTableName() == null || metadata.getPrimaryKey() == null) {
+            return;
+        }
+
+        // describing the statement makes the database parse it and check it against the schema now
+        String findById = metadata.getFindByIdSql();
+        PreparedStatement byId = StatementCache.borrow(conn, findById);
+
+        try {
+            byId.getParameterMetaData();
+        } finally {
+            StatementCache.giveBack(conn, findById, byId);
+        }
+
+        if (!metadata.getInsertableFields().isEmpty()) {
+            for (String sql : new String[] {metadata.getInsertSql(), metadata.getUpdateSql()}) {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.getParameterMetaData();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.revature.utils;
+
+public enum Aggregate {
+    COUNT, SUM, MIN, MAX, AVG
+}
@@ -1,5 +1,6 @@
 package com.revature.utils;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import com.revature.annotations.Attr;
 
@@ -25,4 +26,8 @@ public class AttrField {
     public String getColumnName() {
         return attrField.getAnnotation(Attr.class).columnName();
     }
+
+    public <A extends Annotation> A getAnnotation(Class<A> annotation) {
+        return attrField.getAnnotation(annotation);
+    }
 }
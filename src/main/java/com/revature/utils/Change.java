@@ -3,22 +3,29 @@ package com.revature.utils;
 import com.revature.annotations.Table;
 import com.revature.exceptions.BadMethodChainCallException;
 import com.revature.exceptions.InvalidInputException;
+import com.revature.exceptions.OptimisticLockException;
+import com.revature.metrics.OperationType;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 class Change<T> extends ModelScraper {
-    PreparedStatement ps;
-    private Connection conn;
+    SqlStatement ps;
     private CrudModel<T> ref;
     private ArrayList<AttrField> appliedAttrs;
     private ArrayList<Integer> filteredUpdateAttrIndices;
+    private Long expectedVersion;
 
     Change (CrudModel<T> ref) {
         setTargetClass(ref.clas);
-        this.conn = ref.conn;
         this.ref = ref;
         appliedAttrs = new ArrayList<>();
         filteredUpdateAttrIndices = new ArrayList<>();
@@ -32,6 +39,7 @@ class Change<T> extends ModelScraper {
         filteredUpdateAttrIndices.clear();
 
         ps = null;
+        expectedVersion = null;
         Table table = ref.clas.getAnnotation(Table.class);
         String tableName = table.tableName();
         appliedAttrs.clear();
@@ -50,19 +58,24 @@ class Change<T> extends ModelScraper {
 
         StringBuilder setString = new StringBuilder("update " + tableName + " set ");
         appliedAttrs.stream().forEach(attr -> { setString.append(attr.getColumnName()); setString.append(" = ?, "); });
-        ps = conn.prepareStatement(setString.toString().substring(0, setString.length()-2));
+        AttrField version = EntityRegistry.get(clas).getVersion();
+
+        // every change of a versioned row bumps its version, so that concurrent readers notice it
+        if (version != null && !appliedAttrs.contains(version)) {
+            setString.append(version.getColumnName()).append(" = ").append(version.getColumnName()).append(" + 1, ");
+        }
+
+        ps = new SqlStatement(setString.toString().substring(0, setString.length()-2));
 
         return ref;
     }
 
     CrudModel<T> set(String... values) throws SQLException {
-        String psStr = ps.toString();
-
-        if (!psStr.startsWith("update")) {
+        if (ps == null || !ps.startsWith("update")) {
             throw new BadMethodChainCallException("set() can only be called off of change()");
         }
 
-        if (!psStr.contains("?")) {
+        if (ps.getParameterCount() > 0) {
             throw new BadMethodChainCallException("cannot call set() off of change() twice");
         }
 
@@ -77,26 +90,218 @@ class Change<T> extends ModelScraper {
         }
 
         for (int i = 0; i < appliedAttrs.size(); i++) {
-            AttrField currentAttr = appliedAttrs.get(i);
-            Class<?> type = currentAttr.getType();
-
-            if (type == String.class) {
-                ps.setString(i+1, filteredValues.get(i));
-            } else if (type == int.class) {
-                ps.setInt(i+1, Integer.parseInt(filteredValues.get(i)));
-            } else if (type == double.class) {
-                ps.setDouble(i+1, Double.parseDouble(filteredValues.get(i)));
-            }
+            bindValue(ps, appliedAttrs.get(i), filteredValues.get(i));
         }
 
         return ref;
     }
 
+    CrudModel<T> expectVersion(long version) {
+        if (EntityRegistry.get(clas).getVersion() == null) {
+            throw new BadMethodChainCallException("expectVersion() needs an entity with a @Version column");
+        }
+
+        if (ps == null || !ps.startsWith("update")) {
+            throw new BadMethodChainCallException("expectVersion() can only be called off of change()");
+        }
+
+        expectedVersion = version;
+        return ref;
+    }
+
     int runChange() throws Exception {
-        if (!ps.toString().startsWith("update")) {
+        if (ps == null || !ps.startsWith("update")) {
             throw new BadMethodChainCallException("runChange() can only be called from set()");
         }
 
-        return ps.executeUpdate();
+        EntityMetadata metadata = EntityRegistry.get(clas);
+
+        if (expectedVersion != null) {
+            return runVersionedChange(metadata);
+        }
+
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(metadata)) {
+            if (appliedAttrs.contains(metadata.getShardKey())) {
+                throw new InvalidInputException("change() can't move rows between shards; remove the rows and"
+                        + " add them again with their new @ShardKey instead");
+            }
+
+            return runOnShards(OperationType.CHANGE, ps, ref.shardPin(), ref.getQueryHandle());
+        }
+
+        int rowsAffected = 0;
+        Exception error = null;
+        long start = System.nanoTime();
+
+        try (PreparedStatement update = ps.prepare(ref.connection())) {
+            prepareNanos = System.nanoTime() - start;
+            start += prepareNanos;
+            rowsAffected = ref.getQueryHandle().execute(update, PreparedStatement::executeUpdate);
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordQuery(OperationType.CHANGE, ps.toString(), System.nanoTime() - start, 0, rowsAffected, error);
+        }
+    }
+
+    /**
+     * Runs the update only on the rows that still have the expected @Version
+     * @throws OptimisticLockException if no row had it
+     */
+    private int runVersionedChange(EntityMetadata metadata) throws SQLException {
+        String sql = ps.getSql();
+        String versionCheck = metadata.getVersion().getColumnName() + " = " + expectedVersion;
+        int whereAt = sql.indexOf(" where ");
+        SqlStatement versioned = ps.withSql(whereAt < 0
+                ? sql + " where " + versionCheck
+                : sql.substring(0, whereAt) + " where (" + sql.substring(whereAt + 7) + ") and " + versionCheck);
+        int rowsAffected;
+
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(metadata)) {
+            if (appliedAttrs.contains(metadata.getShardKey())) {
+                throw new InvalidInputException("change() can't move rows between shards; remove the rows and"
+                        + " add them again with their new @ShardKey instead");
+            }
+
+            rowsAffected = runOnShards(OperationType.CHANGE, versioned, ref.shardPin(), ref.getQueryHandle());
+        } else {
+            rowsAffected = 0;
+            Exception error = null;
+            long start = System.nanoTime();
+
+            try (PreparedStatement update = versioned.prepare(ref.connection())) {
+                rowsAffected = ref.getQueryHandle().execute(update, PreparedStatement::executeUpdate);
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                recordQuery(OperationType.CHANGE, versioned.toString(), System.nanoTime() - start, 0, rowsAffected, error);
+            }
+        }
+
+        if (rowsAffected == 0) {
+            throw new OptimisticLockException("No row of " + metadata.getTableName() + " still had version "
+                    + expectedVersion, Collections.emptyList());
+        }
+
+        return rowsAffected;
+    }
+
+    /**
+     * Writes every insertable column of the models back to their rows by @PK, one JDBC batch per shard.
+     * Versioned rows are only updated if they still have the model's @Version, which is then incremented
+     * in the database and on the model. If any row conflicts inside of a transaction (or with auto commit
+     * off), no model is incremented, since the rows that were updated roll back with the transaction;
+     * otherwise the rows that were updated stay updated, and so are their models.
+     * @return amount of rows updated
+     * @throws OptimisticLockException listing the models whose rows were changed or removed since they were read
+     */
+    int updateAll(Collection<T> models) throws SQLException {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        ArrayList<Object> conflicts = new ArrayList<>();
+        ArrayList<T> updated = new ArrayList<>();
+        int rowsAffected = 0;
+
+        if (!shards.isSharded(metadata)) {
+            rowsAffected = updateBatch(ref.connection(), metadata, new ArrayList<>(models), updated, conflicts);
+        } else {
+            LinkedHashMap<Integer, ArrayList<T>> modelsByShard = new LinkedHashMap<>();
+
+            for (T model : models) {
+                int shard = shards.shardOf(metadata.getShardKey(), metadata.getValue(model, metadata.getShardKey()));
+                modelsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(model);
+            }
+
+            for (Map.Entry<Integer, ArrayList<T>> shard : modelsByShard.entrySet()) {
+                rowsAffected += shards.onShards(Collections.singletonList(shard.getKey()),
+                        conn -> updateBatch(conn, metadata, shard.getValue(), updated, conflicts)).get(0);
+            }
+        }
+
+        // rows that committed on their own keep their new version, whatever happened to the other rows
+        boolean committed = shards.isSharded(metadata)
+                || Transaction.current() == null && ref.connection().getAutoCommit();
+
+        if (conflicts.isEmpty() || committed) {
+            bumpVersions(metadata, updated);
+        }
+
+        if (!conflicts.isEmpty()) {
+            throw new OptimisticLockException(conflicts.size() + " of the " + metadata.getTableName()
+                    + " rows were changed or removed since they were read", conflicts);
+        }
+
+        return rowsAffected;
+    }
+
+    private void bumpVersions(EntityMetadata metadata, List<T> updated) {
+        AttrField version = metadata.getVersion();
+
+        if (version == null) {
+            return;
+        }
+
+        for (T model : updated) {
+            Number current = (Number) metadata.getValue(model, version);
+
+            if (current != null) {
+                metadata.setValue(model, version, current.longValue() + 1);
+            }
+        }
+    }
+
+    private int updateBatch(Connection conn, EntityMetadata metadata, List<T> models, List<T> updated,
+                            List<Object> conflicts) throws SQLException {
+        AttrField version = metadata.getVersion();
+        String sql = metadata.getUpdateSql();
+        long start = System.nanoTime();
+        long prepared = start;
+        int rowsAffected = 0;
+        Exception error = null;
+
+        try (PreparedStatement update = conn.prepareStatement(sql)) {
+            for (T model : models) {
+                int index = 1;
+
+                for (AttrField attr : metadata.getInsertableFields()) {
+                    if (attr != version) {
+                        TypeRegistry.bindObject(update, index++, metadata.getValue(model, attr),
+                                metadata.getColumnType(attr.getColumnName()));
+                    }
+                }
+
+                update.setObject(index++, metadata.getPrimaryKeyValue(model));
+
+                if (version != null) {
+                    update.setObject(index, metadata.getValue(model, version));
+                }
+
+                update.addBatch();
+            }
+
+            prepared = System.nanoTime();
+            prepareNanos = prepared - start;
+            int[] counts = ref.getQueryHandle().execute(update, PreparedStatement::executeBatch);
+
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    conflicts.add(models.get(i));
+                    continue;
+                }
+
+                rowsAffected += counts[i] == Statement.SUCCESS_NO_INFO ? 1 : counts[i];
+                updated.add(models.get(i));
+            }
+
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordQuery(OperationType.CHANGE, sql, System.nanoTime() - prepared, 0, rowsAffected, error);
+        }
     }
 }
@@ -0,0 +1,424 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * ColumnBatch.java
+ * The rows of a grab stored column by column instead of as entities: one primitive vector and null
+ * bitmap per numeric column, and dictionary codes per string column. Filling a batch allocates a
+ * handful of objects per column no matter how many rows it holds. The vectors are either Java arrays
+ * or, for off-heap batches, direct buffers outside of the garbage collected heap.
+ */
+public class ColumnBatch {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    public enum ColumnType { INT, LONG, DOUBLE, STRING }
+
+    private final LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+    private final boolean offHeap;
+    private int size;
+
+    private ColumnBatch(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * @return amount of rows in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    public ColumnType getType(String column) {
+        return column(column).type;
+    }
+
+    public boolean isNull(String column, int row) {
+        return column(column).nulls.get(checkRow(row));
+    }
+
+    /**
+     * @return the null bitmap of the column; bit i is set if row i is null. Don't modify it.
+     */
+    public BitSet getNulls(String column) {
+        return column(column).nulls;
+    }
+
+    /**
+     * @return the values of an INT column; null rows hold 0
+     */
+    public int[] getInts(String column) {
+        return column(column, ColumnType.INT).heapInts();
+    }
+
+    /**
+     * @return the values of a LONG column; null rows hold 0
+     */
+    public long[] getLongs(String column) {
+        return column(column, ColumnType.LONG).heapLongs();
+    }
+
+    /**
+     * @return the values of a DOUBLE column; null rows hold 0
+     */
+    public double[] getDoubles(String column) {
+        return column(column, ColumnType.DOUBLE).heapDoubles();
+    }
+
+    /**
+     * @return a read-only view of an INT column, on or off of the heap
+     */
+    public IntBuffer getIntBuffer(String column) {
+        return column(column, ColumnType.INT).intView();
+    }
+
+    public LongBuffer getLongBuffer(String column) {
+        Column col = column(column, ColumnType.LONG);
+        return offHeap ? col.slice(8).asLongBuffer().asReadOnlyBuffer() : LongBuffer.wrap(col.longs, 0, size).asReadOnlyBuffer();
+    }
+
+    public DoubleBuffer getDoubleBuffer(String column) {
+        Column col = column(column, ColumnType.DOUBLE);
+        return offHeap ? col.slice(8).asDoubleBuffer().asReadOnlyBuffer() : DoubleBuffer.wrap(col.doubles, 0, size).asReadOnlyBuffer();
+    }
+
+    public int getInt(String column, int row) {
+        Column col = column(column, ColumnType.INT);
+        return offHeap ? col.buffer.getInt(checkRow(row) * 4) : col.ints[checkRow(row)];
+    }
+
+    public long getLong(String column, int row) {
+        Column col = column(column, ColumnType.LONG);
+        return offHeap ? col.buffer.getLong(checkRow(row) * 8) : col.longs[checkRow(row)];
+    }
+
+    public double getDouble(String column, int row) {
+        Column col = column(column, ColumnType.DOUBLE);
+        return offHeap ? col.buffer.getDouble(checkRow(row) * 8) : col.doubles[checkRow(row)];
+    }
+
+    /**
+     * @return the dictionary codes of a STRING column: every row holds the index of its value in
+     * getDictionary(), or -1 if it's null
+     */
+    public int[] getCodes(String column) {
+        return column(column, ColumnType.STRING).heapInts();
+    }
+
+    public IntBuffer getCodeBuffer(String column) {
+        return column(column, ColumnType.STRING).intView();
+    }
+
+    /**
+     * @return the distinct values of a STRING column, in the order they were first read
+     */
+    public List<String> getDictionary(String column) {
+        return Collections.unmodifiableList(column(column, ColumnType.STRING).dictionary);
+    }
+
+    public String getString(String column, int row) {
+        Column col = column(column, ColumnType.STRING);
+        int code = offHeap ? col.buffer.getInt(checkRow(row) * 4) : col.ints[checkRow(row)];
+        return code < 0 ? null : col.dictionary.get(code);
+    }
+
+    /**
+     * Reads the rows of the result set into a new batch
+     * @param limit amount of rows to read at most, or 0 to read them all
+     */
+    static ColumnBatch read(ResultSet rs, List<AttrField> attrs, boolean offHeap, int limit) throws SQLException {
+        ColumnBatch batch = open(offHeap);
+        batch.append(rs, attrs, limit);
+        batch.finish();
+        return batch;
+    }
+
+    /**
+     * @return an empty batch to append() the rows of several result sets to, e.g. one per shard; it must
+     * be finish()ed once the last one is appended
+     */
+    static ColumnBatch open(boolean offHeap) {
+        return new ColumnBatch(offHeap);
+    }
+
+    /**
+     * Appends the rows of a result set with the same columns as the ones appended before
+     */
+    void append(ResultSet rs, List<AttrField> attrs, int limit) throws SQLException {
+        Column[] cols = new Column[attrs.size()];
+        int[] indices = new int[attrs.size()];
+
+        for (int i = 0; i < attrs.size(); i++) {
+            AttrField attr = attrs.get(i);
+            cols[i] = columns.computeIfAbsent(attr.getColumnName(), name -> new Column(name, typeOf(attr)));
+            indices[i] = rs.findColumn(attr.getColumnName());
+        }
+
+        while ((limit == 0 || size < limit) && rs.next()) {
+            for (int i = 0; i < cols.length; i++) {
+                cols[i].read(rs, indices[i], size);
+            }
+
+            size++;
+        }
+    }
+
+    /**
+     * Drops what was only needed while appending; nothing can be appended afterwards
+     */
+    void finish() {
+        for (Column col : columns.values()) {
+            col.finish(size);
+        }
+    }
+
+    private static ColumnType typeOf(AttrField attr) {
+        Class<?> type = attr.getType();
+
+        if (type == int.class || type == Integer.class || type == short.class || type == Short.class
+                || type == byte.class || type == Byte.class) {
+            return ColumnType.INT;
+        } else if (type == long.class || type == Long.class) {
+            return ColumnType.LONG;
+        } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+            return ColumnType.DOUBLE;
+        } else if (type == String.class || type.isEnum()) {
+            return ColumnType.STRING;
+        }
+
+        throw new InvalidInputException("runGrabColumnar() can't store column " + attr.getColumnName()
+                + " of type " + type.getName() + "; grab only numeric and string columns");
+    }
+
+    private Column column(String name) {
+        Column col = columns.get(name);
+
+        if (col == null) {
+            throw new InvalidInputException("The column batch has no column " + name);
+        }
+
+        return col;
+    }
+
+    private Column column(String name, ColumnType type) {
+        Column col = column(name);
+
+        if (col.type != type) {
+            throw new InvalidInputException("Column " + name + " is " + col.type + ", not " + type);
+        }
+
+        return col;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of a batch of " + size + " rows");
+        }
+
+        return row;
+    }
+
+    private final class Column {
+        private final String name;
+        private final ColumnType type;
+        private final BitSet nulls = new BitSet();
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private ByteBuffer buffer;
+        private ArrayList<String> dictionary;
+        private HashMap<String, Integer> codes;
+
+        Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+
+            if (type == ColumnType.STRING) {
+                dictionary = new ArrayList<>();
+                codes = new HashMap<>();
+            }
+
+            if (offHeap) {
+                buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY * width()).order(ByteOrder.nativeOrder());
+            } else if (type == ColumnType.LONG) {
+                longs = new long[INITIAL_CAPACITY];
+            } else if (type == ColumnType.DOUBLE) {
+                doubles = new double[INITIAL_CAPACITY];
+            } else {
+                ints = new int[INITIAL_CAPACITY];
+            }
+        }
+
+        private int width() {
+            return type == ColumnType.LONG || type == ColumnType.DOUBLE ? 8 : 4;
+        }
+
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            ensureCapacity(row + 1);
+
+            switch (type) {
+                case INT: {
+                    int value = rs.getInt(index);
+                    markNull(rs, row);
+                    putInt(row, value);
+                    break;
+                }
+                case LONG: {
+                    long value = rs.getLong(index);
+                    markNull(rs, row);
+
+                    if (offHeap) {
+                        buffer.putLong(row * 8, value);
+                    } else {
+                        longs[row] = value;
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double value = rs.getDouble(index);
+                    markNull(rs, row);
+
+                    if (offHeap) {
+                        buffer.putDouble(row * 8, value);
+                    } else {
+                        doubles[row] = value;
+                    }
+                    break;
+                }
+                default: {
+                    String value = rs.getString(index);
+
+                    if (value == null) {
+                        nulls.set(row);
+                        putInt(row, -1);
+                        break;
+                    }
+
+                    Integer code = codes.get(value);
+
+                    if (code == null) {
+                        code = dictionary.size();
+                        codes.put(value, code);
+                        dictionary.add(value);
+                    }
+
+                    putInt(row, code);
+                }
+            }
+        }
+
+        private void markNull(ResultSet rs, int row) throws SQLException {
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        private void putInt(int row, int value) {
+            if (offHeap) {
+                buffer.putInt(row * 4, value);
+            } else {
+                ints[row] = value;
+            }
+        }
+
+        private void ensureCapacity(int rows) {
+            int capacity = offHeap ? buffer.capacity() / width()
+                    : type == ColumnType.LONG ? longs.length
+                    : type == ColumnType.DOUBLE ? doubles.length
+                    : ints.length;
+
+            if (rows <= capacity) {
+                return;
+            }
+
+            int grown = (int) Math.min(Integer.MAX_VALUE / 8, Math.max(rows, (long) capacity * 2));
+
+            if (offHeap) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(grown * width()).order(ByteOrder.nativeOrder());
+                buffer.clear();
+                bigger.put(buffer).clear();
+                buffer = bigger;
+            } else if (type == ColumnType.LONG) {
+                longs = Arrays.copyOf(longs, grown);
+            } else if (type == ColumnType.DOUBLE) {
+                doubles = Arrays.copyOf(doubles, grown);
+            } else {
+                ints = Arrays.copyOf(ints, grown);
+            }
+        }
+
+        /**
+         * Drops the spare capacity of heap vectors, so that their length is the amount of rows
+         */
+        void finish(int rows) {
+            codes = null; // only needed while appending
+
+            if (offHeap) {
+                return;
+            }
+
+            if (longs != null && longs.length != rows) {
+                longs = Arrays.copyOf(longs, rows);
+            } else if (doubles != null && doubles.length != rows) {
+                doubles = Arrays.copyOf(doubles, rows);
+            } else if (ints != null && ints.length != rows) {
+                ints = Arrays.copyOf(ints, rows);
+            }
+        }
+
+        private ByteBuffer slice(int width) {
+            ByteBuffer view = buffer.duplicate().order(ByteOrder.nativeOrder());
+            view.position(0).limit(size * width);
+            return view.slice().order(ByteOrder.nativeOrder());
+        }
+
+        IntBuffer intView() {
+            return offHeap ? slice(4).asIntBuffer().asReadOnlyBuffer() : IntBuffer.wrap(ints, 0, size).asReadOnlyBuffer();
+        }
+
+        int[] heapInts() {
+            requireHeap();
+            return ints;
+        }
+
+        long[] heapLongs() {
+            requireHeap();
+            return longs;
+        }
+
+        double[] heapDoubles() {
+            requireHeap();
+            return doubles;
+        }
+
+        private void requireHeap() {
+            if (offHeap) {
+                throw new InvalidInputException("Column " + name + " is stored off of the heap; read it through"
+                        + " its buffer instead");
+            }
+        }
+    }
+}
@@ -13,26 +13,18 @@ public class ConnectionFactory {
 
     private static ConnectionFactory connFactory = new ConnectionFactory();
     private static Connection conn = null;
+    private static ConnectionPool pool = null;
+    private static DataSourceRouter router = null;
+    private static ShardRouter shardRouter = null;
+    private static ShardResolver shardResolver = null;
+    private static volatile Dialect dialect = null;
+    private static Dialect customDialect = null;
 
     /**
      * This is used to read the application.properties file in the resources folder
      */
     private static Properties props = new Properties();
 
-    /**
-     * This static block ensures that the database driver is loaded
-     * as soon as the class loads in memory
-     */
-    static {
-        try {
-            // in the future if time permits, replace string with user defined database engine flag which tells
-            // what database engine to use
-            Class.forName("org.postgresql.Driver");
-        } catch (ClassNotFoundException e) {
-            System.out.println(e.getMessage());
-        }
-    }
-
     /**
      * this constructor loads the application.properties file and parses the database credentials.
      */
@@ -48,24 +40,96 @@ public class ConnectionFactory {
      * Internal method used for giving the connection factory a user's credentials
      * @return the application.properties file that contains a user's credentials
      */
-    public static void addCredentials(Properties props) {
+    public static synchronized void addCredentials(Properties props) {
         ConnectionFactory.props = props;
+
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+
+        if (router != null) {
+            router.close();
+            router = null;
+        }
+
+        if (shardRouter != null) {
+            shardRouter.close();
+            shardRouter = null;
+        }
+
+        dialect = null;
+    }
+
+    /**
+     * Replaces the shard resolver picked by the shardResolver property with a custom one
+     * @param resolver resolver to use, or null to go back to the one from the properties
+     */
+    public static synchronized void setShardResolver(ShardResolver resolver) {
+        shardResolver = resolver;
+
+        if (shardRouter != null) {
+            shardRouter.close();
+            shardRouter = null;
+        }
+    }
+
+    /**
+     * Replaces the dialect picked by the dialect property or the url with a custom one, e.g. for another
+     * database. Set it before the first connection is opened.
+     * @param custom dialect to use, or null to go back to the one from the properties
+     */
+    public static synchronized void setDialect(Dialect custom) {
+        customDialect = custom;
+        dialect = null;
+    }
+
+    /**
+     * Returns the dialect of the database, loading its driver the first time it is asked for
+     */
+    public Dialect getDialect() {
+        Dialect current = dialect;
+        return current != null ? current : loadDialect();
+    }
+
+    private static synchronized Dialect loadDialect() {
+        if (dialect == null) {
+            Dialect picked = customDialect != null ? customDialect : Dialects.of(props);
+
+            try {
+                Class.forName(picked.driverClassName());
+            } catch (ClassNotFoundException e) {
+                System.out.println(e.getMessage());
+            }
+
+            dialect = picked;
+        }
+
+        return dialect;
+    }
+
+    static Properties getProperties() {
+        return props;
     }
 
     /**
      * Returns a connection to the user specified schema on the main database
-     * instance
+     * instance, or the connection of the transaction bound to the current thread
      */
     public Connection getConnection() {
+        Transaction tx = Transaction.current();
+        return tx != null ? tx.getConnection() : getPrimaryConnection();
+    }
+
+    /**
+     * Returns the shared connection to the main database instance, even while a transaction is bound to
+     * the current thread; the connection of a transaction goes back to the pool once it ends, so it must
+     * never be kept around
+     */
+    Connection getPrimaryConnection() {
         if (conn == null) {
             try {
-                conn = DriverManager.getConnection(
-                        props.getProperty("url"),
-                        props.getProperty("username"),
-                        props.getProperty("password")
-                );
-                conn.setSchema(props.getProperty("currentSchema"));
-
+                conn = openConnection(props);
             } catch (SQLException e) {
                 System.out.println(e.getMessage());
             }
@@ -73,4 +137,71 @@ public class ConnectionFactory {
 
         return conn;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the pool of extra connections used by operations that work across several
+     * connections at once. The size is read from the poolSize property and defaults to
+     * the amount of available processors.
+     */
+    public synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            String poolSize = props.getProperty("poolSize");
+            pool = new ConnectionPool(props, poolSize == null
+                    ? Runtime.getRuntime().availableProcessors()
+                    : Integer.parseInt(poolSize));
+        }
+
+        return pool;
+    }
+
+    /**
+     * Returns the router that sends reads to the read replicas listed in the replicas property
+     */
+    synchronized DataSourceRouter getRouter() {
+        if (router == null) {
+            router = new DataSourceRouter(props);
+        }
+
+        return router;
+    }
+
+    /**
+     * Returns the router that spreads entities with a @ShardKey over the shards listed in the shards property
+     */
+    synchronized ShardRouter getShardRouter() {
+        if (shardRouter == null) {
+            shardRouter = new ShardRouter(props, shardResolver);
+        }
+
+        return shardRouter;
+    }
+
+    /**
+     * Returns the pool that reads spread over several connections should use: a read replica's
+     * pool if reads can currently go to a replica, the primary's pool otherwise
+     */
+    ConnectionPool getReadPool(Connection primary) throws SQLException {
+        DataSourceRouter readRouter = getRouter();
+        return readRouter.canRead(primary) ? readRouter.pickReplica() : getPool();
+    }
+
+    /**
+     * Opens a brand new connection to the user specified schema
+     * @param props credentials of the database instance
+     */
+    static Connection openConnection(Properties props) throws SQLException {
+        Properties driverProperties = new Properties();
+
+        for (String[] credential : new String[][] { { "user", "username" }, { "password", "password" } }) {
+            if (props.getProperty(credential[1]) != null) {
+                driverProperties.setProperty(credential[0], props.getProperty(credential[1]));
+            }
+        }
+
+        getInstance().getDialect().configure(driverProperties);
+        Connection newConn = DriverManager.getConnection(props.getProperty("url"), driverProperties);
+        newConn.setSchema(props.getProperty("currentSchema"));
+
+        return newConn;
+    }
+}
@@ -0,0 +1,154 @@
+package com.revature.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ConnectionPool.java
+ * A bounded pool of connections for operations that need more than the single shared
+ * connection (e.g. parallel scans). Connections are opened lazily, up to the pool size.
+ */
+public class ConnectionPool {
+    private final LinkedBlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final Properties props;
+    private final int maxSize;
+    private volatile boolean closed;
+
+    ConnectionPool(Properties props, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("A connection pool needs room for at least one connection");
+        }
+
+        this.props = props;
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return amount of connections that are currently acquired
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Takes an idle connection out of the pool, opening a new one if the pool hasn't reached its
+     * maximum size yet; otherwise blocks until another thread releases a connection
+     * @return a connection that must be given back with release()
+     */
+    public Connection acquire() throws SQLException {
+        Connection conn = idle.poll();
+
+        while (conn == null) {
+            if (closed) {
+                throw new SQLException("The connection pool has been closed");
+            }
+
+            int current = opened.get();
+
+            if (current < maxSize) {
+                if (opened.compareAndSet(current, current + 1)) {
+                    try {
+                        Connection fresh = ConnectionFactory.openConnection(props);
+                        inUse.incrementAndGet();
+                        return fresh;
+                    } catch (SQLException e) {
+                        opened.decrementAndGet();
+                        throw e;
+                    }
+                }
+                continue;
+            }
+
+            try {
+                // poll instead of take so that a slot freed up by a discarded connection is noticed
+                conn = idle.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a pooled connection", e);
+            }
+        }
+
+        inUse.incrementAndGet();
+        return conn;
+    }
+
+    /**
+     * Opens connections up front so that the first operations after startup don't pay for them
+     * @param connections amount of connections to have open, capped at the pool size
+     */
+    public void warmUp(int connections) throws SQLException {
+        ArrayList<Connection> acquired = new ArrayList<>();
+
+        try {
+            // holding them all at once forces the pool to open new ones instead of handing out idle ones
+            for (int i = Math.min(connections, maxSize); i > 0; i--) {
+                acquired.add(acquire());
+            }
+        } finally {
+            acquired.forEach(this::release);
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool. Connections that were closed or left in a broken
+     * state are discarded so that the next acquire() opens a fresh one.
+     */
+    public void release(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+
+        inUse.decrementAndGet();
+
+        try {
+            if (closed || conn.isClosed()) {
+                discard(conn);
+                return;
+            }
+
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+
+            idle.offer(conn);
+        } catch (SQLException e) {
+            discard(conn);
+        }
+    }
+
+    /**
+     * Closes every idle connection; connections that are still acquired get closed when released
+     */
+    public void close() {
+        closed = true;
+        Connection conn;
+
+        while ((conn = idle.poll()) != null) {
+            discard(conn);
+        }
+    }
+
+    private void discard(Connection conn) {
+        opened.decrementAndGet();
+
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+
+        StatementCache.evict(conn);
+    }
+}
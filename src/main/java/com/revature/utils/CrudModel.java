@@ -1,25 +1,41 @@
 package com.revature.utils;
 import com.revature.exceptions.*;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
+import org.reactivestreams.Publisher;
 
+import java.io.IOException;
 import java.lang.String;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class CrudModel<T> {
+    static final int DEFAULT_FETCH_SIZE = 256;
     Class<T> clas;
     private HashMap<String, Savepoint> savepoints; // Hashmap of savepoints
-    protected PreparedStatement ps;
+    SqlStatement ps;
     protected Connection conn;
     private Grab<T> select;
     private Add<T> insert;
     private Remove<T> delete;
     private Change<T> update;
     private Where<T> criteria;
+    private Upsert<T> merge;
+    private NativeQuery<T> nativeQuery;
     private ModelScraper currentOperation;
+    private final QueryHandle handle = new QueryHandle();
 
     public CrudModel(Class<T> clas) throws SQLException {
-        this.conn = ConnectionFactory.getInstance().getConnection();
+        this.conn = ConnectionFactory.getInstance().getPrimaryConnection();
         this.clas = clas;
 
         select = new Grab<>(this);
@@ -27,19 +43,54 @@ public class CrudModel<T> {
         update = new Change<>(this);
         delete = new Remove<>(this);
         criteria = new Where<>(this);
+        merge = new Upsert<>(this);
+        nativeQuery = new NativeQuery<>(this, select);
         savepoints = new HashMap<>();
     }
 
+    /**
+     * @return the @ShardKey value the where clause of the current method chain pins, or null
+     */
+    String shardPin() {
+        return criteria.getShardPin();
+    }
+
+    /**
+     * @return the handle that cancels the statements this model is running, from any thread
+     */
+    public QueryHandle getQueryHandle() {
+        return handle;
+    }
+
+    /**
+     * Overrides the queryTimeoutMillis property for the current method chain; statements that run longer
+     * are cancelled and throw a QueryTimeoutException. Call it after the head of the chain, e.g.
+     * grab().where(...).timeout(Duration.ofSeconds(5)).runGrab()
+     */
+    public CrudModel<T> timeout(Duration timeout) {
+        handle.setTimeout(timeout);
+        return this;
+    }
+
+    /**
+     * @return the connection of the transaction bound to the current thread, or the model's own connection;
+     * looked up for every statement, since the model may outlive the transaction it was created in
+     */
+    Connection connection() {
+        Transaction tx = Transaction.current();
+        return tx != null ? tx.getConnection() : conn;
+    }
+
     public void turnOffAutoCommit() throws SQLException {
-        conn.setAutoCommit(false);
+        connection().setAutoCommit(false);
     }
 
     public void turnOnAutoCommit() throws SQLException {
-        conn.setAutoCommit(true);
+        connection().setAutoCommit(true);
     }
 
     public void runCommit() throws SQLException {
-        conn.commit();
+        connection().commit();
     }
 
     public void addSavepoint(String name) throws SQLException {
@@ -47,7 +98,7 @@ public class CrudModel<T> {
             throw new InvalidInputException("Savepoint needs an associated name");
         }
 
-        savepoints.put(name, conn.setSavepoint());
+        savepoints.put(name, connection().setSavepoint());
     }
 
     public void removeSavepoint(String name) {
@@ -64,16 +115,20 @@ public class CrudModel<T> {
         }
 
         Savepoint selectedSavepoint = savepoints.get(name);
-        conn.rollback(selectedSavepoint);
+        connection().rollback(selectedSavepoint);
     }
 
     public CrudModel<T> grab(String ...attrs) {
         currentOperation = select;
+        criteria.reset();
+        handle.setTimeout(null);
         return select.grab(attrs);
     }
 
     public CrudModel<T> add(String... attrs) {
         currentOperation = insert;
+        criteria.reset();
+        handle.setTimeout(null);
         return insert.add(attrs);
     }
 
@@ -83,6 +138,8 @@ public class CrudModel<T> {
 
     public CrudModel<T> change(String... attrs) throws SQLException {
         currentOperation = update;
+        criteria.reset();
+        handle.setTimeout(null);
         return update.change(attrs);
     }
 
@@ -90,46 +147,161 @@ public class CrudModel<T> {
         return update.set(values);
     }
 
+    /**
+     * Only lets runChange() update rows whose @Version is still the given one; runChange() throws an
+     * OptimisticLockException if none of the rows had it
+     */
+    public CrudModel<T> expectVersion(long version) {
+        return update.expectVersion(version);
+    }
+
     public CrudModel<T> remove() throws SQLException {
         currentOperation = delete;
+        criteria.reset();
+        handle.setTimeout(null);
         return delete.remove();
     }
 
     public CrudModel<T> where() throws SQLException, ClassNotFoundException {
-        criteria.setPreparedStatementStr(getPreparedStatement());
+        criteria.setPreparedStatement(getStatement());
         CrudModel<T> ref = criteria.where();
         setPreparedStatement(ref.ps);
         return ref;
     }
 
     public CrudModel<T> where(Conditions cond, String attr, String value) throws SQLException, ClassNotFoundException {
-        criteria.setPreparedStatementStr(getPreparedStatement());
+        criteria.setPreparedStatement(getStatement());
         CrudModel<T> ref = criteria.where(cond, attr, value);
         setPreparedStatement(ref.ps);
         return ref;
     }
 
     public CrudModel<T> and() throws SQLException {
-        return criteria.and();
+        return applyCriteria(criteria.and());
     }
 
     public CrudModel<T> and(Conditions cond, String attr, String value) throws SQLException {
-        return criteria.and(cond, attr, value);
+        return applyCriteria(criteria.and(cond, attr, value));
     }
 
     public CrudModel<T> or() throws SQLException {
-        return criteria.or();
+        return applyCriteria(criteria.or());
     }
 
     public CrudModel<T> or(Conditions cond, String attr, String value) throws SQLException {
-        return criteria.or(cond, attr, value);
+        return applyCriteria(criteria.or(cond, attr, value));
     }
 
     public CrudModel<T> not(Conditions cond, String attr, String value) throws SQLException {
-        return criteria.not(cond, attr, value);
+        return applyCriteria(criteria.not(cond, attr, value));
+    }
+
+    /**
+     * Starts the where clause with a parenthesized group of predicates, e.g.
+     * whereGroup(g -> g.where(EQUALS, "genre", "Jazz").or(EQUALS, "genre", "Blues")).and(GT, "age", "30")
+     */
+    public CrudModel<T> whereGroup(Consumer<WhereGroup<T>> group) throws SQLException, ClassNotFoundException {
+        where();
+        return applyCriteria(criteria.group(group));
+    }
+
+    public CrudModel<T> andGroup(Consumer<WhereGroup<T>> group) throws SQLException {
+        and();
+        return applyCriteria(criteria.group(group));
+    }
+
+    public CrudModel<T> orGroup(Consumer<WhereGroup<T>> group) throws SQLException {
+        or();
+        return applyCriteria(criteria.group(group));
+    }
+
+    /**
+     * Keeps only the rows for which the grab() chain of another model returns a row; call it after
+     * where(), and(), or or()
+     */
+    public CrudModel<T> exists(CrudModel<?> subquery) throws SQLException {
+        return applyCriteria(criteria.exists(subquery, null, null));
+    }
+
+    /**
+     * Correlated exists: keeps only the rows for which the subquery has a row whose attr equals the
+     * outerAttr of the row, e.g. artists.grab().where().exists(albums.grab(), "artist_id", "artist_id")
+     */
+    public CrudModel<T> exists(CrudModel<?> subquery, String attr, String outerAttr) throws SQLException {
+        return applyCriteria(criteria.exists(subquery, attr, outerAttr));
+    }
+
+    /**
+     * Keeps only the rows whose attr is one of the values the one column grab() chain of another model
+     * returns; call it after where(), and(), or or()
+     */
+    public CrudModel<T> in(String attr, CrudModel<?> subquery) throws SQLException {
+        return applyCriteria(criteria.in(attr, subquery));
+    }
+
+    /**
+     * Joins the rows of this grab() chain with the ones of another model's grab() chain, on the @FK of one
+     * entity that references the @PK of the other; each chain keeps its own where clause, e.g.
+     * weightlifters.grab().where(GT, "weight", "100").join(countries.grab()).runJoin()
+     */
+    public <U> Join<T, U> join(CrudModel<U> other) {
+        return join(other, null);
+    }
+
+    /**
+     * @param fkColumn column of the @FK to join on, when the entities reference each other more than once
+     */
+    public <U> Join<T, U> join(CrudModel<U> other, String fkColumn) {
+        return new Join<>(this, grabChain("join()"), other.grabChain("a join"), fkColumn, false);
+    }
+
+    /**
+     * Like join(), but keeps the rows of this chain that have no match; their right side is null
+     */
+    public <U> Join<T, U> leftJoin(CrudModel<U> other) {
+        return leftJoin(other, null);
+    }
+
+    public <U> Join<T, U> leftJoin(CrudModel<U> other, String fkColumn) {
+        return new Join<>(this, grabChain("leftJoin()"), other.grabChain("a join"), fkColumn, true);
+    }
+
+    private Grab<T> grabChain(String use) {
+        if (currentOperation != select) {
+            throw new BadMethodChainCallException("Only a grab() chain can be used in " + use);
+        }
+
+        return select;
     }
 
-    public void setPreparedStatement(PreparedStatement ps) throws ClassNotFoundException {
+    /**
+     * Hands the statement the where clause built back to the operation of the method chain
+     */
+    private CrudModel<T> applyCriteria(CrudModel<T> ref) {
+        try {
+            setPreparedStatement(ref.ps);
+        } catch (ClassNotFoundException e) {
+            throw new BadMethodChainCallException(e.getMessage());
+        }
+
+        return ref;
+    }
+
+    /**
+     * @return the select of this model's grab() chain, to be nested in the where clause of another model
+     */
+    SqlStatement subquerySql(String correlation) {
+        return grabChain("a subquery").subquerySql(correlation);
+    }
+
+    /**
+     * @return amount of columns the grab() chain of this model selects
+     */
+    int subqueryColumns() {
+        return select.selectedColumns();
+    }
+
+    void setPreparedStatement(SqlStatement ps) throws ClassNotFoundException {
         if (currentOperation == null) {
             throw new BadMethodChainCallException("No operation has been initialized.");
         }
@@ -152,38 +324,380 @@ public class CrudModel<T> {
         }
     }
 
+    /**
+     * @return the statement of the current method chain, with its values inlined by the dialect
+     */
     public String getPreparedStatement() throws ClassNotFoundException {
+        return getStatement().toString();
+    }
+
+    /**
+     * @return the statement of the current method chain, with its parameters
+     */
+    SqlStatement getStatement() throws ClassNotFoundException {
         if (currentOperation == null) {
             throw new BadMethodChainCallException("No operation has been initialized.");
         }
 
         switch(currentOperation.getClass().getSimpleName()) {
             case "Grab":
-                return select.ps.toString();
+                return select.ps;
             case "Add":
-                return insert.ps.toString();
+                return insert.ps;
             case "Change":
-                return update.ps.toString();
+                return update.ps;
             case "Remove":
-                return delete.ps.toString();
+                return delete.ps;
             default:
                 throw new ClassNotFoundException("Class not located");
         }
     }
 
+    /**
+     * Orders the rows of the grab; on sharded entities the rows of every shard are merged in this order
+     */
+    public CrudModel<T> orderBy(String attr, boolean ascending) {
+        return select.orderBy(attr, ascending);
+    }
+
+    public CrudModel<T> limit(int rows) {
+        return select.limit(rows);
+    }
+
+    /**
+     * Locks the grabbed rows until the transaction ends, so that no other transaction can change or lock
+     * them in the meantime. Only valid inside of a transaction.
+     */
+    public CrudModel<T> forUpdate() {
+        return select.forUpdate();
+    }
+
+    /**
+     * Leaves out the rows another transaction has locked instead of waiting for them, so that concurrent
+     * workers each claim different rows, e.g. grab().where(...).limit(10).forUpdate().skipLocked()
+     */
+    public CrudModel<T> skipLocked() {
+        return select.skipLocked();
+    }
+
+    /**
+     * Makes runGrab() throw a RowLockedException instead of waiting when a row is locked by another transaction
+     */
+    public CrudModel<T> noWait() {
+        return select.noWait();
+    }
+
+    /**
+     * Aggregates a column over the rows matched by the grab, e.g. grab().where(...).runAggregate(SUM, "weight")
+     * @param attr column to aggregate, or null to count rows
+     * @return a Long for COUNT, a BigDecimal for SUM and AVG, the column's own type for MIN and MAX,
+     * or null if there were no rows to aggregate
+     */
+    public Number runAggregate(Aggregate fn, String attr) throws SQLException {
+        return select.runAggregate(fn, attr);
+    }
+
     public ArrayList<T> runGrab() {
         return select.runGrab();
     }
 
+    /**
+     * Grabs the rows into column vectors instead of entities; see ColumnBatch
+     */
+    public ColumnBatch runGrabColumnar() throws SQLException {
+        return select.runGrabColumnar(false);
+    }
+
+    /**
+     * Same as runGrabColumnar(), but stores the vectors off of the heap in direct buffers
+     */
+    public ColumnBatch runGrabColumnar(boolean offHeap) throws SQLException {
+        return select.runGrabColumnar(offHeap);
+    }
+
+    public Publisher<T> runGrabPublisher() {
+        return select.runGrabPublisher(DEFAULT_FETCH_SIZE);
+    }
+
+    public Publisher<T> runGrabPublisher(int fetchSize) {
+        return select.runGrabPublisher(fetchSize);
+    }
+
+    public Stream<T> runGrabParallel(int partitions) throws SQLException {
+        return select.runGrabParallel(partitions);
+    }
+
+    public void runGrabParallel(int partitions, Consumer<? super T> sink) throws SQLException {
+        select.runGrabParallel(partitions, sink);
+    }
+
+    /**
+     * Runs hand written SQL and maps its rows into entities the same way runGrab() does; columns of the
+     * entity the query doesn't select are left unset. It always runs on the primary, and since it might
+     * write, the reads of the thread stay on the primary afterwards like after any other write.
+     * @param sql the query, with a ? for every parameter
+     * @param params values of the parameters, bound in order
+     */
+    public List<T> query(String sql, Object... params) throws SQLException {
+        return nativeQuery.query(sql, params);
+    }
+
+    /**
+     * Same as query(String, Object...), but maps every row into a projection class instead of the
+     * entity: each column goes into the field whose name matches its label, ignoring case and underscores
+     */
+    public <P> List<P> query(Class<P> projection, String sql, Object... params) throws SQLException {
+        return nativeQuery.query(projection, sql, params);
+    }
+
+    /**
+     * Same as query(String, Object...), but maps the rows lazily through a cursor as the stream is
+     * consumed. Close the stream (e.g. with try-with-resources) to release its statement.
+     */
+    public Stream<T> queryStream(String sql, Object... params) throws SQLException {
+        return nativeQuery.stream(sql, params);
+    }
+
+    /**
+     * Grabs the row with the given @PK through a statement that is only prepared once per connection;
+     * like runGrab(), it reads from a replica if reads can currently go to one
+     * @param id value of the @PK column
+     * @return the mapped row, or null if no row has that @PK
+     */
+    public T findById(Object id) throws SQLException {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        String sql = metadata.getFindByIdSql();
+
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(metadata)) {
+            return findByIdSharded(metadata, sql, id);
+        }
+
+        DataSourceRouter router = ConnectionFactory.getInstance().getRouter();
+        ConnectionPool replica = router.canRead(connection()) ? router.pickReplica() : null;
+        Connection readConn = replica == null ? connection() : replica.acquire();
+
+        long start = System.nanoTime();
+        long executed = start;
+        T model = null;
+        Exception error = null;
+
+        try {
+            PreparedStatement byId = StatementCache.borrow(readConn, sql);
+
+            try {
+                byId.setObject(1, id);
+
+                try (ResultSet rs = handle.execute(byId, PreparedStatement::executeQuery)) {
+                    executed = System.nanoTime();
+                    ArrayList<AttrField> allFields = new ArrayList<>(metadata.getAttrFields());
+                    select.setAppliedFields(allFields);
+
+                    if (rs.next()) {
+                        model = new ResultSetParser<>(clas, select).mapRow(rs);
+                    }
+                }
+            } finally {
+                StatementCache.giveBack(readConn, sql, byId);
+            }
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } catch (ReflectiveOperationException e) {
+            error = e;
+            throw new SQLException(e.getMessage(), e);
+        } finally {
+            if (replica != null) {
+                replica.release(readConn);
+            }
+
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.GRAB, sql, 0,
+                    executed - start, System.nanoTime() - executed, model == null ? 0 : 1, error));
+        }
+
+        return model;
+    }
+
+    /**
+     * The @PK doesn't tell which shard a row is on, so every shard is asked
+     */
+    private T findByIdSharded(EntityMetadata metadata, String sql, Object id) throws SQLException {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        long start = System.nanoTime();
+        T model = null;
+        Exception error = null;
+
+        try {
+            select.setAppliedFields(new ArrayList<>(metadata.getAttrFields()));
+
+            for (T found : shards.onShards(shards.allShards(), shardConn -> {
+                PreparedStatement byId = StatementCache.borrow(shardConn, sql);
+
+                try {
+                    byId.setObject(1, id);
+
+                    try (ResultSet rs = handle.execute(byId, PreparedStatement::executeQuery)) {
+                        return rs.next() ? new ResultSetParser<>(clas, select).mapRow(rs) : null;
+                    }
+                } finally {
+                    StatementCache.giveBack(shardConn, sql, byId);
+                }
+            })) {
+                model = model == null ? found : model;
+            }
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.GRAB, sql, 0,
+                    System.nanoTime() - start, 0, model == null ? 0 : 1, error));
+        }
+
+        return model;
+    }
+
+    /**
+     * Sets the columns of the unique constraint that the next upsert() conflicts on; defaults to the @PK
+     */
+    public CrudModel<T> onConflict(String... attrs) {
+        return merge.onConflict(attrs);
+    }
+
+    /**
+     * Sets the columns that the next upsert() overwrites on a conflict; defaults to every column outside
+     * of the conflict target. Pass no columns to leave conflicting rows as they are.
+     */
+    public CrudModel<T> doUpdate(String... attrs) {
+        return merge.doUpdate(attrs);
+    }
+
+    /**
+     * Inserts the model, or updates the row it conflicts with
+     */
+    public UpsertResult upsert(T model) throws SQLException {
+        return merge.upsertAll(Collections.singletonList(model));
+    }
+
+    /**
+     * Inserts the models, or updates the rows they conflict with, in batches of up to 1000 rows per statement
+     */
+    public UpsertResult upsertAll(Collection<T> models) throws SQLException {
+        return merge.upsertAll(models);
+    }
+
+    /**
+     * Writes every row of the table to a versioned, checksummed binary snapshot file, so that it can be
+     * loaded again with loadSnapshot() without touching the database
+     * @return amount of rows written
+     */
+    public int snapshotTo(Path path) throws SQLException, IOException {
+        return Snapshot.write(connection(), clas, path, handle);
+    }
+
+    /**
+     * Memory maps a snapshot file written by snapshotTo(); rows are decoded into entities the first time
+     * they are accessed
+     * @throws InvalidSnapshotException if the file is corrupt, of another format version, or was taken
+     * with another mapping of the entity
+     */
+    public Snapshot<T> loadSnapshot(Path path) throws IOException {
+        return Snapshot.load(clas, path);
+    }
+
+    /**
+     * Streams every row of the table into a file; see exportTo(Path, ExportFormat, boolean, TransferProgress)
+     */
+    public long exportTo(Path path, ExportFormat format) throws SQLException, IOException {
+        return exportTo(path, format, false, null);
+    }
+
+    /**
+     * Streams every row of the table into a file with constant memory: through COPY TO STDOUT on
+     * PostgreSQL, through a cursor elsewhere (CSV only)
+     * @param gzip whether to gzip the file
+     * @param progress called after every chunk written to the file; may be null
+     * @return amount of rows exported
+     */
+    public long exportTo(Path path, ExportFormat format, boolean gzip, TransferProgress progress)
+            throws SQLException, IOException {
+        return TableTransfer.exportTo(connection(), EntityRegistry.get(clas), path, format, gzip, progress, handle);
+    }
+
+    /**
+     * Streams the rows of a file written by exportTo() into the table; see
+     * importFrom(Path, ExportFormat, boolean, TransferProgress)
+     */
+    public long importFrom(Path path, ExportFormat format) throws SQLException, IOException {
+        return importFrom(path, format, false, null);
+    }
+
+    /**
+     * Streams the rows of a file written by exportTo() into the table with constant memory: through
+     * COPY FROM STDIN on PostgreSQL, which imports all of the rows or none, and through batched inserts
+     * elsewhere (CSV only). The @PK values of the file are inserted as they are.
+     * @param gzip whether the file is gzipped
+     * @param progress called after every chunk read from the file; may be null
+     * @return amount of rows imported
+     */
+    public long importFrom(Path path, ExportFormat format, boolean gzip, TransferProgress progress)
+            throws SQLException, IOException {
+        return TableTransfer.importFrom(connection(), EntityRegistry.get(clas), path, format, gzip, progress, handle);
+    }
+
     public int runAdd() throws Exception {
         return insert.runAdd();
     }
 
+    /**
+     * Same as runAdd(), but returns the @PK the database generated for every inserted row, in the
+     * order the rows were added
+     */
+    public List<Object> runAddReturningKeys() throws Exception {
+        return insert.runAddReturningKeys();
+    }
+
+    /**
+     * Inserts the model and sets its @PK to the one the database generated
+     * @return amount of rows inserted
+     */
+    public int save(T model) throws SQLException {
+        return insert.saveAll(Collections.singletonList(model));
+    }
+
+    /**
+     * Inserts the models, up to 1000 rows per round trip, and sets the @PK of each of them to the one
+     * the database generated
+     * @return amount of rows inserted
+     */
+    public int saveAll(Collection<T> models) throws SQLException {
+        return insert.saveAll(models);
+    }
+
+    /**
+     * Writes every column of the model back to its row by @PK; see updateAll(Collection)
+     * @return amount of rows updated
+     */
+    public int update(T model) throws SQLException {
+        return update.updateAll(Collections.singletonList(model));
+    }
+
+    /**
+     * Writes every column of the models back to their rows by @PK in one JDBC batch. The rows of
+     * entities with a @Version column are only updated if they still have the version the model holds,
+     * which is then incremented on the model as well.
+     * @return amount of rows updated
+     * @throws com.revature.exceptions.OptimisticLockException listing the models whose rows were changed
+     * or removed by someone else. With auto commit on, the other rows are still updated and their models
+     * incremented; inside of a transaction, no model is incremented, since the transaction rolls back.
+     */
+    public int updateAll(Collection<T> models) throws SQLException {
+        return update.updateAll(models);
+    }
+
     public int runChange() throws Exception {
         return update.runChange();
     }
 
     public int runRemove() throws Exception {
-        return delete.runRemove(getPreparedStatement());
+        return delete.runRemove(getStatement());
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.revature.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSourceRouter.java
+ * Routes reads to a pool of read replicas while writes stay on the primary. Replicas are the named
+ * data sources listed in the replicas property; every name reads its own url, username, password, and
+ * currentSchema properties (e.g. replica1.url) and falls back to the primary's for the ones it leaves out.
+ */
+class DataSourceRouter {
+    enum Selection { ROUND_ROBIN, LEAST_LOADED }
+
+    private static final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+
+    private final List<String> names;
+    private final List<ConnectionPool> replicas;
+    private final Selection selection;
+    private final long readYourWritesNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    DataSourceRouter(Properties props) {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<ConnectionPool> replicas = new ArrayList<>();
+        String poolSize = props.getProperty("replicaPoolSize", props.getProperty("poolSize"));
+        int size = poolSize == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(poolSize);
+
+        for (String name : props.getProperty("replicas", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+                replicas.add(new ConnectionPool(dataSource(props, name.trim()), size));
+            }
+        }
+
+        this.names = Collections.unmodifiableList(names);
+        this.replicas = Collections.unmodifiableList(replicas);
+        this.selection = "least-loaded".equalsIgnoreCase(props.getProperty("replicaSelection", "round-robin"))
+                ? Selection.LEAST_LOADED
+                : Selection.ROUND_ROBIN;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.parseLong(props.getProperty("readYourWritesMillis", "0")));
+    }
+
+    /**
+     * @return the credentials of a named data source, with the primary's filling in for missing ones
+     */
+    static Properties dataSource(Properties props, String name) {
+        Properties source = new Properties();
+
+        for (String key : new String[] { "url", "username", "password", "currentSchema" }) {
+            String value = props.getProperty(name + "." + key, props.getProperty(key));
+
+            if (value != null) {
+                source.setProperty(key, value);
+            }
+        }
+
+        return source;
+    }
+
+    List<String> getReplicaNames() {
+        return names;
+    }
+
+    /**
+     * Remembers that the current thread just wrote to the primary, so that its reads stay on the primary
+     * for the read-your-writes window
+     */
+    static void wrote() {
+        lastWrite.set(System.nanoTime());
+    }
+
+    /**
+     * @param primary the connection the read would otherwise run on
+     * @return whether a read on the current thread can go to a replica: there are replicas, no transaction
+     * is open on the primary connection, and the thread hasn't written within the read-your-writes window
+     */
+    boolean canRead(Connection primary) throws SQLException {
+        if (replicas.isEmpty() || Transaction.current() != null || (primary != null && !primary.getAutoCommit())) {
+            return false;
+        }
+
+        Long written = lastWrite.get();
+        return written == null || System.nanoTime() - written >= readYourWritesNanos;
+    }
+
+    /**
+     * @return the replica pool to read from next
+     */
+    ConnectionPool pickReplica() {
+        if (selection == Selection.LEAST_LOADED) {
+            ConnectionPool least = replicas.get(0);
+
+            for (ConnectionPool replica : replicas) {
+                if (replica.getInUse() < least.getInUse()) {
+                    least = replica;
+                }
+            }
+
+            return least;
+        }
+
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+    void close() {
+        replicas.forEach(ConnectionPool::close);
+    }
+}
@@ -0,0 +1,242 @@
+package com.revature.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Dialect.java
+ * Everything the ORM says differently depending on the database it talks to: how statements are
+ * rendered with their values for logs and plans, how identifiers are quoted, pagination, upserts, how
+ * many parameters fit in one statement, array binding, generated keys, and the error codes of cancelled
+ * and locked statements. The defaults are standard SQL; PostgresDialect, MySqlDialect, and H2Dialect
+ * override what their database does differently or faster.
+ *
+ * The dialect is picked by the dialect property (postgres, mysql, mariadb, or h2), from the url
+ * otherwise, or set with ConnectionFactory.setDialect().
+ */
+public interface Dialect {
+    /**
+     * @return whether the dialect is the one of the database behind the JDBC url
+     */
+    boolean accepts(String url);
+
+    /**
+     * @return the class name of the JDBC driver, loaded before the first connection is opened
+     */
+    String driverClassName();
+
+    /**
+     * Adds the driver properties the dialect needs for its fast paths to the ones connections are opened
+     * with, leaving the ones the user set alone
+     */
+    default void configure(Properties driverProperties) { }
+
+    default String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * @return the value as a SQL literal
+     */
+    default String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+
+        if (value instanceof byte[]) {
+            return "X'" + Dialects.hex((byte[]) value) + "'";
+        }
+
+        if (value instanceof Object[]) {
+            StringBuilder array = new StringBuilder("array[");
+
+            for (Object element : (Object[]) value) {
+                array.append(array.length() == 6 ? "" : ", ").append(literal(element));
+            }
+
+            return array.append("]").toString();
+        }
+
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    /**
+     * Inlines the values of a statement's parameters as literals, for the metrics, the slow query log,
+     * and explain(); statements themselves are always run with their parameters bound
+     * @param sql statement with a ? for every parameter; question marks in quoted strings are left alone
+     */
+    default String render(String sql, List<?> values) {
+        StringBuilder rendered = new StringBuilder(sql.length() + values.size() * 8);
+        char quote = 0;
+        int next = 0;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (quote != 0) {
+                quote = c == quote ? 0 : quote;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '?' && next < values.size()) {
+                rendered.append(literal(values.get(next++)));
+                continue;
+            }
+
+            rendered.append(c);
+        }
+
+        return rendered.toString();
+    }
+
+    /**
+     * @return the clause that cuts a select off after the given amount of rows
+     */
+    default String limit(int rows) {
+        return " limit " + rows;
+    }
+
+    /**
+     * @return the column type of an @PK the database generates values for
+     */
+    String primaryKeyType(Class<?> type);
+
+    /**
+     * @return the column type an @Attr of the Java type is created with
+     */
+    default String columnType(Class<?> type) {
+        return SchemaGenerator.columnType(type);
+    }
+
+    /**
+     * @param concurrently whether to build the index without locking out writes, where the database can
+     */
+    default String createIndex(boolean unique, String name, String table, List<String> columns, boolean concurrently) {
+        return "create " + (unique ? "unique " : "") + "index if not exists " + name + " on " + table
+                + " (" + String.join(", ", columns) + ")";
+    }
+
+    /**
+     * @param types Java types of the columns, for databases that can't tell the type of a parameter
+     * @return a multi-row insert of the columns that updates the updates columns of the rows it conflicts
+     * with on the target columns, or leaves them alone if there are no updates columns
+     */
+    String upsertSql(String table, List<String> columns, List<Class<?>> types, List<String> target,
+                     List<String> updates, int rows);
+
+    /**
+     * @return whether upsertSql() returns a row per upserted row whose first column is true if it was inserted;
+     * otherwise its update count is handed to upsertCounts()
+     */
+    default boolean upsertReturnsRows() {
+        return false;
+    }
+
+    /**
+     * @param affected update count of an upsertSql() statement
+     * @param rows amount of rows it upserted
+     * @param updates whether it updated conflicting rows
+     * @return the amount of inserted and updated rows
+     */
+    default int[] upsertCounts(int affected, int rows, boolean updates) {
+        return updates ? new int[] { 0, affected } : new int[] { affected, 0 };
+    }
+
+    /**
+     * @return the most parameters one statement can have, which caps the rows of multi-row statements
+     */
+    int maxParameters();
+
+    /**
+     * Prepares an insert whose getGeneratedKeys() hands back the key column of every inserted row, in
+     * the order of its values list
+     */
+    default PreparedStatement prepareReturningKeys(Connection conn, String sql, String keyColumn) throws SQLException {
+        return conn.prepareStatement(sql, new String[] { keyColumn });
+    }
+
+    /**
+     * @return whether anyOf() matches against a single array parameter
+     */
+    default boolean supportsArrays() {
+        return false;
+    }
+
+    /**
+     * @return a predicate matching the column against any of the given amount of values, bound with bindAnyOf()
+     */
+    default String anyOf(String column, int values) {
+        StringBuilder in = new StringBuilder(column).append(" in (");
+
+        for (int i = 0; i < values; i++) {
+            in.append(i == 0 ? "?" : ", ?");
+        }
+
+        return in.append(")").toString();
+    }
+
+    /**
+     * Binds the values of an anyOf() predicate
+     * @param type Java type of the column
+     * @return the index of the parameter after them
+     */
+    default int bindAnyOf(PreparedStatement ps, int index, Class<?> type, List<?> values) throws SQLException {
+        for (Object value : values) {
+            ps.setObject(index++, value);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return whether the statement failed because it was cancelled or ran into its timeout
+     */
+    default boolean isCancelled(SQLException e) {
+        return "57014".equals(e.getSQLState());
+    }
+
+    /**
+     * @return whether the statement failed because it wouldn't wait for a row another transaction locked
+     */
+    boolean isLockNotAvailable(SQLException e);
+
+    /**
+     * @return a statement that runs the select and returns its plan with the actual row counts and timings
+     */
+    default String explain(String sql) {
+        return "explain analyze " + sql;
+    }
+
+    /**
+     * @return whether exportTo() and importFrom() can stream the connection's tables through copyOut()
+     * and copyIn()
+     */
+    default boolean supportsCopy(Connection conn) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Streams the output of a copy ... to stdout statement
+     * @return amount of rows copied
+     */
+    default long copyOut(Connection conn, String sql, OutputStream out) throws SQLException, IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't copy");
+    }
+
+    /**
+     * Streams the input of a copy ... from stdin statement
+     * @return amount of rows copied
+     */
+    default long copyIn(Connection conn, String sql, InputStream in, int bufferSize) throws SQLException, IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't copy");
+    }
+}
@@ -0,0 +1,119 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Dialects.java
+ * Picks the dialect of the configured database, and the helpers the dialects share
+ */
+final class Dialects {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Dialects() { }
+
+    /**
+     * @return the dialect named by the dialect property, or the one whose driver takes the url; PostgreSQL
+     * if neither says otherwise
+     */
+    static Dialect of(Properties props) {
+        if (props == null) {
+            return new PostgresDialect(); // no credentials yet
+        }
+
+        String name = props.getProperty("dialect");
+
+        if (name != null) {
+            switch (name.trim().toLowerCase()) {
+                case "postgres":
+                case "postgresql":
+                    return new PostgresDialect();
+                case "mysql":
+                    return new MySqlDialect();
+                case "mariadb":
+                    return new MySqlDialect(MySqlDialect.MARIADB_DRIVER);
+                case "h2":
+                    return new H2Dialect();
+                default:
+                    throw new InvalidInputException("Unknown dialect " + name + "; use postgres, mysql, mariadb, or h2,"
+                            + " or ConnectionFactory.setDialect() for others");
+            }
+        }
+
+        String url = props.getProperty("url");
+
+        if (url != null && url.startsWith("jdbc:mariadb:")) {
+            return new MySqlDialect(MySqlDialect.MARIADB_DRIVER);
+        }
+
+        for (Dialect dialect : new Dialect[] { new MySqlDialect(), new H2Dialect() }) {
+            if (dialect.accepts(url)) {
+                return dialect;
+            }
+        }
+
+        return new PostgresDialect();
+    }
+
+    static String hex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * @return insert into table (columns) values followed by a row of placeholders per row
+     */
+    static StringBuilder insertSql(String table, List<String> columns, int rows) {
+        StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (")
+                .append(String.join(", ", columns)).append(") values ");
+        StringBuilder row = new StringBuilder("(");
+
+        for (int i = 0; i < columns.size(); i++) {
+            row.append(i == 0 ? "?" : ", ?");
+        }
+
+        row.append(")");
+
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(row);
+        }
+
+        return sql;
+    }
+
+    /**
+     * @return the name of the element type that createArrayOf() is given for values of the Java type
+     */
+    static String arrayType(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return "integer";
+        } else if (type == long.class || type == Long.class) {
+            return "bigint";
+        } else if (type == short.class || type == Short.class) {
+            return "smallint";
+        } else if (type == double.class || type == Double.class) {
+            return "float8";
+        } else if (type == float.class || type == Float.class) {
+            return "float4";
+        } else if (type == boolean.class || type == Boolean.class) {
+            return "boolean";
+        } else if (type == BigDecimal.class) {
+            return "numeric";
+        } else if (type == java.sql.Date.class || type == java.time.LocalDate.class) {
+            return "date";
+        } else if (type == java.sql.Timestamp.class || type == java.time.LocalDateTime.class) {
+            return "timestamp";
+        }
+
+        return "varchar";
+    }
+}
@@ -0,0 +1,55 @@
+package com.revature.utils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * EntityMapper.java
+ * Reflection-free metadata and mapping code for an entity. Implementations are generated at compile
+ * time by the aftermath-processor module as <Entity>Mapper, next to the entity; when one is found,
+ * Aftermath uses it instead of invoking getters and setters reflectively.
+ */
+public interface EntityMapper<T> {
+    /**
+     * @return name of the table in the entity's @Table annotation
+     */
+    String tableName();
+
+    /**
+     * @return every column mapped by an @PK, @FK, or @Attr field, in field declaration order
+     */
+    String[] columns();
+
+    /**
+     * @return index into columns() of the @PK column, or -1 if the entity has no @PK
+     */
+    int primaryKeyIndex();
+
+    T newInstance();
+
+    /**
+     * Maps the row the result set is currently positioned on
+     * @param rs result set positioned on a row
+     * @param columnIndexes for every entry of columns(), its index in the result set or 0 if it wasn't selected
+     */
+    T map(ResultSet rs, int[] columnIndexes) throws SQLException;
+
+    /**
+     * Binds the value of one of the entity's columns to a statement parameter
+     * @param column index into columns()
+     */
+    void bind(PreparedStatement ps, int parameterIndex, T entity, int column) throws SQLException;
+
+    /**
+     * @param column index into columns()
+     * @return the column's value, boxed
+     */
+    Object get(T entity, int column);
+
+    /**
+     * @param column index into columns()
+     * @param value value to set, converted to the field's type if it's a different kind of Number
+     */
+    void set(T entity, int column, Object value);
+}
@@ -0,0 +1,52 @@
+package com.revature.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * EntityMappers.java
+ * Looks up and caches the generated EntityMapper of an entity
+ */
+public class EntityMappers {
+    private static final String SUFFIX = "Mapper";
+    private static final EntityMapper<?> NONE = new NoMapper();
+    private static final ConcurrentHashMap<Class<?>, EntityMapper<?>> mappers = new ConcurrentHashMap<>();
+
+    private EntityMappers() { }
+
+    /**
+     * @return the generated mapper of the entity, or null if none was generated for it
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMapper<T> find(Class<T> clas) {
+        EntityMapper<?> mapper = mappers.computeIfAbsent(clas, EntityMappers::load);
+        return mapper == NONE ? null : (EntityMapper<T>) mapper;
+    }
+
+    private static EntityMapper<?> load(Class<?> clas) {
+        try {
+            Class<?> mapperClass = Class.forName(clas.getName() + SUFFIX, true, clas.getClassLoader());
+
+            if (EntityMapper.class.isAssignableFrom(mapperClass)) {
+                return (EntityMapper<?>) mapperClass.newInstance();
+            }
+        } catch (ClassNotFoundException e) {
+            // no mapper was generated, fall back to reflection
+        } catch (InstantiationException | IllegalAccessException e) {
+            System.out.println(e.getMessage());
+        }
+
+        return NONE;
+    }
+
+    // marker so that entities without a generated mapper are only looked up once
+    private static class NoMapper implements EntityMapper<Object> {
+        public String tableName() { return null; }
+        public String[] columns() { return new String[0]; }
+        public int primaryKeyIndex() { return -1; }
+        public Object newInstance() { return null; }
+        public Object map(java.sql.ResultSet rs, int[] columnIndexes) { return null; }
+        public void bind(java.sql.PreparedStatement ps, int parameterIndex, Object entity, int column) { }
+        public Object get(Object entity, int column) { return null; }
+        public void set(Object entity, int column, Object value) { }
+    }
+}
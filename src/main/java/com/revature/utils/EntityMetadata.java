@@ -0,0 +1,341 @@
+package com.revature.utils;
+
+import com.revature.annotations.ShardKey;
+import com.revature.annotations.Table;
+import com.revature.annotations.Version;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EntityMetadata.java
+ * Everything Aftermath scrapes off of an entity, built once per entity and shared by every CrudModel
+ */
+class EntityMetadata {
+    private final Class<?> clas;
+    private final String tableName;
+    private final PKField primaryKey;
+    private final List<AttrField> attrFields;
+    private final List<FKField> fkFields;
+    private final Method[] methods;
+    private final EntityMapper<?> mapper;
+    private final Map<String, Method> getters = new HashMap<>();
+    private final Map<String, Method> setters = new HashMap<>();
+    private final Map<String, Integer> mapperColumns = new HashMap<>();
+    private final Method pkSetter;
+    private final Method pkGetter;
+    private final AttrField shardKey;
+    private final AttrField version;
+    private volatile Map<String, Integer> columnTypes = Collections.emptyMap();
+
+    EntityMetadata(Class<?> clas) {
+        ModelScraper scraper = new ModelScraper();
+        scraper.scrape(clas);
+
+        PKField pk;
+        try {
+            pk = scraper.scrapePrimaryKey();
+        } catch (RuntimeException e) {
+            pk = null; // only grabs need a @PK, so an entity without one is still valid
+        }
+
+        Table table = clas.getAnnotation(Table.class);
+
+        this.clas = clas;
+        this.tableName = table == null ? null : table.tableName();
+        this.primaryKey = pk;
+        this.attrFields = Collections.unmodifiableList(new ArrayList<>(scraper.attrFields));
+        this.fkFields = Collections.unmodifiableList(new ArrayList<>(scraper.fkFields));
+        this.methods = scraper.methods;
+        this.mapper = EntityMappers.find(clas);
+
+        if (mapper != null) {
+            String[] columns = mapper.columns();
+
+            for (int i = 0; i < columns.length; i++) {
+                mapperColumns.put(columns[i].toLowerCase(), i);
+            }
+        }
+
+        for (AttrField attr : attrFields) {
+            getters.put(attr.getColumnName().toLowerCase(), scraper.getMethodByFieldName(accessorName("get", attr.getName())));
+            setters.put(attr.getColumnName().toLowerCase(), scraper.getMethodByFieldName(accessorName("set", attr.getName())));
+        }
+
+        this.pkSetter = pk == null ? null : scraper.getMethodByFieldName(accessorName("set", pk.getName()));
+        this.pkGetter = pk == null ? null : scraper.getMethodByFieldName(accessorName("get", pk.getName()));
+        this.shardKey = attrFields.stream()
+                .filter(attr -> attr.getAnnotation(ShardKey.class) != null)
+                .findFirst()
+                .orElse(null);
+        this.version = attrFields.stream()
+                .filter(attr -> attr.getAnnotation(Version.class) != null)
+                .findFirst()
+                .orElse(null);
+
+        if (version != null && !isIntegral(version.getType())) {
+            throw new RuntimeException("@Version needs an int or long field, got " + version.getType().getName()
+                    + " in: " + clas.getName());
+        }
+    }
+
+    Class<?> getEntityClass() {
+        return clas;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return the @PK of the entity, or null if it has none
+     */
+    PKField getPrimaryKey() {
+        return primaryKey;
+    }
+
+    List<AttrField> getAttrFields() {
+        return attrFields;
+    }
+
+    List<FKField> getFkFields() {
+        return fkFields;
+    }
+
+    Method[] getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return the @Attr column annotated with @ShardKey, or null if the entity isn't sharded
+     */
+    AttrField getShardKey() {
+        return shardKey;
+    }
+
+    /**
+     * @return the @Attr column annotated with @Version, or null if the entity isn't versioned
+     */
+    AttrField getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the generated mapper of the entity, or null if it has none
+     */
+    EntityMapper<?> getMapper() {
+        return mapper;
+    }
+
+    /**
+     * @return the java.sql.Types constant of the column as validated against the database, or null if
+     * the schema hasn't been validated
+     */
+    Integer getColumnType(String columnName) {
+        return columnTypes.get(columnName.toLowerCase());
+    }
+
+    void setColumnTypes(Map<String, Integer> columnTypes) {
+        HashMap<String, Integer> lowerCased = new HashMap<>();
+        columnTypes.forEach((column, type) -> lowerCased.put(column.toLowerCase(), type));
+        this.columnTypes = Collections.unmodifiableMap(lowerCased);
+    }
+
+    /**
+     * @return every @Attr column except the @PK column, which the database generates
+     */
+    List<AttrField> getInsertableFields() {
+        ArrayList<AttrField> insertable = new ArrayList<>();
+
+        for (AttrField attr : attrFields) {
+            if (primaryKey == null || !attr.getColumnName().equals(primaryKey.getColumnName())) {
+                insertable.add(attr);
+            }
+        }
+
+        return insertable;
+    }
+
+    String getFindByIdSql() {
+        requirePrimaryKey();
+        return "select * from " + tableName + " where " + primaryKey.getColumnName() + " = ?";
+    }
+
+    String getInsertSql() {
+        return getInsertSql(1);
+    }
+
+    /**
+     * @return a multi-row insert of the insertable fields
+     */
+    String getInsertSql(int rows) {
+        ArrayList<String> columns = new ArrayList<>();
+
+        for (AttrField attr : getInsertableFields()) {
+            columns.add(attr.getColumnName());
+        }
+
+        return Dialects.insertSql(tableName, columns, rows).toString();
+    }
+
+    /**
+     * @return a delete of the rows whose @PK is any of the given amount of values, in the dialect's syntax
+     */
+    String getDeleteAnySql(int rows) {
+        requirePrimaryKey();
+        return "delete from " + tableName + " where "
+                + ConnectionFactory.getInstance().getDialect().anyOf(primaryKey.getColumnName(), rows);
+    }
+
+    /**
+     * @return an update of every insertable field by @PK; on versioned entities the @Version is
+     * incremented and checked as the last parameter
+     */
+    String getUpdateSql() {
+        requirePrimaryKey();
+        StringBuilder sets = new StringBuilder();
+
+        for (AttrField attr : getInsertableFields()) {
+            if (attr != version) {
+                sets.append(sets.length() == 0 ? "" : ", ").append(attr.getColumnName()).append(" = ?");
+            }
+        }
+
+        if (version == null) {
+            return "update " + tableName + " set " + sets + " where " + primaryKey.getColumnName() + " = ?";
+        }
+
+        return "update " + tableName + " set " + sets + (sets.length() == 0 ? "" : ", ")
+                + version.getColumnName() + " = " + version.getColumnName() + " + 1"
+                + " where " + primaryKey.getColumnName() + " = ? and " + version.getColumnName() + " = ?";
+    }
+
+    /**
+     * Reads the value of an @Attr column off of an entity, through its generated mapper if it has one
+     */
+    @SuppressWarnings("unchecked")
+    Object getValue(Object entity, AttrField attr) {
+        String column = attr.getColumnName().toLowerCase();
+        Integer mapperIndex = mapperColumns.get(column);
+
+        if (mapperIndex != null) {
+            return ((EntityMapper<Object>) mapper).get(entity, mapperIndex);
+        }
+
+        Method getter = getters.get(column);
+
+        if (getter == null) {
+            throw new RuntimeException("Did not find a getter for " + attr.getName() + " in: " + clas.getName());
+        }
+
+        try {
+            return getter.invoke(entity);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the @PK off of an entity
+     */
+    Object getPrimaryKeyValue(Object entity) {
+        requirePrimaryKey();
+
+        for (AttrField attr : attrFields) {
+            if (attr.getColumnName().equals(primaryKey.getColumnName())) {
+                return getValue(entity, attr);
+            }
+        }
+
+        if (pkGetter == null) {
+            throw new RuntimeException("Did not find a getter for " + primaryKey.getName() + " in: " + clas.getName());
+        }
+
+        try {
+            return pkGetter.invoke(entity);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a generated @PK back into an entity, through its generated mapper if it has one
+     */
+    @SuppressWarnings("unchecked")
+    void setPrimaryKeyValue(Object entity, Object value) {
+        requirePrimaryKey();
+
+        if (mapper != null && mapper.primaryKeyIndex() >= 0) {
+            ((EntityMapper<Object>) mapper).set(entity, mapper.primaryKeyIndex(), value);
+            return;
+        }
+
+        invokeSetter(pkSetter, primaryKey.getName(), primaryKey.getType(), entity, value);
+    }
+
+    /**
+     * Writes the value of an @Attr column into an entity, through its generated mapper if it has one
+     */
+    @SuppressWarnings("unchecked")
+    void setValue(Object entity, AttrField attr, Object value) {
+        String column = attr.getColumnName().toLowerCase();
+        Integer mapperIndex = mapperColumns.get(column);
+
+        if (mapperIndex != null) {
+            ((EntityMapper<Object>) mapper).set(entity, mapperIndex, value);
+            return;
+        }
+
+        invokeSetter(setters.get(column), attr.getName(), attr.getType(), entity, value);
+    }
+
+    private void invokeSetter(Method setter, String fieldName, Class<?> type, Object entity, Object value) {
+        if (setter == null) {
+            throw new RuntimeException("Did not find a setter for " + fieldName + " in: " + clas.getName());
+        }
+
+        if (value instanceof Number) {
+            Number number = (Number) value;
+
+            if (type == int.class || type == Integer.class) {
+                value = number.intValue();
+            } else if (type == long.class || type == Long.class) {
+                value = number.longValue();
+            } else if (type == short.class || type == Short.class) {
+                value = number.shortValue();
+            }
+        }
+
+        try {
+            setter.invoke(entity, value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == int.class || type == Integer.class || type == long.class || type == Long.class;
+    }
+
+    static String accessorName(String prefix, String fieldName) {
+        char[] nameArr = fieldName.toCharArray();
+        nameArr[0] = Character.toUpperCase(nameArr[0]);
+        return prefix + String.valueOf(nameArr);
+    }
+
+    String getDeleteSql() {
+        requirePrimaryKey();
+        return "delete from " + tableName + " where " + primaryKey.getColumnName() + " = ?";
+    }
+
+    private void requirePrimaryKey() {
+        if (primaryKey == null) {
+            throw new RuntimeException("Did not find a field annotated with @PK in: " + clas.getName());
+        }
+    }
+}
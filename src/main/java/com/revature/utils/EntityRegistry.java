@@ -0,0 +1,43 @@
+package com.revature.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * EntityRegistry.java
+ * Cache of the metadata of every entity Aftermath has seen
+ */
+class EntityRegistry {
+    private static final ConcurrentHashMap<Class<?>, EntityMetadata> entities = new ConcurrentHashMap<>();
+
+    private EntityRegistry() { }
+
+    static EntityMetadata get(Class<?> clas) {
+        EntityMetadata metadata = entities.get(clas);
+        return metadata != null ? metadata : entities.computeIfAbsent(clas, EntityMetadata::new);
+    }
+
+    static boolean isRegistered(Class<?> clas) {
+        return entities.containsKey(clas);
+    }
+
+    static Collection<EntityMetadata> getAll() {
+        return new ArrayList<>(entities.values());
+    }
+
+    /**
+     * @return the registered entity whose @PK has the same column name as the @FK, or null if there is none
+     */
+    static EntityMetadata findReferenced(FKField fk) {
+        for (EntityMetadata candidate : entities.values()) {
+            if (candidate.getPrimaryKey() != null && candidate.getTableName() != null
+                    && candidate.getPrimaryKey().getColumnName().equals(fk.getColumnName())
+                    && !candidate.getEntityClass().equals(fk.getDeclaringClass())) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+}
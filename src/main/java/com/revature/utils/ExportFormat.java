@@ -0,0 +1,16 @@
+package com.revature.utils;
+
+/**
+ * File formats that CrudModel.exportTo() writes and CrudModel.importFrom() reads
+ */
+public enum ExportFormat {
+    /**
+     * Comma separated values with a header row; null is an empty field and an empty string is ""
+     */
+    CSV,
+
+    /**
+     * PostgreSQL's binary COPY format; the most compact and fastest to parse, but only PostgreSQL reads it
+     */
+    BINARY
+}
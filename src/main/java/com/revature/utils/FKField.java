@@ -25,4 +25,8 @@ public class FKField {
     public String getColumnName() {
         return fkField.getAnnotation(FK.class).columnName();
     }
+
+    public Class<?> getDeclaringClass() {
+        return fkField.getDeclaringClass();
+    }
 }
@@ -2,23 +2,52 @@ package com.revature.utils;
 
 import com.revature.annotations.Table;
 import com.revature.exceptions.BadMethodChainCallException;
+import com.revature.exceptions.InvalidInputException;
+import com.revature.exceptions.QueryCancelledException;
+import com.revature.exceptions.QueryTimeoutException;
+import com.revature.exceptions.RowLockedException;
+import com.revature.metrics.OperationType;
+import org.reactivestreams.Publisher;
 
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 class Grab<T> extends ModelScraper {
-    PreparedStatement ps;
-    private Connection conn;
+    private static final Object END_OF_SCAN = new Object();
+
+    SqlStatement ps;
     private CrudModel<T> ref;
     private ArrayList<AttrField> appliedAttrs;
+    private AttrField orderColumn;
+    private boolean descending;
+    private int limit;
+    private boolean forUpdate;
+    private String lockWait; // " skip locked", " nowait", or empty to wait for locked rows
 
     Grab (CrudModel<T> ref) {
         this.setTargetClass(ref.clas);
-        this.conn = ref.conn;
         this.ref = ref;
         appliedAttrs = new ArrayList<>();
     }
@@ -31,55 +60,805 @@ class Grab<T> extends ModelScraper {
 
     CrudModel<T> grab(String... attrs) {
         appliedAttrs.clear();
+        orderColumn = null;
+        descending = false;
+        limit = 0;
+        forUpdate = false;
+        lockWait = "";
+        Table table = ref.clas.getAnnotation(Table.class);
+        String tableName = table.tableName();
 
-        try {
-            Table table = ref.clas.getAnnotation(Table.class);
-            String tableName = table.tableName();
+        if (attrs.length == 0) {
+            ps = new SqlStatement("select * from " + tableName);
+            attrFields.stream().forEach(attr -> appliedAttrs.add(attr));
+            return ref;
+        }
+
+        StringBuilder queryPlaceholders = new StringBuilder();
+        String delimiter;
+
+        for (int i=0; i<attrs.length; i++) {
+            delimiter = (i < attrs.length - 1) ? ", " : "";
 
-            if (attrs.length == 0) {
-                ps = conn.prepareStatement("select * from " + tableName);
-                attrFields.stream().forEach(attr -> appliedAttrs.add(attr));
-                return ref;
+            AttrField currentAttr = getAttributeByColumnName(attrs[i]);
+
+            if (currentAttr != null) {
+                queryPlaceholders.append(attrs[i] + delimiter);
+                appliedAttrs.add(currentAttr);
             }
+        }
 
-            StringBuilder queryPlaceholders = new StringBuilder();
-            String delimiter;
+        ps = new SqlStatement("select " + queryPlaceholders.toString() + " from " + tableName);
+        return ref;
+    }
 
-            for (int i=0; i<attrs.length; i++) {
-                delimiter = (i < attrs.length - 1) ? ", " : "";
+    CrudModel<T> orderBy(String attr, boolean ascending) {
+        AttrField column = getAttributeByColumnName(attr);
 
-                AttrField currentAttr = getAttributeByColumnName(attrs[i]);
+        if (column == null) {
+            throw new InvalidInputException("orderBy() was given a column that isn't mapped: " + attr);
+        }
 
-                if (currentAttr != null) {
-                    queryPlaceholders.append(attrs[i] + delimiter);
-                    appliedAttrs.add(currentAttr);
-                }
-            }
+        orderColumn = column;
+        descending = !ascending;
+        return ref;
+    }
 
-            ps = conn.prepareStatement("select " + queryPlaceholders.toString() + " from " + tableName);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    CrudModel<T> limit(int rows) {
+        if (rows <= 0) {
+            throw new InvalidInputException("limit() requires a positive amount of rows");
         }
 
+        limit = rows;
         return ref;
     }
 
+    CrudModel<T> forUpdate() {
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            throw new BadMethodChainCallException("forUpdate() can't lock the rows of sharded entities, since the"
+                    + " shards are read outside of the transaction");
+        }
+
+        forUpdate = true;
+        return ref;
+    }
+
+    CrudModel<T> skipLocked() {
+        return lockWait("skipLocked()", " skip locked");
+    }
+
+    CrudModel<T> noWait() {
+        return lockWait("noWait()", " nowait");
+    }
+
+    private CrudModel<T> lockWait(String method, String clause) {
+        if (!forUpdate) {
+            throw new BadMethodChainCallException(method + " can only be called off of forUpdate()");
+        }
+
+        lockWait = clause;
+        return ref;
+    }
+
+    /**
+     * @return the select statement of the method chain, including its order by, limit, and locking clauses
+     */
+    private SqlStatement selectSql() {
+        if (forUpdate) {
+            requireTransaction();
+        }
+
+        return ps.copy()
+                .append(orderColumn == null ? "" : " order by " + orderColumn.getColumnName() + (descending ? " desc" : ""))
+                .append(limit == 0 ? "" : ConnectionFactory.getInstance().getDialect().limit(limit))
+                .append(forUpdate ? " for update" + lockWait : "");
+    }
+
+    /**
+     * @return the select statement of the method chain as the subquery of another chain's where clause
+     * @param correlation predicate tying the subquery to the outer row, or null
+     */
+    SqlStatement subquerySql(String correlation) {
+        requireNestable("a subquery");
+        String sql = ps.getSql();
+
+        if (correlation != null) {
+            int whereAt = sql.indexOf(" where ");
+            sql = whereAt < 0
+                    ? sql + " where " + correlation
+                    : sql.substring(0, whereAt) + " where (" + sql.substring(whereAt + 7) + ") and " + correlation;
+        }
+
+        return ps.withSql(sql
+                + (orderColumn == null ? "" : " order by " + orderColumn.getColumnName() + (descending ? " desc" : ""))
+                + (limit == 0 ? "" : ConnectionFactory.getInstance().getDialect().limit(limit)));
+    }
+
+    /**
+     * @return amount of columns the select of the method chain returns
+     */
+    int selectedColumns() {
+        return appliedAttrs.size();
+    }
+
+    /**
+     * @return the select of every column of the rows the method chain matches, to be joined as a derived
+     * table; the chain's own order by and limit are left to the join
+     */
+    SqlStatement joinSql() {
+        requireNestable("a join");
+        String sql = ps.getSql();
+        return ps.withSql("select *" + sql.substring(sql.indexOf(" from ")));
+    }
+
+    /**
+     * @return the order by and limit clauses of the method chain, with the column qualified by the alias
+     * of its table in a join
+     */
+    String orderLimitSql(String alias) {
+        return (orderColumn == null ? "" : " order by " + alias + "." + orderColumn.getColumnName() + (descending ? " desc" : ""))
+                + (limit == 0 ? "" : ConnectionFactory.getInstance().getDialect().limit(limit));
+    }
+
+    boolean isOrderedOrLimited() {
+        return orderColumn != null || limit > 0;
+    }
+
+    List<AttrField> getGrabbedAttrs() {
+        return Collections.unmodifiableList(appliedAttrs);
+    }
+
+    /**
+     * @return a parser for the grabbed columns of a result set in which they are labeled prefix + column name
+     */
+    ResultSetParser<T> parser(String labelPrefix) {
+        setAppliedFields(new ArrayList<>(appliedAttrs));
+        return new ResultSetParser<>(ref.clas, this, labelPrefix);
+    }
+
+    /**
+     * Nesting the select in another statement means it runs on the database of that statement, within its
+     * locks
+     */
+    private void requireNestable(String use) {
+        if (forUpdate) {
+            throw new BadMethodChainCallException("forUpdate() can't be used in " + use);
+        }
+
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            throw new InvalidInputException("A sharded entity can't be used in " + use + ", since its rows"
+                    + " aren't in the database of the outer statement");
+        }
+    }
+
+    /**
+     * Streams and partitioned scans read a single database, so they'd miss the rows on the shards
+     */
+    private void requireUnsharded(String method) {
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            throw new BadMethodChainCallException(method + " can't read the shards of sharded entities; use"
+                    + " runGrab() instead");
+        }
+    }
+
+    /**
+     * Row locks are released when the statement's transaction ends, so locking outside of one would
+     * release them before the rows could be processed
+     */
+    private void requireTransaction() {
+        boolean inTransaction;
+
+        try {
+            inTransaction = Transaction.current() != null || !ref.connection().getAutoCommit();
+        } catch (SQLException e) {
+            inTransaction = false;
+        }
+
+        if (!inTransaction) {
+            throw new BadMethodChainCallException("forUpdate() is only valid inside of a transaction; use"
+                    + " Aftermath.inTransaction() or turnOffAutoCommit()");
+        }
+    }
+
+    /**
+     * Runs the select on a read replica if reads can currently go to one (see the replicas property),
+     * on the primary otherwise
+     */
     ArrayList<T> runGrab() {
-        if (!ps.toString().startsWith("select")) {
+        if (ps == null || !ps.startsWith("select")) {
             throw new BadMethodChainCallException("runGrab() can only be called when grab() is the head of the method chain.");
         }
 
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            return runGrabSharded();
+        }
+
         ArrayList<T> models = new ArrayList<>();
+        long executeNanos = 0;
+        long mappingNanos = 0;
+        Exception error = null;
+        ConnectionPool replica = null;
+        Connection replicaConn = null;
+        SqlStatement select = selectSql();
+        String sql = select.toString();
+        PreparedStatement query = null;
+
         try {
-            ResultSet rs = ps.executeQuery();
+            replica = ConnectionFactory.getInstance().getRouter().canRead(ref.connection())
+                    ? ConnectionFactory.getInstance().getRouter().pickReplica()
+                    : null;
+
+            if (replica != null) {
+                replicaConn = replica.acquire();
+            }
+
+            long start = System.nanoTime();
+            query = select.prepare(replicaConn != null ? replicaConn : ref.connection());
+            prepareNanos = System.nanoTime() - start;
+            start += prepareNanos;
+            ResultSet rs = ref.getQueryHandle().execute(query, PreparedStatement::executeQuery);
+            long executed = System.nanoTime();
+            executeNanos = executed - start;
             setAppliedFields(appliedAttrs);
 
             ResultSetParser<T> mapClas = new ResultSetParser<T>(ref.clas, this);
             models = mapClas.mapResultSet(rs);
-        } catch (SQLException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            mappingNanos = System.nanoTime() - executed;
+        } catch (SQLException e) {
+            error = e;
+
+            if (ConnectionFactory.getInstance().getDialect().isLockNotAvailable(e)) {
+                recordQuery(OperationType.GRAB, sql, executeNanos, mappingNanos, 0, error);
+                throw new RowLockedException(e.getMessage(), e);
+            }
+
+            System.out.println(e.getMessage());
+        } catch (QueryTimeoutException | QueryCancelledException e) {
+            recordQuery(OperationType.GRAB, sql, executeNanos, mappingNanos, 0, e);
+            throw e;
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            error = e;
+            System.out.println(e.getMessage());
+        } finally {
+            if (query != null) {
+                try {
+                    query.close();
+                } catch (SQLException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+
+            if (replicaConn != null) {
+                replica.release(replicaConn);
+            }
+        }
+
+        recordQuery(OperationType.GRAB, sql, executeNanos, mappingNanos, models.size(), error);
+        return models;
+    }
+
+    /**
+     * Runs the select on the one shard the where clause pins the @ShardKey to, or on every shard in
+     * parallel; the rows of every shard are merged by the order by column and cut off at the limit
+     */
+    private ArrayList<T> runGrabSharded() {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        ArrayList<T> models = new ArrayList<>();
+        SqlStatement select = selectSql();
+        String sql = select.toString();
+        long start = System.nanoTime();
+        Exception error = null;
+
+        try {
+            setAppliedFields(new ArrayList<>(appliedAttrs));
+
+            for (ArrayList<T> shardModels : shards.onShards(targetShards(), conn -> {
+                try (PreparedStatement st = select.prepare(conn);
+                     ResultSet rs = ref.getQueryHandle().execute(st, PreparedStatement::executeQuery)) {
+                    return new ResultSetParser<T>(ref.clas, this).mapResultSet(rs);
+                }
+            })) {
+                models.addAll(shardModels);
+            }
+
+            if (orderColumn != null) {
+                models.sort(orderComparator(metadata));
+            }
+
+            if (limit > 0 && models.size() > limit) {
+                models = new ArrayList<>(models.subList(0, limit));
+            }
+        } catch (SQLException e) {
+            error = e;
             System.out.println(e.getMessage());
+        } catch (QueryTimeoutException | QueryCancelledException e) {
+            recordQuery(OperationType.GRAB, sql, System.nanoTime() - start, 0, 0, e);
+            throw e;
         }
 
+        // shards are scanned concurrently, so execution and mapping can't be told apart
+        recordQuery(OperationType.GRAB, sql, System.nanoTime() - start, 0, models.size(), error);
         return models;
     }
+
+    /**
+     * Reads the grabbed columns straight off of the result set into a ColumnBatch instead of mapping
+     * entities. The rows are streamed through a cursor, from a read replica if reads can currently go to
+     * one. On sharded entities the rows of every shard are appended one shard after the other, so
+     * orderBy() and limit() can't be used.
+     * @param offHeap whether to store the vectors in direct buffers instead of Java arrays
+     */
+    ColumnBatch runGrabColumnar(boolean offHeap) throws SQLException {
+        if (ps == null || !ps.startsWith("select")) {
+            throw new BadMethodChainCallException("runGrabColumnar() can only be called when grab() is the head of the method chain.");
+        }
+
+        if (forUpdate) {
+            throw new BadMethodChainCallException("runGrabColumnar() doesn't lock rows; use runGrab() instead");
+        }
+
+        SqlStatement sql = selectSql();
+        ArrayList<AttrField> columns = new ArrayList<>(appliedAttrs);
+        long start = System.nanoTime();
+        ColumnBatch[] batch = new ColumnBatch[1];
+        Exception error = null;
+
+        try {
+            ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+
+            if (!shards.isSharded(EntityRegistry.get(clas))) {
+                DataSourceRouter router = ConnectionFactory.getInstance().getRouter();
+                ConnectionPool replica = router.canRead(ref.connection()) ? router.pickReplica() : null;
+                Connection conn = replica == null ? ref.connection() : replica.acquire();
+
+                try {
+                    batch[0] = readColumnar(conn, sql, columns, offHeap);
+                    return batch[0];
+                } finally {
+                    if (replica != null) {
+                        replica.release(conn);
+                    }
+                }
+            }
+
+            if (orderColumn != null || limit > 0) {
+                throw new BadMethodChainCallException("runGrabColumnar() can't merge the shards of sharded entities"
+                        + " by orderBy() or cut them off at limit()");
+            }
+
+            ColumnBatch sharded = ColumnBatch.open(offHeap);
+            batch[0] = sharded;
+
+            for (int shard : targetShards()) {
+                shards.onShards(Collections.singletonList(shard), conn -> {
+                    readColumnar(conn, sql, rs -> sharded.append(rs, columns, 0));
+                    return null;
+                });
+            }
+
+            sharded.finish();
+            return sharded;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            // rows are read while they are fetched, so execution and mapping can't be told apart
+            recordQuery(OperationType.GRAB, sql.toString(), System.nanoTime() - start, 0,
+                    batch[0] == null ? 0 : batch[0].size(), error);
+        }
+    }
+
+    private ColumnBatch readColumnar(Connection conn, SqlStatement sql, List<AttrField> columns, boolean offHeap)
+            throws SQLException {
+        ColumnBatch[] batch = new ColumnBatch[1];
+        readColumnar(conn, sql, rs -> batch[0] = ColumnBatch.read(rs, columns, offHeap, limit));
+        return batch[0];
+    }
+
+    /**
+     * Runs the select through a cursor; postgres only streams through one while inside of a transaction
+     */
+    private void readColumnar(Connection conn, SqlStatement sql, ResultSetReader reader) throws SQLException {
+        boolean restoreAutoCommit = conn.getAutoCommit();
+
+        if (restoreAutoCommit) {
+            conn.setAutoCommit(false);
+        }
+
+        try (PreparedStatement st = sql.prepare(conn)) {
+            st.setFetchSize(CrudModel.DEFAULT_FETCH_SIZE);
+
+            try (ResultSet rs = ref.getQueryHandle().execute(st, PreparedStatement::executeQuery)) {
+                reader.read(rs);
+            }
+        } finally {
+            if (restoreAutoCommit) {
+                conn.rollback(); // nothing was written, the transaction only held the cursor
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private interface ResultSetReader {
+        void read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Runs an aggregate over the rows matched by the method chain; on sharded entities every shard
+     * aggregates its own rows and the partial results are combined
+     * @param attr column to aggregate, or null to count rows
+     * @return a Long for COUNT, a BigDecimal for SUM and AVG, the column's own type for MIN and MAX,
+     * or null if there were no rows to aggregate
+     */
+    Number runAggregate(Aggregate fn, String attr) throws SQLException {
+        if (ps == null || !ps.startsWith("select")) {
+            throw new BadMethodChainCallException("runAggregate() can only be called when grab() is the head of the method chain.");
+        }
+
+        if (attr == null ? fn != Aggregate.COUNT : getAttributeByColumnName(attr) == null) {
+            throw new InvalidInputException(fn + " needs a mapped column, got: " + attr);
+        }
+
+        String column = attr == null ? "*" : attr;
+        String query = ps.getSql();
+        String select = fn == Aggregate.AVG
+                ? "select sum(" + column + "), count(" + column + ")"
+                : "select " + fn.name().toLowerCase() + "(" + column + ")";
+        SqlStatement sql = ps.withSql(select + query.substring(query.indexOf(" from ")));
+        long start = System.nanoTime();
+        Exception error = null;
+        List<Object[]> partials = new ArrayList<>();
+
+        ShardRouter.ShardTask<Object[]> task = conn -> {
+            try (PreparedStatement st = sql.prepare(conn);
+                 ResultSet rs = ref.getQueryHandle().execute(st, PreparedStatement::executeQuery)) {
+                rs.next();
+                return fn == Aggregate.AVG ? new Object[] { rs.getObject(1), rs.getObject(2) } : new Object[] { rs.getObject(1) };
+            }
+        };
+
+        try {
+            ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+
+            if (shards.isSharded(EntityRegistry.get(clas))) {
+                partials = shards.onShards(targetShards(), task);
+            } else {
+                DataSourceRouter router = ConnectionFactory.getInstance().getRouter();
+                ConnectionPool replica = router.canRead(ref.connection()) ? router.pickReplica() : null;
+                Connection conn = replica == null ? ref.connection() : replica.acquire();
+
+                try {
+                    partials.add(task.run(conn));
+                } finally {
+                    if (replica != null) {
+                        replica.release(conn);
+                    }
+                }
+            }
+
+            return combine(fn, partials);
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } catch (Exception e) {
+            error = e;
+            throw new SQLException(e.getMessage(), e);
+        } finally {
+            recordQuery(OperationType.GRAB, sql.toString(), System.nanoTime() - start, 0, partials.size(), error);
+        }
+    }
+
+    private static Number combine(Aggregate fn, List<Object[]> partials) {
+        BigDecimal total = null;
+        long count = 0;
+        Number best = null;
+
+        for (Object[] partial : partials) {
+            Number value = (Number) partial[0];
+
+            switch (fn) {
+                case COUNT:
+                    count += value.longValue();
+                    break;
+                case MIN:
+                case MAX:
+                    if (value != null && (best == null || (decimal(value).compareTo(decimal(best)) < 0) == (fn == Aggregate.MIN))) {
+                        best = value;
+                    }
+                    break;
+                default:
+                    if (value != null) {
+                        total = total == null ? decimal(value) : total.add(decimal(value));
+                    }
+
+                    if (fn == Aggregate.AVG) {
+                        count += ((Number) partial[1]).longValue();
+                    }
+            }
+        }
+
+        switch (fn) {
+            case COUNT:
+                return count;
+            case MIN:
+            case MAX:
+                return best;
+            case SUM:
+                return total;
+            default:
+                return count == 0 ? null : total.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+        }
+    }
+
+    private static BigDecimal decimal(Number value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
+    /**
+     * @return the shard the where clause pins the @ShardKey to, or every shard
+     */
+    private List<Integer> targetShards() {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        String pin = ref.shardPin();
+
+        return pin == null
+                ? shards.allShards()
+                : Collections.singletonList(shards.shardOf(EntityRegistry.get(clas).getShardKey(), pin));
+    }
+
+    /**
+     * Orders like postgres does by default: nulls last when ascending, first when descending
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Comparator<T> orderComparator(EntityMetadata metadata) {
+        Comparator<Comparable> values = Comparator.nullsLast(Comparator.<Comparable>naturalOrder());
+        Comparator<T> order = (a, b) -> values.compare((Comparable) metadata.getValue(a, orderColumn),
+                (Comparable) metadata.getValue(b, orderColumn));
+
+        return descending ? order.reversed() : order;
+    }
+
+    /**
+     * Builds a publisher that streams the rows of the select statement through a cursor
+     * @param fetchSize amount of rows the driver fetches from the database per round trip
+     * @return publisher that maps rows as its subscriber requests them
+     */
+    Publisher<T> runGrabPublisher(int fetchSize) {
+        if (ps == null || !ps.startsWith("select")) {
+            throw new BadMethodChainCallException("runGrabPublisher() can only be called when grab() is the head of the method chain.");
+        }
+
+        if (fetchSize <= 0) {
+            throw new InvalidInputException("runGrabPublisher() requires a positive fetch size");
+        }
+
+        requireUnsharded("runGrabPublisher()");
+
+        SqlStatement query = selectSql();
+
+        setAppliedFields(new ArrayList<>(appliedAttrs));
+        return new GrabPublisher<>(query, ref.connection(), new ResultSetParser<T>(ref.clas, this), fetchSize,
+                ref.getQueryHandle());
+    }
+
+    /**
+     * Splits the grab into @PK ranges (found from the min and max @PK that match the where clause)
+     * and scans every range on its own pooled connection. Rows are handed to the stream as soon as
+     * they're mapped, through a queue of DEFAULT_FETCH_SIZE rows that holds the scans back while the
+     * stream's consumer is behind, so the result is never buffered as a whole. No ordering is
+     * guaranteed across ranges, which is why orderBy() and limit() can't be used. Close the stream if
+     * it isn't consumed to the end, so the scans stop.
+     * @param partitions amount of @PK ranges to scan concurrently
+     * @return stream of every grabbed row; a failed scan is rethrown from the stream, wrapped in a
+     * RuntimeException unless it is one
+     */
+    Stream<T> runGrabParallel(int partitions) throws SQLException {
+        ArrayBlockingQueue<Object> queue = new ArrayBlockingQueue<>(CrudModel.DEFAULT_FETCH_SIZE);
+        AtomicBoolean closed = new AtomicBoolean();
+        List<Callable<Void>> scans = rangeScans(partitions, model -> offer(queue, closed, model));
+
+        if (scans.isEmpty()) {
+            return Stream.empty();
+        }
+
+        AtomicInteger running = new AtomicInteger(scans.size());
+
+        for (Callable<Void> scan : scans) {
+            Workers.execute(() -> {
+                try {
+                    scan.call();
+
+                    if (running.decrementAndGet() == 0) {
+                        offer(queue, closed, END_OF_SCAN);
+                    }
+                } catch (Exception e) {
+                    // the first failure ends the stream and stops the other scans
+                    if (closed.compareAndSet(false, true)) {
+                        queue.clear();
+                        queue.offer(e);
+                    }
+                }
+            });
+        }
+
+        Iterator<T> rows = new Iterator<T>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        closed.set(true);
+                        throw new IllegalStateException("Interrupted while waiting for the partitioned scan", e);
+                    }
+                }
+
+                if (next instanceof Exception) {
+                    Exception failure = (Exception) next;
+                    throw failure instanceof RuntimeException ? (RuntimeException) failure
+                            : new RuntimeException(failure.getMessage(), failure);
+                }
+
+                return next != END_OF_SCAN;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                T model = (T) next;
+                next = null;
+                return model;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    closed.set(true);
+                    queue.clear();
+                });
+    }
+
+    /**
+     * Same as runGrabParallel(int), but hands every row to the sink as soon as it's mapped and returns
+     * once every range is scanned. The sink is called concurrently from the scanning threads, so it has
+     * to be thread safe, and no ordering is guaranteed across ranges, so orderBy() and limit() can't be
+     * used either.
+     * @param partitions amount of @PK ranges to scan concurrently
+     * @param sink thread safe consumer of the grabbed rows
+     */
+    void runGrabParallel(int partitions, Consumer<? super T> sink) throws SQLException {
+        if (sink == null) {
+            throw new InvalidInputException("runGrabParallel() needs a sink to hand the rows to");
+        }
+
+        Workers.invokeAll(rangeScans(partitions, sink::accept), "the partitioned scan");
+    }
+
+    /**
+     * Waits for room in the queue, giving up once the stream was closed
+     */
+    private static void offer(ArrayBlockingQueue<Object> queue, AtomicBoolean closed, Object row)
+            throws InterruptedException {
+        do {
+            if (closed.get()) {
+                throw new CancellationException("The stream of the partitioned scan was closed");
+            }
+        } while (!queue.offer(row, 100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return a scan of every @PK range, each handing its rows to the sink; no scans if no row matches
+     */
+    private List<Callable<Void>> rangeScans(int partitions, RowSink<T> sink) throws SQLException {
+        if (ps == null || !ps.startsWith("select")) {
+            throw new BadMethodChainCallException("runGrabParallel() can only be called when grab() is the head of the method chain.");
+        }
+
+        if (partitions <= 0) {
+            throw new InvalidInputException("runGrabParallel() requires a positive amount of partitions");
+        }
+
+        if (forUpdate) {
+            throw new BadMethodChainCallException("runGrabParallel() scans on pooled connections outside of the"
+                    + " transaction, so it can't lock rows; use runGrab() instead");
+        }
+
+        if (orderColumn != null || limit > 0) {
+            throw new BadMethodChainCallException("runGrabParallel() can't merge its ranges by orderBy() or cut"
+                    + " them off at limit(); use runGrab() instead");
+        }
+
+        requireUnsharded("runGrabParallel()");
+
+        String tableName = ref.clas.getAnnotation(Table.class).tableName();
+        String pkColumn = getPrimaryKey().getColumnName();
+        String query = ps.getSql();
+        int whereAt = query.indexOf(" where ");
+        String head = whereAt < 0 ? query : query.substring(0, whereAt);
+        String filter = whereAt < 0 ? "" : query.substring(whereAt + " where ".length()).trim();
+        String filterClause = filter.isEmpty() ? "" : " where " + filter;
+        ArrayList<Callable<Void>> scans = new ArrayList<>();
+
+        long min;
+        long max;
+
+        SqlStatement boundsQuery = ps.withSql("select min(" + pkColumn + "), max(" + pkColumn + ") from " + tableName
+                + filterClause);
+
+        try (PreparedStatement st = boundsQuery.prepare(ref.connection());
+             ResultSet bounds = ref.getQueryHandle().execute(st, PreparedStatement::executeQuery)) {
+            if (!bounds.next() || bounds.getObject(1) == null) {
+                return scans;
+            }
+
+            min = bounds.getLong(1);
+            max = bounds.getLong(2);
+        }
+
+        // unsigned, since the span of the whole range of longs doesn't fit in a long
+        long lastOffset = max - min;
+        int ranges = Long.compareUnsigned(lastOffset, partitions - 1) < 0 ? (int) lastOffset + 1 : partitions;
+        long rangeSize = Long.divideUnsigned(lastOffset, ranges) + 1;
+        SqlStatement rangeQuery = ps.withSql(head + " where " + (filter.isEmpty() ? "" : "(" + filter + ") and ")
+                + pkColumn + " between ? and ?");
+
+        setAppliedFields(new ArrayList<>(appliedAttrs));
+        ConnectionPool pool = ConnectionFactory.getInstance().getReadPool(ref.connection());
+
+        for (int i = 0; i < ranges; i++) {
+            long offset = i * rangeSize;
+
+            if (Long.compareUnsigned(offset, lastOffset) > 0) {
+                break;
+            }
+
+            long lower = min + offset;
+            long upper = Long.compareUnsigned(lastOffset - offset, rangeSize - 1) <= 0 ? max : lower + rangeSize - 1;
+            ResultSetParser<T> parser = new ResultSetParser<>(ref.clas, this);
+
+            scans.add(() -> {
+                scanRange(pool, rangeQuery, lower, upper, parser, sink);
+                return null;
+            });
+        }
+
+        return scans;
+    }
+
+    private void scanRange(ConnectionPool pool, SqlStatement rangeQuery, long lower, long upper,
+                           ResultSetParser<T> parser, RowSink<T> sink) throws Exception {
+        Connection rangeConn = pool.acquire();
+
+        try {
+            // postgres only streams through a cursor while inside of a transaction
+            rangeConn.setAutoCommit(false);
+
+            try (PreparedStatement rangePs = rangeQuery.prepare(rangeConn)) {
+                int index = rangeQuery.getParameterCount() + 1;
+                rangePs.setLong(index, lower);
+                rangePs.setLong(index + 1, upper);
+                rangePs.setFetchSize(CrudModel.DEFAULT_FETCH_SIZE);
+
+                try (ResultSet rs = ref.getQueryHandle().execute(rangePs, PreparedStatement::executeQuery)) {
+                    while (rs.next()) {
+                        sink.accept(parser.mapRow(rs));
+                    }
+                }
+            }
+        } finally {
+            pool.release(rangeConn);
+        }
+    }
+
+    private interface RowSink<T> {
+        void accept(T model) throws Exception;
+    }
 }
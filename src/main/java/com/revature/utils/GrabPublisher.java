@@ -0,0 +1,191 @@
+package com.revature.utils;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GrabPublisher.java
+ * A single-use publisher that maps the rows of a select statement lazily from a database cursor.
+ * Rows are only read off of the cursor when the subscriber requests them, so a slow subscriber
+ * throttles the query instead of the whole result set being buffered in memory. The statement is only
+ * prepared once a subscriber requests rows, and closed when the subscription ends.
+ */
+class GrabPublisher<T> implements Publisher<T> {
+    private final SqlStatement statement;
+    private final Connection conn;
+    private final ResultSetParser<T> parser;
+    private final int fetchSize;
+    private final QueryHandle handle;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    GrabPublisher(SqlStatement statement, Connection conn, ResultSetParser<T> parser, int fetchSize,
+                  QueryHandle handle) {
+        this.statement = statement;
+        this.conn = conn;
+        this.parser = parser;
+        this.fetchSize = fetchSize;
+        this.handle = handle;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber can't be null");
+        }
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                public void request(long n) { }
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("runGrabPublisher() only supports a single subscriber;"
+                    + " call runGrabPublisher() again to re-run the query"));
+            return;
+        }
+
+        subscriber.onSubscribe(new GrabSubscription(subscriber));
+    }
+
+    private class GrabSubscription implements Subscription {
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+        private PreparedStatement ps;
+        private ResultSet rs;
+        private boolean restoreAutoCommit;
+
+        GrabSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request() needs a positive amount of rows, got " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        /**
+         * Only one thread reads off of the cursor at a time; calls made while another thread is
+         * draining are picked up by that thread before it leaves the loop
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+
+            do {
+                if (!done) {
+                    emit();
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            try {
+                while (true) {
+                    if (cancelled) {
+                        release();
+                        return;
+                    }
+
+                    if (invalidRequest != null) {
+                        release();
+                        subscriber.onError(invalidRequest);
+                        return;
+                    }
+
+                    if (demand.get() == 0) {
+                        return;
+                    }
+
+                    if (rs == null) {
+                        open();
+                    }
+
+                    if (!rs.next()) {
+                        release();
+                        subscriber.onComplete();
+                        return;
+                    }
+
+                    T model = parser.mapRow(rs);
+                    demand.decrementAndGet();
+                    subscriber.onNext(model);
+                }
+            } catch (Exception e) {
+                release();
+                subscriber.onError(e);
+            }
+        }
+
+        private void open() throws SQLException {
+            // postgres only streams through a cursor while inside of a transaction
+            if (conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+
+            ps = statement.prepare(conn);
+            ps.setFetchSize(fetchSize);
+            rs = handle.execute(ps, PreparedStatement::executeQuery);
+        }
+
+        private void release() {
+            done = true;
+
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+
+                if (ps != null) {
+                    ps.close();
+                }
+
+                if (restoreAutoCommit) {
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            } finally {
+                // the connection may belong to the caller, so it must never stay in manual commit mode
+                if (restoreAutoCommit) {
+                    restoreAutoCommit = false;
+
+                    try {
+                        conn.setAutoCommit(true);
+                    } catch (SQLException e) {
+                        System.out.println(e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.revature.utils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * H2Dialect.java
+ * The H2 database, e.g. in-process through a jdbc:h2:mem: url for integration tests and benchmarks.
+ * Unquoted names are kept in lower case and nulls are ordered like on PostgreSQL, so the same entities
+ * and schema work on both.
+ */
+public class H2Dialect implements Dialect {
+    private static final String LOCK_TIMEOUT = "HYT00"; // raised by nowait and lock timeouts on a locked row
+
+    @Override
+    public boolean accepts(String url) {
+        return url != null && url.startsWith("jdbc:h2:");
+    }
+
+    @Override
+    public String driverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    public void configure(Properties driverProperties) {
+        driverProperties.putIfAbsent("DATABASE_TO_LOWER", "TRUE");
+        driverProperties.putIfAbsent("DEFAULT_NULL_ORDERING", "HIGH");
+    }
+
+    @Override
+    public String primaryKeyType(Class<?> type) {
+        return (type == long.class || type == Long.class ? "bigint" : "integer") + " generated by default as identity";
+    }
+
+    @Override
+    public String columnType(Class<?> type) {
+        return type == byte[].class ? "varbinary" : Dialect.super.columnType(type);
+    }
+
+    /**
+     * Merged rows are only counted as a whole, so with updates every row counts as updated
+     */
+    @Override
+    public String upsertSql(String table, List<String> columns, List<Class<?>> types, List<String> target,
+                            List<String> updates, int rows) {
+        StringBuilder sql = new StringBuilder("merge into ").append(table).append(" using (values ");
+        StringBuilder row = new StringBuilder("(");
+        StringBuilder sourceColumns = new StringBuilder();
+
+        // the parameters of a values list have no column to take their type from
+        for (int i = 0; i < columns.size(); i++) {
+            row.append(i == 0 ? "" : ", ").append("cast(? as ").append(columnType(types.get(i))).append(")");
+            sourceColumns.append(i == 0 ? "" : ", ").append("s.").append(columns.get(i));
+        }
+
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(row).append(")");
+        }
+
+        sql.append(") s (").append(String.join(", ", columns)).append(") on ");
+
+        for (int i = 0; i < target.size(); i++) {
+            String column = target.get(i);
+            sql.append(i == 0 ? "" : " and ").append(table).append(".").append(column).append(" = s.").append(column);
+        }
+
+        if (!updates.isEmpty()) {
+            sql.append(" when matched then update set ");
+
+            for (int i = 0; i < updates.size(); i++) {
+                String column = updates.get(i);
+                sql.append(i == 0 ? "" : ", ").append(column).append(" = s.").append(column);
+            }
+        }
+
+        return sql.append(" when not matched then insert (").append(String.join(", ", columns))
+                .append(") values (").append(sourceColumns).append(")").toString();
+    }
+
+    @Override
+    public int maxParameters() {
+        return Short.MAX_VALUE; // H2 has no limit of its own, this keeps the statements of a batch small
+    }
+
+    @Override
+    public boolean supportsArrays() {
+        return true;
+    }
+
+    @Override
+    public String anyOf(String column, int values) {
+        return column + " = any(?)";
+    }
+
+    @Override
+    public int bindAnyOf(PreparedStatement ps, int index, Class<?> type, List<?> values) throws SQLException {
+        ps.setArray(index, ps.getConnection().createArrayOf(Dialects.arrayType(type), values.toArray()));
+        return index + 1;
+    }
+
+    @Override
+    public boolean isLockNotAvailable(SQLException e) {
+        return LOCK_TIMEOUT.equals(e.getSQLState());
+    }
+}
@@ -0,0 +1,22 @@
+package com.revature.utils;
+
+/**
+ * HashShardResolver.java
+ * Spreads keys evenly over the shards by hashing them. Adding a shard moves most keys, so the amount
+ * of shards should be fixed up front.
+ */
+public class HashShardResolver implements ShardResolver {
+    @Override
+    public int shardOf(Object key, int shards) {
+        long hash = key instanceof Long ? (Long) key : key.toString().hashCode();
+
+        // murmur3's finalizer, so that sequential keys don't all land on neighbouring shards
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return (int) Math.floorMod(hash, (long) shards);
+    }
+}
@@ -0,0 +1,204 @@
+package com.revature.utils;
+
+import com.revature.exceptions.BadMethodChainCallException;
+import com.revature.exceptions.InvalidInputException;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Join.java
+ * Joins the grab() chains of two models in one statement, on the @FK of one entity that references the
+ * @PK of the other. Every chain is nested as a derived table with its own where clause, and the columns
+ * of each side are labeled j0_ and j1_ so that both entities are mapped off of the same row in one pass
+ * over the result set, even when the tables have columns of the same name.
+ */
+public class Join<T, U> {
+    private static final String LEFT = "j0_";
+    private static final String RIGHT = "j1_";
+
+    private final CrudModel<T> ref;
+    private final String tableName;
+    private final SqlStatement sql;
+    private final String rightKey; // label of the right join column, null on the unmatched rows of a left join
+    private final ResultSetParser<T> leftParser;
+    private final ResultSetParser<U> rightParser;
+
+    Join(CrudModel<T> ref, Grab<T> left, Grab<U> right, String fkColumn, boolean leftJoin) {
+        if (right.isOrderedOrLimited()) {
+            throw new BadMethodChainCallException("orderBy() and limit() can only be called on the chain the"
+                    + " join starts from");
+        }
+
+        EntityMetadata leftMetadata = EntityRegistry.get(left.clas);
+        EntityMetadata rightMetadata = EntityRegistry.get(right.clas);
+        String column = joinColumn(leftMetadata, rightMetadata, fkColumn);
+
+        this.ref = ref;
+        this.tableName = leftMetadata.getTableName();
+        this.rightKey = RIGHT + column;
+        this.sql = new SqlStatement("select " + selectList(left.getGrabbedAttrs(), null, "t0", LEFT) + ", "
+                + selectList(right.getGrabbedAttrs(), column, "t1", RIGHT) + " from (")
+                .append(left.joinSql()).append(") t0 " + (leftJoin ? "left join" : "join") + " (")
+                .append(right.joinSql()).append(") t1 on t1." + column + " = t0." + column)
+                .append(left.orderLimitSql("t0"));
+        this.leftParser = left.parser(LEFT);
+        this.rightParser = right.parser(RIGHT);
+    }
+
+    /**
+     * @return the entities of every joined row, in the order of the first chain's orderBy()
+     */
+    public List<Pair<T, U>> runJoin() throws SQLException {
+        return run(rs -> {
+            int keyIndex = rs.findColumn(rightKey);
+            ArrayList<Pair<T, U>> rows = new ArrayList<>();
+
+            while (rs.next()) {
+                T left = mapRow(leftParser, rs);
+                U right = rs.getObject(keyIndex) == null ? null : mapRow(rightParser, rs);
+                rows.add(new Pair<>(left, right));
+            }
+
+            return rows;
+        });
+    }
+
+    /**
+     * Maps the columns of both sides into one projection, matching them to its fields by column name;
+     * when both entities have a column of the same name, the one of the first chain is mapped
+     */
+    public <P> List<P> runJoin(Class<P> projection) throws SQLException {
+        return run(rs -> {
+            ProjectionMapper<P> mapper = new ProjectionMapper<>(projection, rs.getMetaData(),
+                    label -> label.substring(LEFT.length()));
+            ArrayList<P> rows = new ArrayList<>();
+
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+            }
+
+            return rows;
+        });
+    }
+
+    /**
+     * @return the statement the join runs, with its parameters inlined
+     */
+    public String getSql() {
+        return sql.toString();
+    }
+
+    /**
+     * Runs the join on a read replica if reads can currently go to one, on the primary otherwise
+     */
+    private <R> List<R> run(RowsMapper<R> mapper) throws SQLException {
+        DataSourceRouter router = ConnectionFactory.getInstance().getRouter();
+        ConnectionPool replica = router.canRead(ref.connection()) ? router.pickReplica() : null;
+        Connection conn = replica != null ? replica.acquire() : ref.connection();
+        long start = System.nanoTime();
+        long executed = start;
+        List<R> rows = null;
+        Exception error = null;
+
+        try (PreparedStatement st = sql.prepare(conn);
+             ResultSet rs = ref.getQueryHandle().execute(st, PreparedStatement::executeQuery)) {
+            executed = System.nanoTime();
+            rows = mapper.map(rs);
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            if (replica != null) {
+                replica.release(conn);
+            }
+
+            QueryMetrics.record(new QueryEvent(tableName, OperationType.GRAB, sql.toString(), 0, executed - start,
+                    rows == null ? 0 : System.nanoTime() - executed, rows == null ? 0 : rows.size(), error));
+        }
+    }
+
+    /**
+     * @return the column the @FK of one entity and the @PK it references share
+     */
+    private static String joinColumn(EntityMetadata left, EntityMetadata right, String fkColumn) {
+        LinkedHashSet<String> candidates = new LinkedHashSet<>();
+        addReferences(candidates, left, right);
+        addReferences(candidates, right, left);
+
+        if (fkColumn != null) {
+            candidates.retainAll(Collections.singleton(fkColumn));
+        }
+
+        if (candidates.isEmpty()) {
+            throw new InvalidInputException("No @FK " + (fkColumn == null ? "" : "on column " + fkColumn + " ")
+                    + "joins " + left.getTableName() + " with " + right.getTableName());
+        }
+
+        if (candidates.size() > 1) {
+            throw new InvalidInputException(left.getTableName() + " and " + right.getTableName() + " can be joined"
+                    + " on any of " + candidates + "; pass the column of the @FK to join on");
+        }
+
+        return candidates.iterator().next();
+    }
+
+    private static void addReferences(LinkedHashSet<String> candidates, EntityMetadata referencing, EntityMetadata referenced) {
+        if (referenced.getPrimaryKey() == null) {
+            return;
+        }
+
+        for (FKField fk : referencing.getFkFields()) {
+            if (fk.getColumnName().equals(referenced.getPrimaryKey().getColumnName())) {
+                candidates.add(fk.getColumnName());
+            }
+        }
+    }
+
+    private static String selectList(List<AttrField> attrs, String key, String alias, String prefix) {
+        LinkedHashSet<String> columns = new LinkedHashSet<>();
+
+        for (AttrField attr : attrs) {
+            columns.add(attr.getColumnName());
+        }
+
+        if (key != null) {
+            columns.add(key);
+        }
+
+        StringBuilder list = new StringBuilder();
+
+        for (String column : columns) {
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+
+            list.append(alias).append('.').append(column).append(" as ").append(prefix).append(column);
+        }
+
+        return list.toString();
+    }
+
+    private static <E> E mapRow(ResultSetParser<E> parser, ResultSet rs) throws SQLException {
+        try {
+            return parser.mapRow(rs);
+        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private interface RowsMapper<R> {
+        List<R> map(ResultSet rs) throws SQLException;
+    }
+}
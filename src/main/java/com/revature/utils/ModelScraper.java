@@ -3,11 +3,19 @@ package com.revature.utils;
 import com.revature.annotations.Attr;
 import com.revature.annotations.FK;
 import com.revature.annotations.PK;
+import com.revature.annotations.Table;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
 import com.sun.istack.internal.Nullable;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class ModelScraper {
     protected Class<?> clas;
@@ -15,10 +23,27 @@ public class ModelScraper {
     protected ArrayList<FKField> fkFields = new ArrayList<>();
     protected Method[] methods;
     protected ArrayList<AttrField> appliedFields;
+    protected long prepareNanos; // time spent preparing the statement of the current method chain
 
     ModelScraper() { }
 
+    /**
+     * Points the scraper at an entity; the annotations are only scraped the first time an entity is
+     * used, after that its metadata comes from the EntityRegistry
+     */
     protected void setTargetClass(Class<?> clas) {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        this.clas = clas;
+        attrFields.clear();
+        attrFields.addAll(metadata.getAttrFields());
+        methods = metadata.getMethods();
+        fkFields = new ArrayList<>(metadata.getFkFields());
+    }
+
+    /**
+     * Scrapes the annotations of an entity through reflection
+     */
+    protected void scrape(Class<?> clas) {
         this.clas = clas;
         attrFields.clear();
         methods = clas.getMethods();
@@ -61,6 +86,18 @@ public class ModelScraper {
     }
 
     protected PKField getPrimaryKey() {
+        if (EntityRegistry.isRegistered(clas)) {
+            PKField primaryKey = EntityRegistry.get(clas).getPrimaryKey();
+
+            if (primaryKey != null) {
+                return primaryKey;
+            }
+        }
+
+        return scrapePrimaryKey();
+    }
+
+    protected PKField scrapePrimaryKey() {
 
         Field[] fields = clas.getDeclaredFields();
         for (Field field : fields) {
@@ -100,4 +137,66 @@ public class ModelScraper {
 
         return null;
     }
+
+    protected String getTableName() {
+        return clas.getAnnotation(Table.class).tableName();
+    }
+
+    protected void recordQuery(OperationType operation, String statement, long executeNanos, long mappingNanos,
+                               int rows, Throwable error) {
+        if (operation != OperationType.GRAB) {
+            DataSourceRouter.wrote();
+        }
+
+        QueryMetrics.record(new QueryEvent(getTableName(), operation, statement, prepareNanos,
+                executeNanos, mappingNanos, rows, error));
+    }
+
+    /**
+     * Runs an update or delete on the shard the where clause pins the @ShardKey to, or on every shard
+     * @param shardPin @ShardKey value the where clause pins, or null
+     * @return amount of rows affected across the shards
+     */
+    protected int runOnShards(OperationType operation, SqlStatement statement, String shardPin, QueryHandle handle)
+            throws SQLException {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        List<Integer> targets = shardPin == null
+                ? shards.allShards()
+                : Collections.singletonList(shards.shardOf(EntityRegistry.get(clas).getShardKey(), shardPin));
+        long start = System.nanoTime();
+        int rowsAffected = 0;
+        Exception error = null;
+
+        try {
+            for (int rows : shards.onShards(targets, conn -> {
+                try (PreparedStatement st = statement.prepare(conn)) {
+                    return handle.execute(st, PreparedStatement::executeUpdate);
+                }
+            })) {
+                rowsAffected += rows;
+            }
+
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordQuery(operation, statement.toString(), System.nanoTime() - start, 0, rowsAffected, error);
+        }
+    }
+
+    /**
+     * Binds a value given as a string, using the column's database type if the schema was validated
+     */
+    protected void bindValue(PreparedStatement ps, int index, AttrField attr, String value) throws SQLException {
+        TypeRegistry.bind(ps, index, attr.getType(), value,
+                EntityRegistry.get(clas).getColumnType(attr.getColumnName()));
+    }
+
+    /**
+     * Binds the next parameter of the statement to a value given as a string, the same way
+     */
+    protected void bindValue(SqlStatement statement, AttrField attr, String value) {
+        statement.bind(attr.getType(), value, EntityRegistry.get(clas).getColumnType(attr.getColumnName()));
+    }
 }
@@ -0,0 +1,144 @@
+package com.revature.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * MySqlDialect.java
+ * MySQL and MariaDB through Connector/J or the MariaDB driver. JDBC batches are rewritten into
+ * multi-row inserts by the driver, and fetch sizes stream through server side cursors instead of
+ * reading whole result sets into memory.
+ */
+public class MySqlDialect implements Dialect {
+    static final String MYSQL_DRIVER = "com.mysql.cj.jdbc.Driver";
+    static final String MARIADB_DRIVER = "org.mariadb.jdbc.Driver";
+    private static final int LOCK_NOWAIT = 3572; // raised by nowait on a locked row
+    private static final String QUERY_INTERRUPTED = "70100";
+
+    private final String driverClassName;
+
+    public MySqlDialect() {
+        this(MYSQL_DRIVER);
+    }
+
+    /**
+     * @param driverClassName driver to load, e.g. the MariaDB one
+     */
+    public MySqlDialect(String driverClassName) {
+        this.driverClassName = driverClassName;
+    }
+
+    @Override
+    public boolean accepts(String url) {
+        return url != null && (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:"));
+    }
+
+    @Override
+    public String driverClassName() {
+        return driverClassName;
+    }
+
+    @Override
+    public void configure(Properties driverProperties) {
+        driverProperties.putIfAbsent("rewriteBatchedStatements", "true");
+        driverProperties.putIfAbsent("useCursorFetch", "true");
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    @Override
+    public String literal(Object value) {
+        // backslashes escape in MySQL string literals unless NO_BACKSLASH_ESCAPES is set
+        return value instanceof String || value instanceof Character
+                ? "'" + value.toString().replace("\\", "\\\\").replace("'", "''") + "'"
+                : Dialect.super.literal(value);
+    }
+
+    @Override
+    public String primaryKeyType(Class<?> type) {
+        return (type == long.class || type == Long.class ? "bigint" : "int") + " auto_increment";
+    }
+
+    @Override
+    public String columnType(Class<?> type) {
+        if (type == byte[].class) {
+            return "longblob";
+        } else if (type == java.sql.Timestamp.class || type == java.time.LocalDateTime.class) {
+            return "datetime(6)";
+        } else if (type == java.time.OffsetDateTime.class) {
+            return "timestamp(6)";
+        }
+
+        return Dialect.super.columnType(type);
+    }
+
+    /**
+     * InnoDB builds indexes without locking out writes anyway, and create index has no if not exists
+     */
+    @Override
+    public String createIndex(boolean unique, String name, String table, List<String> columns, boolean concurrently) {
+        return "create " + (unique ? "unique " : "") + "index " + name + " on " + table
+                + " (" + String.join(", ", columns) + ")";
+    }
+
+    /**
+     * Conflicts are found on every unique key of the table, not only on the target columns
+     */
+    @Override
+    public String upsertSql(String table, List<String> columns, List<Class<?>> types, List<String> target,
+                            List<String> updates, int rows) {
+        StringBuilder sql = Dialects.insertSql(table, columns, rows);
+
+        if (updates.isEmpty()) {
+            return sql.insert("insert".length(), " ignore").toString();
+        }
+
+        sql.append(" on duplicate key update ");
+
+        for (int i = 0; i < updates.size(); i++) {
+            String column = updates.get(i);
+            sql.append(i == 0 ? "" : ", ").append(column).append(" = values(").append(column).append(")");
+        }
+
+        return sql.toString();
+    }
+
+    /**
+     * Every inserted row counts once and every updated row twice; a row that already had the values
+     * counts once, so it can't be told apart from an inserted one
+     */
+    @Override
+    public int[] upsertCounts(int affected, int rows, boolean updates) {
+        int updated = updates ? Math.max(0, Math.min(rows, affected - rows)) : 0;
+        return new int[] { updates ? rows - updated : affected, updated };
+    }
+
+    @Override
+    public int maxParameters() {
+        return 65535;
+    }
+
+    @Override
+    public PreparedStatement prepareReturningKeys(Connection conn, String sql, String keyColumn) throws SQLException {
+        // the keys of a multi-row insert are the consecutive auto_increment values from the first one on
+        return conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    @Override
+    public boolean isCancelled(SQLException e) {
+        return e instanceof SQLTimeoutException || QUERY_INTERRUPTED.equals(e.getSQLState());
+    }
+
+    @Override
+    public boolean isLockNotAvailable(SQLException e) {
+        return e.getErrorCode() == LOCK_NOWAIT;
+    }
+}
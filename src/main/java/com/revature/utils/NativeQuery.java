@@ -0,0 +1,246 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * NativeQuery.java
+ * Runs hand written SQL (CTEs, window functions, ...) and maps its rows with the same parser runGrab()
+ * uses, so entities come out of a native query exactly like out of a grab. Parameters are bound through
+ * the TypeRegistry. Since the SQL might just as well write (e.g. through a CTE), it's recorded as a
+ * NATIVE operation instead of a grab, and it keeps the reads of the thread on the primary like a write.
+ */
+class NativeQuery<T> {
+    private final CrudModel<T> ref;
+    private final Grab<T> select;
+
+    NativeQuery(CrudModel<T> ref, Grab<T> select) {
+        this.ref = ref;
+        this.select = select;
+    }
+
+    List<T> query(String sql, Object... params) throws SQLException {
+        requireUnsharded("query()");
+        return run(sql, params, rs -> {
+            ResultSetParser<T> parser = parser(rs);
+            ArrayList<T> models = new ArrayList<>();
+
+            while (rs.next()) {
+                models.add(mapRow(parser, rs));
+            }
+
+            return models;
+        });
+    }
+
+    <P> List<P> query(Class<P> projection, String sql, Object... params) throws SQLException {
+        requireUnsharded("query()");
+        return run(sql, params, rs -> {
+            ProjectionMapper<P> mapper = new ProjectionMapper<>(projection, rs.getMetaData());
+            ArrayList<P> rows = new ArrayList<>();
+
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+            }
+
+            return rows;
+        });
+    }
+
+    /**
+     * Maps the rows lazily as the stream is consumed, reading them through a cursor; the stream holds
+     * its statement open until it is closed
+     */
+    Stream<T> stream(String sql, Object... params) throws SQLException {
+        requireUnsharded("queryStream()");
+        Connection conn = ref.connection();
+        EntityMetadata metadata = EntityRegistry.get(ref.clas);
+        boolean restoreAutoCommit = conn.getAutoCommit();
+        long start = System.nanoTime();
+        PreparedStatement ps = null;
+
+        try {
+            // postgres only streams through a cursor while inside of a transaction
+            if (restoreAutoCommit) {
+                conn.setAutoCommit(false);
+            }
+
+            ps = conn.prepareStatement(sql);
+            ps.setFetchSize(CrudModel.DEFAULT_FETCH_SIZE);
+            bind(ps, params);
+            DataSourceRouter.wrote();
+            ResultSet rs = ref.getQueryHandle().execute(ps, PreparedStatement::executeQuery);
+            long executed = System.nanoTime();
+            ResultSetParser<T> parser = parser(rs);
+            PreparedStatement statement = ps;
+            long[] rows = new long[1];
+
+            Iterator<T> iterator = new Iterator<T>() {
+                private Boolean hasNext;
+
+                @Override
+                public boolean hasNext() {
+                    try {
+                        if (hasNext == null) {
+                            hasNext = rs.next();
+                        }
+
+                        return hasNext;
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    hasNext = null;
+                    rows[0]++;
+
+                    try {
+                        return mapRow(parser, rs);
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                }
+            };
+
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(() -> {
+                        try {
+                            statement.close();
+
+                            if (restoreAutoCommit) {
+                                conn.commit(); // the query might have written through a CTE
+                                conn.setAutoCommit(true);
+                            }
+                        } catch (SQLException e) {
+                            System.out.println(e.getMessage());
+                        }
+
+                        QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.NATIVE, sql, 0,
+                                executed - start, System.nanoTime() - executed,
+                                (int) Math.min(Integer.MAX_VALUE, rows[0]), null));
+                    });
+        } catch (SQLException | RuntimeException e) {
+            if (ps != null) {
+                ps.close();
+            }
+
+            if (restoreAutoCommit) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.NATIVE, sql, 0,
+                    System.nanoTime() - start, 0, 0, e));
+            throw e;
+        }
+    }
+
+    private <R> List<R> run(String sql, Object[] params, ResultSetMapper<R> mapper) throws SQLException {
+        EntityMetadata metadata = EntityRegistry.get(ref.clas);
+        long start = System.nanoTime();
+        long prepared = start;
+        long executed = start;
+        List<R> rows = null;
+        Exception error = null;
+
+        try {
+            try (PreparedStatement ps = ref.connection().prepareStatement(sql)) {
+                bind(ps, params);
+                prepared = System.nanoTime();
+                DataSourceRouter.wrote();
+
+                try (ResultSet rs = ref.getQueryHandle().execute(ps, PreparedStatement::executeQuery)) {
+                    executed = System.nanoTime();
+                    rows = mapper.map(rs);
+                    return rows;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.NATIVE, sql,
+                    prepared - start, Math.max(0, executed - prepared), rows == null ? 0 : end - executed,
+                    rows == null ? 0 : rows.size(), error));
+        }
+    }
+
+    /**
+     * Native SQL only ever runs on the primary, where the rows of sharded entities aren't
+     */
+    private void requireUnsharded(String method) {
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(ref.clas))) {
+            throw new InvalidInputException(method + " can't run on the shards of "
+                    + ref.clas.getSimpleName() + "; run the SQL against every shard's database instead");
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Object[] params) throws SQLException {
+        ps.clearParameters();
+
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i] instanceof Enum ? ((Enum<?>) params[i]).name() : params[i];
+            TypeRegistry.bindObject(ps, i + 1, param, null);
+        }
+    }
+
+    /**
+     * Builds a parser for the @Attr columns the query actually selected
+     */
+    private ResultSetParser<T> parser(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        HashSet<String> labels = new HashSet<>();
+
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            labels.add(meta.getColumnLabel(i).toLowerCase());
+        }
+
+        ArrayList<AttrField> selected = new ArrayList<>();
+
+        for (AttrField attr : EntityRegistry.get(ref.clas).getAttrFields()) {
+            if (labels.contains(attr.getColumnName().toLowerCase())) {
+                selected.add(attr);
+            }
+        }
+
+        select.setAppliedFields(selected);
+        return new ResultSetParser<>(ref.clas, select);
+    }
+
+    private static <T> T mapRow(ResultSetParser<T> parser, ResultSet rs) throws SQLException {
+        try {
+            return parser.mapRow(rs);
+        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private interface ResultSetMapper<R> {
+        List<R> map(ResultSet rs) throws SQLException;
+    }
+}
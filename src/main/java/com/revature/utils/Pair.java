@@ -0,0 +1,50 @@
+package com.revature.utils;
+
+import java.util.Objects;
+
+/**
+ * Pair.java
+ * One row of a join: the entity of each side. The right one is null for the rows of a leftJoin() that
+ * had no match.
+ */
+public final class Pair<L, R> {
+    private final L left;
+    private final R right;
+
+    Pair(L left, R right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    public L getLeft() {
+        return left;
+    }
+
+    public R getRight() {
+        return right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof Pair)) {
+            return false;
+        }
+
+        Pair<?, ?> pair = (Pair<?, ?>) o;
+        return Objects.equals(left, pair.left) && Objects.equals(right, pair.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(left, right);
+    }
+
+    @Override
+    public String toString() {
+        return "Pair{" + left + ", " + right + "}";
+    }
+}
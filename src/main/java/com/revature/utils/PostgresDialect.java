@@ -0,0 +1,119 @@
+package com.revature.utils;
+
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * PostgresDialect.java
+ * PostgreSQL through PgJDBC: upserts with insert ... on conflict, arrays bound as one parameter, and
+ * COPY for exporting and importing whole tables
+ */
+public class PostgresDialect implements Dialect {
+    private static final String LOCK_NOT_AVAILABLE = "55P03"; // raised by nowait on a locked row
+
+    @Override
+    public boolean accepts(String url) {
+        return url != null && url.startsWith("jdbc:postgresql:");
+    }
+
+    @Override
+    public String driverClassName() {
+        return "org.postgresql.Driver";
+    }
+
+    @Override
+    public String literal(Object value) {
+        // a X'..' literal would be a bit string
+        return value instanceof byte[] ? "'\\x" + Dialects.hex((byte[]) value) + "'::bytea" : Dialect.super.literal(value);
+    }
+
+    @Override
+    public String primaryKeyType(Class<?> type) {
+        return type == long.class || type == Long.class ? "bigserial" : "serial";
+    }
+
+    @Override
+    public String createIndex(boolean unique, String name, String table, List<String> columns, boolean concurrently) {
+        return "create " + (unique ? "unique " : "") + "index " + (concurrently ? "concurrently " : "")
+                + "if not exists " + name + " on " + table + " (" + String.join(", ", columns) + ")";
+    }
+
+    @Override
+    public String upsertSql(String table, List<String> columns, List<Class<?>> types, List<String> target,
+                            List<String> updates, int rows) {
+        StringBuilder sql = Dialects.insertSql(table, columns, rows).append(" on conflict (")
+                .append(String.join(", ", target));
+
+        if (updates.isEmpty()) {
+            sql.append(") do nothing");
+        } else {
+            sql.append(") do update set ");
+
+            for (int i = 0; i < updates.size(); i++) {
+                String column = updates.get(i);
+                sql.append(i == 0 ? "" : ", ").append(column).append(" = excluded.").append(column);
+            }
+        }
+
+        // xmax is only 0 for row versions that were created by an insert
+        return sql.append(" returning (xmax = 0) as inserted").toString();
+    }
+
+    @Override
+    public boolean upsertReturnsRows() {
+        return true;
+    }
+
+    @Override
+    public int maxParameters() {
+        return Short.MAX_VALUE; // the protocol sends the amount of parameters as a 16 bit integer
+    }
+
+    @Override
+    public boolean supportsArrays() {
+        return true;
+    }
+
+    @Override
+    public String anyOf(String column, int values) {
+        return column + " = any(?)";
+    }
+
+    @Override
+    public int bindAnyOf(PreparedStatement ps, int index, Class<?> type, List<?> values) throws SQLException {
+        ps.setArray(index, ps.getConnection().createArrayOf(Dialects.arrayType(type), values.toArray()));
+        return index + 1;
+    }
+
+    @Override
+    public boolean isLockNotAvailable(SQLException e) {
+        return LOCK_NOT_AVAILABLE.equals(e.getSQLState());
+    }
+
+    @Override
+    public String explain(String sql) {
+        return "explain (analyze, buffers) " + sql;
+    }
+
+    @Override
+    public boolean supportsCopy(Connection conn) throws SQLException {
+        return conn.isWrapperFor(PGConnection.class);
+    }
+
+    @Override
+    public long copyOut(Connection conn, String sql, OutputStream out) throws SQLException, IOException {
+        return conn.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+    }
+
+    @Override
+    public long copyIn(Connection conn, String sql, InputStream in, int bufferSize) throws SQLException, IOException {
+        return conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, in, bufferSize);
+    }
+}
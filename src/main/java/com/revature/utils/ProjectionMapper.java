@@ -0,0 +1,142 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * ProjectionMapper.java
+ * Maps every column of a result set to the field of a projection class whose name matches its label,
+ * ignoring case and underscores, through the field's setter if it has one. Used by query() and by joins.
+ */
+final class ProjectionMapper<P> {
+    private final Class<P> projection;
+    private final ArrayList<Integer> indexes = new ArrayList<>();
+    private final ArrayList<Field> fields = new ArrayList<>();
+    private final ArrayList<Method> setters = new ArrayList<>();
+
+    ProjectionMapper(Class<P> projection, ResultSetMetaData meta) throws SQLException {
+        this(projection, meta, UnaryOperator.identity());
+    }
+
+    /**
+     * @param columnName turns a column label into the name that is matched against the fields; when two
+     * columns end up with the same name, the first one is mapped
+     */
+    ProjectionMapper(Class<P> projection, ResultSetMetaData meta, UnaryOperator<String> columnName) throws SQLException {
+        this.projection = projection;
+        HashMap<String, Field> byName = new HashMap<>();
+        HashSet<Field> mapped = new HashSet<>();
+
+        for (Class<?> c = projection; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    byName.putIfAbsent(normalize(field.getName()), field);
+                }
+            }
+        }
+
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            Field field = byName.get(normalize(columnName.apply(meta.getColumnLabel(i))));
+
+            if (field == null || !mapped.add(field)) {
+                continue; // columns the projection doesn't have are skipped
+            }
+
+            Method setter = null;
+
+            try {
+                setter = projection.getMethod(EntityMetadata.accessorName("set", field.getName()), field.getType());
+            } catch (NoSuchMethodException e) {
+                field.setAccessible(true);
+            }
+
+            indexes.add(i);
+            fields.add(field);
+            setters.add(setter);
+        }
+
+        if (indexes.isEmpty()) {
+            throw new InvalidInputException("None of the columns of the query match a field of " + projection.getName());
+        }
+    }
+
+    P map(ResultSet rs) throws SQLException {
+        try {
+            P row = projection.newInstance();
+
+            for (int i = 0; i < indexes.size(); i++) {
+                Field field = fields.get(i);
+                Object value = convert(rs.getObject(indexes.get(i)), field.getType());
+
+                if (value == null && field.getType().isPrimitive()) {
+                    continue;
+                }
+
+                if (setters.get(i) != null) {
+                    setters.get(i).invoke(row, value);
+                } else {
+                    field.set(row, value);
+                }
+            }
+
+            return row;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new SQLException("Could not map a row into " + projection.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null || type.isInstance(value)) {
+            return value;
+        }
+
+        if (value instanceof Number) {
+            Number number = (Number) value;
+
+            if (type == int.class || type == Integer.class) {
+                return number.intValue();
+            } else if (type == long.class || type == Long.class) {
+                return number.longValue();
+            } else if (type == double.class || type == Double.class) {
+                return number.doubleValue();
+            } else if (type == float.class || type == Float.class) {
+                return number.floatValue();
+            } else if (type == short.class || type == Short.class) {
+                return number.shortValue();
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(number.toString());
+            }
+        } else if (value instanceof Boolean && type == boolean.class) {
+            return value;
+        } else if (value instanceof Timestamp && type == java.time.LocalDateTime.class) {
+            return ((Timestamp) value).toLocalDateTime();
+        } else if (value instanceof Date && type == java.time.LocalDate.class) {
+            return ((Date) value).toLocalDate();
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, value.toString());
+        } else if (type == String.class) {
+            return value.toString();
+        }
+
+        throw new InvalidInputException("Can't map a " + value.getClass().getName() + " into a " + type.getName());
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase();
+    }
+}
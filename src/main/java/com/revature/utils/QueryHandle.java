@@ -0,0 +1,113 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.exceptions.QueryCancelledException;
+import com.revature.exceptions.QueryTimeoutException;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * QueryHandle.java
+ * Applies the statement timeout to the statements of a CrudModel and lets other threads cancel them
+ * while they run. Timeouts default to the queryTimeoutMillis property (0 for none); JDBC counts them
+ * in whole seconds, so they are rounded up.
+ */
+public class QueryHandle {
+    private final Set<Statement> running = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Statement> cancelled = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile Duration timeout; // overrides the default for the current method chain
+
+    /**
+     * Cancels every statement that is currently running through this handle; the threads running them
+     * get a QueryCancelledException. Statements that start afterwards aren't affected.
+     * @return whether there was a statement to cancel
+     */
+    public synchronized boolean cancel() {
+        for (Statement st : running) {
+            try {
+                st.cancel();
+                cancelled.add(st);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        return !running.isEmpty();
+    }
+
+    /**
+     * @return whether a statement is currently running through this handle
+     */
+    public synchronized boolean isRunning() {
+        return !running.isEmpty();
+    }
+
+    /**
+     * @return the timeout of the current method chain, or the default one if it didn't set any
+     */
+    public Duration getTimeout() {
+        Duration override = timeout;
+        return override != null ? override : defaultTimeout();
+    }
+
+    void setTimeout(Duration timeout) {
+        if (timeout != null && timeout.isNegative()) {
+            throw new InvalidInputException("timeout() can't be negative");
+        }
+
+        this.timeout = timeout;
+    }
+
+    /**
+     * Runs the statement with the timeout applied, cancellable through this handle for as long as it runs
+     * @throws QueryTimeoutException if the statement ran into the timeout
+     * @throws QueryCancelledException if the statement was cancelled through cancel()
+     */
+    <S extends Statement, R> R execute(S st, StatementCall<S, R> call) throws SQLException {
+        long millis = getTimeout().toMillis();
+        st.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000));
+
+        synchronized (this) {
+            running.add(st);
+        }
+
+        try {
+            return call.run(st);
+        } catch (SQLException e) {
+            if (!ConnectionFactory.getInstance().getDialect().isCancelled(e)) {
+                throw e;
+            }
+
+            synchronized (this) {
+                if (cancelled.contains(st)) {
+                    throw new QueryCancelledException(e.getMessage(), e);
+                }
+            }
+
+            throw new QueryTimeoutException("Statement ran longer than its timeout of " + millis + "ms: "
+                    + e.getMessage(), e);
+        } finally {
+            // done under the lock, so that cancel() can never reach a statement that already finished
+            synchronized (this) {
+                running.remove(st);
+                cancelled.remove(st);
+            }
+        }
+    }
+
+    static Duration defaultTimeout() {
+        Properties props = ConnectionFactory.getProperties();
+        String millis = props == null ? null : props.getProperty("queryTimeoutMillis");
+        return millis == null ? Duration.ZERO : Duration.ofMillis(Long.parseLong(millis.trim()));
+    }
+
+    interface StatementCall<S extends Statement, R> {
+        R run(S st) throws SQLException;
+    }
+}
@@ -0,0 +1,54 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+
+import java.util.Arrays;
+
+/**
+ * RangeShardResolver.java
+ * Assigns integral keys to shards by range: shard i holds the keys below upperBounds[i] that aren't
+ * held by an earlier shard, and the last shard holds everything from the last bound up
+ */
+public class RangeShardResolver implements ShardResolver {
+    private final long[] upperBounds;
+
+    /**
+     * @param upperBounds exclusive upper bound of every shard but the last, in ascending order
+     */
+    public RangeShardResolver(long... upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new InvalidInputException("Shard ranges need to be in ascending order: "
+                        + Arrays.toString(upperBounds));
+            }
+        }
+
+        this.upperBounds = upperBounds.clone();
+    }
+
+    /**
+     * @param upperBounds comma separated list of bounds, as given by the shardRanges property
+     */
+    static RangeShardResolver parse(String upperBounds) {
+        return new RangeShardResolver(Arrays.stream(upperBounds.split(","))
+                .map(String::trim)
+                .filter(bound -> !bound.isEmpty())
+                .mapToLong(Long::parseLong)
+                .toArray());
+    }
+
+    @Override
+    public int shardOf(Object key, int shards) {
+        if (!(key instanceof Long)) {
+            throw new InvalidInputException("Range sharding needs an integral @ShardKey, got: " + key);
+        }
+
+        if (upperBounds.length != shards - 1) {
+            throw new InvalidInputException(shards + " shards need " + (shards - 1) + " range bounds, got "
+                    + upperBounds.length);
+        }
+
+        int shard = Arrays.binarySearch(upperBounds, (Long) key);
+        return shard >= 0 ? shard + 1 : -shard - 1;
+    }
+}
@@ -2,39 +2,54 @@ package com.revature.utils;
 
 import com.revature.annotations.Table;
 import com.revature.exceptions.BadMethodChainCallException;
+import com.revature.metrics.OperationType;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 
 class Remove<T> extends ModelScraper {
-    PreparedStatement ps;
-    private Connection conn;
+    SqlStatement ps;
     private CrudModel<T> ref;
     private ArrayList<AttrField> appliedAttrs;
 
     Remove (CrudModel<T> ref) {
         setTargetClass(ref.clas);
-        this.conn = ref.conn;
         this.ref = ref;
         appliedAttrs = new ArrayList<>();
     }
 
     CrudModel<T> remove() throws SQLException {
         appliedAttrs.clear();
-        ps = null;
         Table table = ref.clas.getAnnotation(Table.class);
         String tableName = table.tableName();
-        ps = conn.prepareStatement("delete from " + tableName);
+        ps = new SqlStatement("delete from " + tableName);
         return ref;
     }
 
-    int runRemove(String delStr) throws Exception {
-        if (!delStr.startsWith("delete")) {
+    int runRemove(SqlStatement current) throws Exception {
+        if (!current.startsWith("delete")) {
             throw new BadMethodChainCallException("runRemove() can only be called when remove() is the head of the method chain.");
         }
 
-        return ps.executeUpdate();
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(EntityRegistry.get(clas))) {
+            return runOnShards(OperationType.REMOVE, ps, ref.shardPin(), ref.getQueryHandle());
+        }
+
+        int rowsAffected = 0;
+        Exception error = null;
+        long start = System.nanoTime();
+
+        try (PreparedStatement delete = ps.prepare(ref.connection())) {
+            prepareNanos = System.nanoTime() - start;
+            start += prepareNanos;
+            rowsAffected = ref.getQueryHandle().execute(delete, PreparedStatement::executeUpdate);
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordQuery(OperationType.REMOVE, ps.toString(), System.nanoTime() - start, 0, rowsAffected, error);
+        }
     }
 }
@@ -3,72 +3,170 @@ package com.revature.utils;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 class ResultSetParser<T> {
     private Class<T> clas;
     private Grab<T> operator;
+    private ArrayList<AttrField> applied;
+    private EntityMapper<T> mapper; // generated at compile time, null if the entity has none
+    private int[] mapperIndexes;
+    private String labelPrefix; // prefix of the labels of the entity's columns, e.g. in a join
+
+    // column indexes and setters are resolved once per result set instead of once per row
+    private ResultSet preparedFor;
+    private int pkIndex;
+    private Method pkSetter;
+    private int[] fkIndexes;
+    private Method[] fkSetters;
+    private int[] attrIndexes;
+    private Method[] attrSetters;
+    private Class<?>[] attrTypes;
 
     ResultSetParser(Class<T> clas, Grab<T> operator) {
+        this(clas, operator, "");
+    }
+
+    /**
+     * @param labelPrefix only the columns labeled with the prefix are mapped, with the prefix stripped off
+     */
+    ResultSetParser(Class<T> clas, Grab<T> operator, String labelPrefix) {
         this.clas = clas;
         this.operator = operator;
+        this.applied = operator.getAppliedFields();
+        this.mapper = EntityMappers.find(clas);
+        this.labelPrefix = labelPrefix;
     }
 
     ArrayList<T> mapResultSet(ResultSet rs) throws SQLException, IllegalAccessException,
             InstantiationException, InvocationTargetException {
-        T model;
+        ArrayList<T> models = new ArrayList<>();
+
+        while (rs.next()) {
+            models.add(mapRow(rs));
+        }
+
+        return models;
+    }
+
+    /**
+     * Maps the row the result set is currently positioned on; the cursor is not moved
+     * @param rs result set positioned on a row
+     * @return a new model populated from the current row
+     */
+    T mapRow(ResultSet rs) throws SQLException, IllegalAccessException,
+            InstantiationException, InvocationTargetException {
+        if (preparedFor != rs) {
+            prepare(rs);
+        }
+
+        if (mapper != null) {
+            return mapper.map(rs, mapperIndexes);
+        }
+
+        T model = clas.newInstance();
+
+        // a PK or FK that isn't in the result set is simply not set, we don't always need to retrieve them
+        if (pkIndex > 0 && pkSetter != null) {
+            pkSetter.invoke(model, rs.getInt(pkIndex));
+        }
+
+        for (int i = 0; i < fkIndexes.length; i++) {
+            if (fkIndexes[i] > 0 && fkSetters[i] != null) {
+                fkSetters[i].invoke(model, rs.getInt(fkIndexes[i]));
+            }
+        }
+
+        for (int i = 0; i < attrIndexes.length; i++) {
+            Class<?> type = attrTypes[i];
+
+            if (type == String.class) {
+                attrSetters[i].invoke(model, rs.getString(attrIndexes[i]));
+            } else if (type == int.class) {
+                attrSetters[i].invoke(model, rs.getInt(attrIndexes[i]));
+            } else if (type == double.class) {
+                attrSetters[i].invoke(model, rs.getDouble(attrIndexes[i]));
+            }
+        }
+
+        return model;
+    }
+
+    private void prepare(ResultSet rs) throws SQLException {
+        HashMap<String, Integer> labels = new HashMap<>();
+        ResultSetMetaData meta = rs.getMetaData();
+
+        for (int i = meta.getColumnCount(); i >= 1; i--) {
+            String label = meta.getColumnLabel(i).toLowerCase();
+
+            if (label.startsWith(labelPrefix)) {
+                labels.put(label.substring(labelPrefix.length()), i);
+            }
+        }
+
+        if (mapper != null) {
+            prepareMapper(labels);
+            preparedFor = rs;
+            return;
+        }
+
         PKField pkField = operator.getPrimaryKey();
+        pkIndex = labels.getOrDefault(pkField.getColumnName().toLowerCase(), 0);
+        pkSetter = operator.getMethodByFieldName(setterName(pkField.getName()));
 
-        ArrayList<T> models = new ArrayList<>();
         ArrayList<FKField> fkFields = operator.fkFields;
+        fkIndexes = new int[fkFields.size()];
+        fkSetters = new Method[fkFields.size()];
 
-        while (rs.next()) {
-            model = clas.newInstance();
-            char[] pkNameArr = pkField.getName().toCharArray();
-            pkNameArr[0] = Character.toUpperCase(pkNameArr[0]);
-            String pkName = String.valueOf(pkNameArr);
-            Method pkSetId = operator.getMethodByFieldName("set" + pkName);
-
-            try {
-                int pkk = rs.getInt(pkField.getColumnName());
-                pkSetId.invoke(model, pkk);
-            } catch (SQLException | InvocationTargetException e) {/* do nothing */}
-
-            for (FKField fk: fkFields) {
-                String FKName = fk.getName();
-                char[] setterFKNameArr = FKName.toCharArray();
-
-                setterFKNameArr[0] = Character.toUpperCase(setterFKNameArr[0]);
-                FKName = String.valueOf(setterFKNameArr);
-                Method fkSetId = operator.getMethodByFieldName("set" + FKName);
-
-                try {
-                    fkSetId.invoke(model, rs.getInt(fk.getColumnName()));
-                } catch (SQLException | InvocationTargetException e) {
-                    // do nothing; added try-catch block since ResultSet throws an exception if the params aren't
-                    // in the result set. Sometimes, we don't need to retrieve a FK
-                }
+        for (int i = 0; i < fkFields.size(); i++) {
+            FKField fk = fkFields.get(i);
+            fkIndexes[i] = labels.getOrDefault(fk.getColumnName().toLowerCase(), 0);
+            fkSetters[i] = operator.getMethodByFieldName(setterName(fk.getName()));
+        }
+
+        attrIndexes = new int[applied.size()];
+        attrSetters = new Method[applied.size()];
+        attrTypes = new Class<?>[applied.size()];
+
+        for (int i = 0; i < applied.size(); i++) {
+            AttrField selectedAttr = applied.get(i);
+            Integer index = labels.get(selectedAttr.getColumnName().toLowerCase());
+
+            if (index == null) {
+                throw new SQLException("The column name " + selectedAttr.getColumnName()
+                        + " was not found in this ResultSet.");
             }
 
-            for (AttrField selectedAttr: operator.getAppliedFields()) {
-                Class<?> type = selectedAttr.getType();
-                char[] getterAttrNameArr = selectedAttr.getName().toCharArray();
-                getterAttrNameArr[0] = Character.toUpperCase(getterAttrNameArr[0]);
-                String attrMethodName = String.valueOf(getterAttrNameArr);
-                Method setAttr = operator.getMethodByFieldName("set" + attrMethodName);
-
-                if (type == String.class) {
-                    setAttr.invoke(model, rs.getString(selectedAttr.getColumnName()));
-                } else if (type == int.class) {
-                    setAttr.invoke(model, rs.getInt(selectedAttr.getColumnName()));
-                } else if (type == double.class) {
-                    setAttr.invoke(model, rs.getDouble(selectedAttr.getColumnName()));
-                }
+            attrIndexes[i] = index;
+            attrSetters[i] = operator.getMethodByFieldName(setterName(selectedAttr.getName()));
+            attrTypes[i] = selectedAttr.getType();
+        }
+
+        preparedFor = rs;
+    }
+
+    private void prepareMapper(HashMap<String, Integer> labels) throws SQLException {
+        for (AttrField selectedAttr : applied) {
+            if (!labels.containsKey(selectedAttr.getColumnName().toLowerCase())) {
+                throw new SQLException("The column name " + selectedAttr.getColumnName()
+                        + " was not found in this ResultSet.");
             }
-            models.add(model);
         }
 
-        return models;
+        String[] columns = mapper.columns();
+        mapperIndexes = new int[columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            mapperIndexes[i] = labels.getOrDefault(columns[i].toLowerCase(), 0);
+        }
+    }
+
+    private static String setterName(String fieldName) {
+        char[] nameArr = fieldName.toCharArray();
+        nameArr[0] = Character.toUpperCase(nameArr[0]);
+        return "set" + String.valueOf(nameArr);
     }
 }
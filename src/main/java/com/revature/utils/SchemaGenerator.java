@@ -0,0 +1,283 @@
+package com.revature.utils;
+
+import com.revature.annotations.Index;
+import com.revature.annotations.Unique;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SchemaGenerator.java
+ * Generates DDL from the @Table, @PK, @FK, @Attr, @Index, and @Unique annotations of entities and diffs
+ * it against the live catalog to produce a migration script
+ */
+public class SchemaGenerator {
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private SchemaGenerator() { }
+
+    /**
+     * @return the create table statement of the entity; @FK columns reference the entity whose @PK
+     * has the same column name, if one is registered
+     */
+    public static String createTable(Class<?> entity) {
+        EntityMetadata metadata = EntityRegistry.get(entity);
+        PKField pk = metadata.getPrimaryKey();
+        ArrayList<String> definitions = new ArrayList<>();
+
+        if (pk != null) {
+            definitions.add(pk.getColumnName() + " " + ConnectionFactory.getInstance().getDialect()
+                    .primaryKeyType(pk.getType()) + " primary key");
+        }
+
+        for (AttrField attr : metadata.getAttrFields()) {
+            if (pk == null || !attr.getColumnName().equals(pk.getColumnName())) {
+                definitions.add(columnDefinition(attr));
+            }
+        }
+
+        for (FKField fk : metadata.getFkFields()) {
+            EntityMetadata referenced = EntityRegistry.findReferenced(fk);
+
+            if (referenced != null) {
+                definitions.add("foreign key (" + fk.getColumnName() + ") references " + referenced.getTableName()
+                        + " (" + referenced.getPrimaryKey().getColumnName() + ")");
+            }
+        }
+
+        return "create table if not exists " + metadata.getTableName() + " (\n    "
+                + String.join(",\n    ", definitions) + "\n)";
+    }
+
+    /**
+     * @param concurrently whether to build the indexes without locking out writes; concurrent index
+     *                     builds can't run inside of a transaction
+     * @return a create index statement for every @Index and @Unique group of the entity
+     */
+    public static List<String> createIndexes(Class<?> entity, boolean concurrently) {
+        ArrayList<String> statements = new ArrayList<>();
+        EntityMetadata metadata = EntityRegistry.get(entity);
+
+        indexesOf(metadata).forEach((name, index) -> statements.add(createIndex(metadata, name, index, concurrently)));
+
+        return statements;
+    }
+
+    /**
+     * Diffs the entities against the live catalog and returns the statements needed to bring the
+     * database up to date: missing tables, missing columns, and missing indexes. Columns are never
+     * dropped or retyped; mismatches are left as comments for a person to decide on. Indexes are
+     * created concurrently at the end of the script, outside of any transaction.
+     */
+    public static String migrationScript(Connection conn, Class<?>... entities) throws SQLException {
+        ArrayList<String> statements = new ArrayList<>();
+        ArrayList<String> indexStatements = new ArrayList<>();
+        DatabaseMetaData catalog = conn.getMetaData();
+        String schema = conn.getSchema();
+
+        for (Class<?> entity : entities) {
+            EntityMetadata metadata = EntityRegistry.get(entity);
+            String table = metadata.getTableName();
+            Map<String, LiveColumn> liveColumns = liveColumns(catalog, schema, table);
+
+            if (liveColumns.isEmpty()) {
+                statements.add(createTable(entity) + ";");
+                createIndexes(entity, true).forEach(index -> indexStatements.add(index + ";"));
+                continue;
+            }
+
+            HashSet<String> mapped = new HashSet<>();
+
+            for (AttrField attr : metadata.getAttrFields()) {
+                String column = attr.getColumnName().toLowerCase();
+                mapped.add(column);
+
+                if (!liveColumns.containsKey(column)) {
+                    statements.add("alter table " + table + " add column " + columnDefinition(attr) + ";");
+                } else if (!TypeRegistry.isCompatible(attr.getType(), liveColumns.get(column).sqlType)) {
+                    statements.add("-- " + table + "." + column + " is " + liveColumns.get(column).typeName
+                            + " but is mapped to " + attr.getType().getSimpleName());
+                }
+            }
+
+            for (String column : liveColumns.keySet()) {
+                if (!mapped.contains(column) && (metadata.getPrimaryKey() == null
+                        || !metadata.getPrimaryKey().getColumnName().equalsIgnoreCase(column))) {
+                    statements.add("-- " + table + "." + column + " is not mapped by " + entity.getSimpleName());
+                }
+            }
+
+            HashSet<String> liveIndexes = liveIndexes(catalog, schema, table);
+
+            indexesOf(metadata).forEach((name, index) -> {
+                if (!liveIndexes.contains(name.toLowerCase())) {
+                    indexStatements.add(createIndex(metadata, name, index, true) + ";");
+                }
+            });
+        }
+
+        statements.addAll(indexStatements);
+        return String.join("\n", statements);
+    }
+
+    /**
+     * Test only: creates the tables and indexes of the entities in the connected schema, e.g. to
+     * set up a local database for benchmarks. Entities are created in the order given, so pass
+     * referenced entities before the ones with an @FK to them.
+     * @param dropExisting whether to drop the tables first
+     */
+    public static void createSchema(Connection conn, boolean dropExisting, Class<?>... entities) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            if (dropExisting) {
+                for (int i = entities.length - 1; i >= 0; i--) {
+                    st.execute("drop table if exists " + EntityRegistry.get(entities[i]).getTableName() + " cascade");
+                }
+            }
+
+            for (Class<?> entity : entities) {
+                st.execute(createTable(entity));
+
+                for (String index : createIndexes(entity, false)) {
+                    st.execute(index);
+                }
+            }
+        }
+    }
+
+    private static String createIndex(EntityMetadata metadata, String name, IndexGroup index, boolean concurrently) {
+        return ConnectionFactory.getInstance().getDialect()
+                .createIndex(index.unique, name, metadata.getTableName(), index.columns, concurrently);
+    }
+
+    private static LinkedHashMap<String, IndexGroup> indexesOf(EntityMetadata metadata) {
+        LinkedHashMap<String, IndexGroup> indexes = new LinkedHashMap<>();
+        String table = metadata.getTableName();
+
+        for (AttrField attr : metadata.getAttrFields()) {
+            Index index = attr.getAnnotation(Index.class);
+            Unique unique = attr.getAnnotation(Unique.class);
+
+            if (index != null) {
+                String name = index.name().isEmpty() ? identifier("idx_" + table + "_" + attr.getColumnName()) : index.name();
+                indexes.computeIfAbsent(name, n -> new IndexGroup(false)).columns.add(attr.getColumnName());
+            }
+
+            if (unique != null) {
+                String name = unique.name().isEmpty() ? identifier("uq_" + table + "_" + attr.getColumnName()) : unique.name();
+                indexes.computeIfAbsent(name, n -> new IndexGroup(true)).columns.add(attr.getColumnName());
+            }
+        }
+
+        return indexes;
+    }
+
+    private static Map<String, LiveColumn> liveColumns(DatabaseMetaData catalog, String schema, String table)
+            throws SQLException {
+        LinkedHashMap<String, LiveColumn> columns = new LinkedHashMap<>();
+
+        // TYPE_NAME is the database's own name (e.g. int4), DATA_TYPE its java.sql.Types constant
+        try (ResultSet rs = catalog.getColumns(null, schema, storedIdentifier(catalog, table), null)) {
+            while (rs.next()) {
+                columns.put(rs.getString("COLUMN_NAME").toLowerCase(),
+                        new LiveColumn(TypeRegistry.sqlTypeOf(rs.getInt("DATA_TYPE")), rs.getString("TYPE_NAME")));
+            }
+        }
+
+        return columns;
+    }
+
+    private static HashSet<String> liveIndexes(DatabaseMetaData catalog, String schema, String table)
+            throws SQLException {
+        HashSet<String> indexes = new HashSet<>();
+
+        try (ResultSet rs = catalog.getIndexInfo(null, schema, storedIdentifier(catalog, table), false, true)) {
+            while (rs.next()) {
+                if (rs.getString("INDEX_NAME") != null) {
+                    indexes.add(rs.getString("INDEX_NAME").toLowerCase());
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * @return the unquoted identifier the way the catalog stores it, e.g. upper case on H2
+     */
+    private static String storedIdentifier(DatabaseMetaData catalog, String identifier) throws SQLException {
+        if (catalog.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase();
+        }
+
+        return catalog.storesLowerCaseIdentifiers() ? identifier.toLowerCase() : identifier;
+    }
+
+    private static String columnDefinition(AttrField attr) {
+        return attr.getColumnName() + " " + ConnectionFactory.getInstance().getDialect().columnType(attr.getType())
+                + (attr.getType().isPrimitive() ? " not null" : "");
+    }
+
+    /**
+     * @return the standard column type of the Java type, which dialects override where their database
+     * differs
+     */
+    static String columnType(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return "integer";
+        } else if (type == long.class || type == Long.class) {
+            return "bigint";
+        } else if (type == short.class || type == Short.class) {
+            return "smallint";
+        } else if (type == double.class || type == Double.class) {
+            return "double precision";
+        } else if (type == float.class || type == Float.class) {
+            return "real";
+        } else if (type == boolean.class || type == Boolean.class) {
+            return "boolean";
+        } else if (type == BigDecimal.class) {
+            return "numeric";
+        } else if (type == java.sql.Date.class || type == java.time.LocalDate.class) {
+            return "date";
+        } else if (type == java.sql.Timestamp.class || type == java.time.LocalDateTime.class) {
+            return "timestamp";
+        } else if (type == java.time.OffsetDateTime.class) {
+            return "timestamp with time zone";
+        } else if (type == byte[].class) {
+            return "bytea";
+        }
+
+        return "varchar(255)";
+    }
+
+    private static String identifier(String name) {
+        return name.length() > MAX_IDENTIFIER_LENGTH ? name.substring(0, MAX_IDENTIFIER_LENGTH) : name;
+    }
+
+    private static class LiveColumn {
+        private final int sqlType;
+        private final String typeName;
+
+        LiveColumn(int sqlType, String typeName) {
+            this.sqlType = sqlType;
+            this.typeName = typeName;
+        }
+    }
+
+    private static class IndexGroup {
+        private final boolean unique;
+        private final ArrayList<String> columns = new ArrayList<>();
+
+        IndexGroup(boolean unique) {
+            this.unique = unique;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.revature.utils;
+
+import com.revature.exceptions.SchemaValidationException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * SchemaValidator.java
+ * Checks the @Table, @PK, @FK, and @Attr annotations of registered entities against
+ * information_schema.columns once, and caches the database type of every column in the entity
+ * metadata so values are bound with the exact JDBC type afterwards
+ */
+class SchemaValidator {
+    private static final Logger logger = Logger.getLogger("com.revature.aftermath.schema");
+
+    private SchemaValidator() { }
+
+    /**
+     * @param failFast whether to throw a SchemaValidationException on errors instead of only logging them
+     * @return every error and warning found
+     */
+    static List<String> validate(Connection conn, Collection<EntityMetadata> entities, boolean failFast)
+            throws SQLException {
+        ArrayList<String> errors = new ArrayList<>();
+        ArrayList<String> warnings = new ArrayList<>();
+
+        for (EntityMetadata entity : entities) {
+            if (entity.getTableName() != null) {
+                validate(conn, entity, errors, warnings);
+            }
+        }
+
+        warnings.forEach(logger::warning);
+        errors.forEach(logger::severe);
+
+        if (failFast && !errors.isEmpty()) {
+            throw new SchemaValidationException(errors);
+        }
+
+        ArrayList<String> problems = new ArrayList<>(errors);
+        problems.addAll(warnings);
+        return problems;
+    }
+
+    private static void validate(Connection conn, EntityMetadata entity, List<String> errors, List<String> warnings)
+            throws SQLException {
+        String table = entity.getTableName();
+        String entityName = entity.getEntityClass().getSimpleName();
+        HashMap<String, DbColumn> dbColumns = readColumns(conn, table);
+
+        if (dbColumns.isEmpty()) {
+            errors.add(entityName + ": table " + table + " does not exist in schema " + conn.getSchema());
+            return;
+        }
+
+        HashMap<String, Integer> columnTypes = new HashMap<>();
+        HashMap<String, Class<?>> mapped = new HashMap<>();
+
+        for (AttrField attr : entity.getAttrFields()) {
+            mapped.put(attr.getColumnName().toLowerCase(), attr.getType());
+        }
+
+        for (FKField fk : entity.getFkFields()) {
+            mapped.putIfAbsent(fk.getColumnName().toLowerCase(), fk.getType());
+        }
+
+        if (entity.getPrimaryKey() != null) {
+            mapped.putIfAbsent(entity.getPrimaryKey().getColumnName().toLowerCase(), entity.getPrimaryKey().getType());
+        }
+
+        mapped.forEach((column, javaType) -> {
+            DbColumn dbColumn = dbColumns.get(column);
+
+            if (dbColumn == null) {
+                errors.add(entityName + ": column " + column + " does not exist in table " + table);
+                return;
+            }
+
+            int sqlType = TypeRegistry.sqlTypeOf(dbColumn.dataType);
+            columnTypes.put(column, sqlType);
+
+            if (!TypeRegistry.isCompatible(javaType, sqlType)) {
+                errors.add(entityName + ": column " + table + "." + column + " is " + dbColumn.dataType
+                        + ", which can't be mapped to " + javaType.getSimpleName());
+            } else if (TypeRegistry.isLossy(javaType, sqlType)) {
+                warnings.add(entityName + ": column " + table + "." + column + " is " + dbColumn.dataType
+                        + ", values may not fit into " + javaType.getSimpleName());
+            }
+
+            if (dbColumn.nullable && javaType.isPrimitive()) {
+                warnings.add(entityName + ": column " + table + "." + column + " is nullable, but "
+                        + javaType.getSimpleName() + " can't hold a null; nulls will be read as the default value");
+            }
+        });
+
+        dbColumns.forEach((column, dbColumn) -> {
+            if (!mapped.containsKey(column) && !dbColumn.nullable && !dbColumn.hasDefault) {
+                warnings.add(entityName + ": column " + table + "." + column
+                        + " is not null and has no default, but isn't mapped; inserts will fail");
+            }
+        });
+
+        entity.setColumnTypes(columnTypes);
+    }
+
+    private static HashMap<String, DbColumn> readColumns(Connection conn, String table) throws SQLException {
+        HashMap<String, DbColumn> columns = new HashMap<>();
+
+        try (PreparedStatement ps = conn.prepareStatement("select column_name, data_type, is_nullable, column_default"
+                + " from information_schema.columns where table_schema = ? and table_name = ?")) {
+            ps.setString(1, conn.getSchema());
+            ps.setString(2, table);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.put(rs.getString(1).toLowerCase(), new DbColumn(rs.getString(2),
+                            "YES".equalsIgnoreCase(rs.getString(3)), rs.getString(4) != null));
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    private static class DbColumn {
+        private final String dataType;
+        private final boolean nullable;
+        private final boolean hasDefault;
+
+        DbColumn(String dataType, boolean nullable, boolean hasDefault) {
+            this.dataType = dataType;
+            this.nullable = nullable;
+            this.hasDefault = hasDefault;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.revature.utils;
+
+/**
+ * ShardResolver.java
+ * Decides which shard a @ShardKey value belongs to. Integral keys are handed over as a Long and every
+ * other key as a String, whether they come from an entity or from a where() value.
+ */
+@FunctionalInterface
+public interface ShardResolver {
+    /**
+     * @param key the @ShardKey value, never null
+     * @param shards amount of shards
+     * @return index of the shard the key belongs to, from 0 to shards - 1
+     */
+    int shardOf(Object key, int shards);
+}
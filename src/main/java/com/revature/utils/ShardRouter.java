@@ -0,0 +1,148 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/**
+ * ShardRouter.java
+ * Routes the statements of entities with a @ShardKey to the data sources listed in the shards property.
+ * Every shard is a named data source with its own pool (see DataSourceRouter.dataSource). Statements
+ * that can't be pinned to one shard are scattered over all of them in parallel.
+ */
+class ShardRouter {
+    private final List<String> names;
+    private final List<ConnectionPool> shards;
+    private final ShardResolver resolver;
+
+    ShardRouter(Properties props, ShardResolver resolver) {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<ConnectionPool> shards = new ArrayList<>();
+        String poolSize = props.getProperty("shardPoolSize", props.getProperty("poolSize"));
+        int size = poolSize == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(poolSize);
+
+        for (String name : props.getProperty("shards", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+                shards.add(new ConnectionPool(DataSourceRouter.dataSource(props, name.trim()), size));
+            }
+        }
+
+        if (resolver == null) {
+            resolver = "range".equalsIgnoreCase(props.getProperty("shardResolver", "hash"))
+                    ? RangeShardResolver.parse(props.getProperty("shardRanges", ""))
+                    : new HashShardResolver();
+        }
+
+        this.names = Collections.unmodifiableList(names);
+        this.shards = Collections.unmodifiableList(shards);
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return whether the statements of the entity are spread over shards
+     */
+    boolean isSharded(EntityMetadata metadata) {
+        return metadata.getShardKey() != null && !shards.isEmpty();
+    }
+
+    int getShardCount() {
+        return shards.size();
+    }
+
+    List<String> getShardNames() {
+        return names;
+    }
+
+    /**
+     * @param key value of the @ShardKey, either typed or as it was given to where()/addValues()
+     * @return index of the shard the key lives on
+     */
+    int shardOf(AttrField shardKey, Object key) {
+        if (key == null) {
+            throw new InvalidInputException("The @ShardKey " + shardKey.getColumnName() + " can't be null");
+        }
+
+        int shard = resolver.shardOf(normalize(shardKey.getType(), key), shards.size());
+
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalStateException("The shard resolver picked shard " + shard + " out of "
+                    + shards.size() + " for key " + key);
+        }
+
+        return shard;
+    }
+
+    List<Integer> allShards() {
+        ArrayList<Integer> all = new ArrayList<>();
+
+        for (int i = 0; i < shards.size(); i++) {
+            all.add(i);
+        }
+
+        return all;
+    }
+
+    /**
+     * Runs the task on a pooled connection of every given shard, in parallel if there is more than one
+     * @return the result of every shard, in the order the shards were given
+     */
+    <R> List<R> onShards(List<Integer> targets, ShardTask<R> task) throws SQLException {
+        ArrayList<Callable<R>> tasks = new ArrayList<>();
+
+        for (int shard : targets) {
+            tasks.add(() -> onShard(shard, task));
+        }
+
+        ArrayList<R> results = new ArrayList<>();
+
+        if (tasks.size() == 1) {
+            try {
+                results.add(tasks.get(0).call());
+                return results;
+            } catch (SQLException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SQLException(e.getMessage(), e);
+            }
+        }
+
+        return Workers.invokeAll(tasks, "the shards");
+    }
+
+    private <R> R onShard(int shard, ShardTask<R> task) throws Exception {
+        ConnectionPool pool = shards.get(shard);
+        Connection conn = pool.acquire();
+
+        try {
+            return task.run(conn);
+        } finally {
+            pool.release(conn);
+        }
+    }
+
+    void close() {
+        shards.forEach(ConnectionPool::close);
+    }
+
+    private static Object normalize(Class<?> type, Object key) {
+        boolean integral = type == int.class || type == Integer.class || type == long.class || type == Long.class
+                || type == short.class || type == Short.class;
+
+        if (integral) {
+            return key instanceof Number ? ((Number) key).longValue() : Long.parseLong(key.toString().trim());
+        }
+
+        return key.toString();
+    }
+
+    interface ShardTask<R> {
+        R run(Connection conn) throws Exception;
+    }
+}
@@ -0,0 +1,482 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.exceptions.InvalidSnapshotException;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot.java
+ * Every row of a table, read back from a binary snapshot file that is memory mapped instead of loaded.
+ * Rows are only decoded into entities when they are first accessed; after that the same entity is
+ * returned on every access, so treat them as read only. The list itself is immutable and thread safe.
+ *
+ * File layout: a header (magic, format version, mapping fingerprint, time taken, row count, position
+ * of the offset table), the rows, the offset of every row, and a CRC32 of all of it. Every value is a
+ * null flag byte followed by the value in big endian; strings and byte arrays are length prefixed.
+ */
+public final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+    static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x41465453; // "AFTS"
+    private static final int HEADER_SIZE = 32;
+
+    private final Class<T> clas;
+    private final EntityMetadata metadata;
+    private final List<Column> columns;
+    private final MappedByteBuffer file;
+    private final int rows;
+    private final int offsetsAt;
+    private final long takenAt;
+    private final AtomicReferenceArray<T> decoded;
+
+    private Snapshot(Class<T> clas, EntityMetadata metadata, List<Column> columns, MappedByteBuffer file,
+                     int rows, int offsetsAt, long takenAt) {
+        this.clas = clas;
+        this.metadata = metadata;
+        this.columns = columns;
+        this.file = file;
+        this.rows = rows;
+        this.offsetsAt = offsetsAt;
+        this.takenAt = takenAt;
+        this.decoded = new AtomicReferenceArray<>(rows);
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= rows) {
+            throw new IndexOutOfBoundsException("Row " + index + " of a snapshot of " + rows + " rows");
+        }
+
+        T entity = decoded.get(index);
+
+        if (entity == null) {
+            decoded.compareAndSet(index, null, decode(file.getInt(offsetsAt + index * 4)));
+            entity = decoded.get(index);
+        }
+
+        return entity;
+    }
+
+    /**
+     * @return when the snapshot was taken, in milliseconds since the epoch
+     */
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    /**
+     * Counts the rows of the table to tell whether the snapshot still holds as many; this is the only
+     * method of a snapshot that talks to the database
+     */
+    public boolean isCurrent() throws SQLException {
+        try (Statement st = ConnectionFactory.getInstance().getConnection().createStatement();
+             ResultSet rs = st.executeQuery("select count(*) from " + metadata.getTableName())) {
+            return rs.next() && rs.getLong(1) == rows;
+        }
+    }
+
+    /**
+     * Writes every row of the entity's table to the path. The file is written next to it first and
+     * then moved over it, so a reader never sees half of a snapshot.
+     * @return amount of rows written
+     */
+    static <T> int write(Connection conn, Class<T> clas, Path path, QueryHandle handle) throws SQLException, IOException {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(metadata)) {
+            throw new InvalidInputException("snapshotTo() is meant for reference tables and doesn't support sharded entities");
+        }
+
+        List<Column> columns = columns(metadata);
+        StringBuilder select = new StringBuilder();
+
+        for (Column column : columns) {
+            select.append(select.length() == 0 ? "" : ", ").append(column.name);
+        }
+
+        String sql = "select " + select + " from " + metadata.getTableName();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        int rows = 0;
+        Exception error = null;
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             PreparedStatement st = conn.prepareStatement(sql)) {
+            CRC32 crc = new CRC32();
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            int[] offsets = new int[256];
+
+            try (ResultSet rs = handle.execute(st, PreparedStatement::executeQuery)) {
+                while (rs.next()) {
+                    if (rows == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, rows * 2);
+                    }
+
+                    offsets[rows++] = HEADER_SIZE + out.size();
+
+                    for (int i = 0; i < columns.size(); i++) {
+                        columns.get(i).write(out, rs, i + 1);
+                    }
+                }
+            }
+
+            if (HEADER_SIZE + (long) out.size() + rows * 4L + 8 > Integer.MAX_VALUE) {
+                throw new InvalidInputException("The rows of " + metadata.getTableName() + " don't fit in a"
+                        + " snapshot, which can be mapped only if it's smaller than 2GB");
+            }
+
+            int offsetsAt = HEADER_SIZE + out.size();
+
+            for (int i = 0; i < rows; i++) {
+                out.writeInt(offsets[i]);
+            }
+
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(fingerprint(metadata, columns))
+                    .putLong(System.currentTimeMillis())
+                    .putInt(rows)
+                    .putInt(offsetsAt);
+            header.flip();
+            crc.update(header.duplicate());
+            channel.write(header, 0);
+
+            ByteBuffer trailer = ByteBuffer.allocate(8).putLong(crc.getValue());
+            trailer.flip();
+            channel.write(trailer, offsetsAt + rows * 4L);
+            channel.force(true);
+        } catch (SQLException | IOException | RuntimeException e) {
+            error = e;
+            Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.GRAB, sql, 0,
+                    System.nanoTime() - start, 0, rows, error));
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Maps the snapshot file and checks its format version, its checksum, and that it was written for
+     * the entity's current mapping
+     * @throws InvalidSnapshotException if any of them don't match
+     */
+    static <T> Snapshot<T> load(Class<T> clas, Path path) throws IOException {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        List<Column> columns = columns(metadata);
+        MappedByteBuffer file;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + 8 || channel.size() > Integer.MAX_VALUE) {
+                throw new InvalidSnapshotException(path + " is not a snapshot");
+            }
+
+            // the mapping stays valid after the channel is closed
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int end = file.capacity() - 8;
+
+        if (file.getInt(0) != MAGIC) {
+            throw new InvalidSnapshotException(path + " is not a snapshot");
+        }
+
+        if (file.getInt(4) != FORMAT_VERSION) {
+            throw new InvalidSnapshotException(path + " has format version " + file.getInt(4)
+                    + ", but only version " + FORMAT_VERSION + " can be read");
+        }
+
+        if (file.getLong(8) != fingerprint(metadata, columns)) {
+            throw new InvalidSnapshotException(path + " was taken with another mapping of " + clas.getName());
+        }
+
+        int rows = file.getInt(24);
+        int offsetsAt = file.getInt(28);
+
+        if (rows < 0 || offsetsAt < HEADER_SIZE || offsetsAt + rows * 4L != end) {
+            throw new InvalidSnapshotException(path + " is truncated");
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = file.duplicate();
+        body.position(HEADER_SIZE).limit(end);
+        crc.update(body);
+        ByteBuffer header = file.duplicate();
+        header.position(0).limit(HEADER_SIZE);
+        crc.update(header);
+
+        if (crc.getValue() != file.getLong(end)) {
+            throw new InvalidSnapshotException(path + " is corrupt; its checksum doesn't match");
+        }
+
+        return new Snapshot<>(clas, metadata, columns, file, rows, offsetsAt, file.getLong(16));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decode(int offset) {
+        T entity;
+
+        try {
+            entity = metadata.getMapper() != null ? ((EntityMapper<T>) metadata.getMapper()).newInstance() : clas.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        int[] position = { offset };
+
+        for (Column column : columns) {
+            Object value = column.read(file, position);
+
+            if (value == null && column.type.isPrimitive()) {
+                continue; // leaves the default value, as a null column would
+            }
+
+            if (column.attr != null) {
+                metadata.setValue(entity, column.attr, value);
+            } else {
+                metadata.setPrimaryKeyValue(entity, value);
+            }
+        }
+
+        return entity;
+    }
+
+    /**
+     * @return every @Attr column, plus the @PK if it isn't one of them
+     */
+    private static List<Column> columns(EntityMetadata metadata) {
+        ArrayList<Column> columns = new ArrayList<>();
+        PKField pk = metadata.getPrimaryKey();
+        boolean pkMapped = pk == null;
+
+        for (AttrField attr : metadata.getAttrFields()) {
+            columns.add(new Column(attr.getColumnName(), attr.getType(), attr));
+            pkMapped |= pk != null && attr.getColumnName().equals(pk.getColumnName());
+        }
+
+        if (!pkMapped) {
+            columns.add(new Column(pk.getColumnName(), pk.getType(), null));
+        }
+
+        return columns;
+    }
+
+    /**
+     * FNV-1a hash of the table, column names, and field types, so that a snapshot can't be read into
+     * an entity whose mapping changed since
+     */
+    private static long fingerprint(EntityMetadata metadata, List<Column> columns) {
+        StringBuilder mapping = new StringBuilder(metadata.getTableName());
+
+        for (Column column : columns) {
+            mapping.append('|').append(column.name).append(':').append(column.type.getName());
+        }
+
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : mapping.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static final class Column {
+        private final String name;
+        private final Class<?> type;
+        private final AttrField attr; // null for a @PK that isn't an @Attr
+
+        Column(String name, Class<?> type, AttrField attr) {
+            if (!isSupported(type)) {
+                throw new InvalidInputException("Snapshots can't hold column " + name + " of type " + type.getName());
+            }
+
+            this.name = name;
+            this.type = type;
+            this.attr = attr;
+        }
+
+        private static boolean isSupported(Class<?> type) {
+            return type.isPrimitive() && type != char.class || type.isEnum() || type == byte[].class
+                    || type == Integer.class || type == Short.class || type == Byte.class || type == Long.class
+                    || type == Double.class || type == Float.class || type == Boolean.class
+                    || type == BigDecimal.class || type == String.class || type == Date.class
+                    || type == Timestamp.class || type == LocalDate.class || type == LocalDateTime.class;
+        }
+
+        void write(DataOutputStream out, ResultSet rs, int index) throws SQLException, IOException {
+            Object value = readColumn(rs, index);
+            out.writeBoolean(value == null);
+
+            if (value == null) {
+                return;
+            }
+
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                out.writeInt(((Number) value).intValue());
+            } else if (value instanceof Long) {
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeFloat((Float) value);
+            } else if (value instanceof Boolean) {
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Timestamp) {
+                out.writeLong(((Timestamp) value).getTime());
+                out.writeInt(((Timestamp) value).getNanos());
+            } else if (value instanceof Date) {
+                out.writeLong(((Date) value).getTime());
+            } else if (value instanceof LocalDate) {
+                out.writeLong(((LocalDate) value).toEpochDay());
+            } else if (value instanceof LocalDateTime) {
+                out.writeLong(((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(((LocalDateTime) value).getNano());
+            } else {
+                byte[] bytes = value instanceof byte[] ? (byte[]) value : value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        private Object readColumn(ResultSet rs, int index) throws SQLException {
+            Object value;
+
+            if (type == int.class || type == Integer.class) {
+                value = rs.getInt(index);
+            } else if (type == short.class || type == Short.class) {
+                value = rs.getShort(index);
+            } else if (type == byte.class || type == Byte.class) {
+                value = rs.getByte(index);
+            } else if (type == long.class || type == Long.class) {
+                value = rs.getLong(index);
+            } else if (type == double.class || type == Double.class) {
+                value = rs.getDouble(index);
+            } else if (type == float.class || type == Float.class) {
+                value = rs.getFloat(index);
+            } else if (type == boolean.class || type == Boolean.class) {
+                value = rs.getBoolean(index);
+            } else if (type == Timestamp.class || type == LocalDateTime.class) {
+                Timestamp timestamp = rs.getTimestamp(index);
+                value = timestamp == null || type == Timestamp.class ? timestamp : timestamp.toLocalDateTime();
+            } else if (type == Date.class || type == LocalDate.class) {
+                Date date = rs.getDate(index);
+                value = date == null || type == Date.class ? date : date.toLocalDate();
+            } else if (type == byte[].class) {
+                value = rs.getBytes(index);
+            } else {
+                value = rs.getString(index); // strings, enums, and BigDecimals are stored as text
+            }
+
+            return rs.wasNull() ? null : value;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Object read(ByteBuffer file, int[] position) {
+            int at = position[0];
+            boolean isNull = file.get(at++) != 0;
+            Object value = null;
+
+            if (!isNull) {
+                if (type == int.class || type == Integer.class) {
+                    value = file.getInt(at);
+                    at += 4;
+                } else if (type == short.class || type == Short.class) {
+                    value = (short) file.getInt(at);
+                    at += 4;
+                } else if (type == byte.class || type == Byte.class) {
+                    value = (byte) file.getInt(at);
+                    at += 4;
+                } else if (type == long.class || type == Long.class) {
+                    value = file.getLong(at);
+                    at += 8;
+                } else if (type == double.class || type == Double.class) {
+                    value = file.getDouble(at);
+                    at += 8;
+                } else if (type == float.class || type == Float.class) {
+                    value = file.getFloat(at);
+                    at += 4;
+                } else if (type == boolean.class || type == Boolean.class) {
+                    value = file.get(at++) != 0;
+                } else if (type == Timestamp.class) {
+                    Timestamp timestamp = new Timestamp(file.getLong(at));
+                    timestamp.setNanos(file.getInt(at + 8));
+                    value = timestamp;
+                    at += 12;
+                } else if (type == LocalDateTime.class) {
+                    value = LocalDateTime.ofEpochSecond(file.getLong(at), file.getInt(at + 8), ZoneOffset.UTC);
+                    at += 12;
+                } else if (type == Date.class) {
+                    value = new Date(file.getLong(at));
+                    at += 8;
+                } else if (type == LocalDate.class) {
+                    value = LocalDate.ofEpochDay(file.getLong(at));
+                    at += 8;
+                } else {
+                    byte[] bytes = new byte[file.getInt(at)];
+                    ByteBuffer slice = file.duplicate();
+                    slice.position(at + 4);
+                    slice.get(bytes);
+                    at += 4 + bytes.length;
+
+                    if (type == byte[].class) {
+                        value = bytes;
+                    } else {
+                        String text = new String(bytes, StandardCharsets.UTF_8);
+                        value = type.isEnum() ? Enum.valueOf((Class<Enum>) type, text)
+                                : type == BigDecimal.class ? new BigDecimal(text) : text;
+                    }
+                }
+            }
+
+            position[0] = at;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.revature.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SqlStatement.java
+ * The statement a method chain builds: its SQL with a ? for every parameter, and the values bound to
+ * them in order. Every call of the chain appends to it instead of preparing a statement of its own, so
+ * the SQL only depends on the shape of the chain and the database can reuse its plan whatever the values
+ * are. Prepared once the chain runs; toString() renders the values inline through the dialect.
+ */
+final class SqlStatement {
+    private final StringBuilder sql;
+    private final ArrayList<Object> values = new ArrayList<>();
+    private final ArrayList<Binder> binders = new ArrayList<>();
+
+    SqlStatement(String sql) {
+        this.sql = new StringBuilder(sql);
+    }
+
+    SqlStatement append(String more) {
+        sql.append(more);
+        return this;
+    }
+
+    /**
+     * Appends the SQL of another statement along with its parameters
+     */
+    SqlStatement append(SqlStatement other) {
+        sql.append(other.sql);
+        values.addAll(other.values);
+        binders.addAll(other.binders);
+        return this;
+    }
+
+    /**
+     * Binds the next parameter to a value given as a string, converting it to the column's type; the
+     * conversion is checked right away
+     * @param sqlType JDBC type of the column, or null if it isn't known
+     */
+    SqlStatement bind(Class<?> javaType, String value, Integer sqlType) {
+        values.add(TypeRegistry.parse(javaType, value, sqlType));
+        binders.add((ps, index) -> TypeRegistry.bind(ps, index, javaType, value, sqlType));
+        return this;
+    }
+
+    /**
+     * Binds the next parameter to an already typed value
+     */
+    SqlStatement bindObject(Object value, Integer sqlType) {
+        values.add(value);
+        binders.add((ps, index) -> TypeRegistry.bindObject(ps, index, value, sqlType));
+        return this;
+    }
+
+    /**
+     * Binds the next parameter through a binder of its own, e.g. to an array
+     * @param value what the parameter is rendered as
+     */
+    SqlStatement bind(Object value, Binder binder) {
+        values.add(value);
+        binders.add(binder);
+        return this;
+    }
+
+    String getSql() {
+        return sql.toString();
+    }
+
+    boolean startsWith(String prefix) {
+        return sql.length() >= prefix.length() && sql.substring(0, prefix.length()).equals(prefix);
+    }
+
+    boolean endsWith(String suffix) {
+        return sql.length() >= suffix.length() && sql.substring(sql.length() - suffix.length()).equals(suffix);
+    }
+
+    int getParameterCount() {
+        return binders.size();
+    }
+
+    List<Object> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    SqlStatement copy() {
+        return withSql(sql.toString());
+    }
+
+    /**
+     * @param rewritten the SQL rewritten around the same placeholders, in the same order
+     * @return a statement of the rewritten SQL with the same parameters
+     */
+    SqlStatement withSql(String rewritten) {
+        SqlStatement statement = new SqlStatement(rewritten);
+        statement.values.addAll(values);
+        statement.binders.addAll(binders);
+        return statement;
+    }
+
+    /**
+     * Prepares the statement on the connection with every parameter bound; the caller closes it
+     */
+    PreparedStatement prepare(Connection conn) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql.toString());
+
+        try {
+            bindTo(ps, 1);
+            return ps;
+        } catch (SQLException | RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Binds the parameters to a statement that was prepared from this one's SQL, or that has more
+     * parameters after or before them
+     * @return the index of the parameter after the last one bound
+     */
+    int bindTo(PreparedStatement ps, int index) throws SQLException {
+        for (Binder binder : binders) {
+            binder.bind(ps, index++);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the SQL with the values inlined, for the metrics and the slow query log
+     */
+    @Override
+    public String toString() {
+        return ConnectionFactory.getInstance().getDialect().render(sql.toString(), values);
+    }
+
+    interface Binder {
+        void bind(PreparedStatement ps, int index) throws SQLException;
+    }
+}
@@ -0,0 +1,77 @@
+package com.revature.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StatementCache.java
+ * Keeps prepared statements whose SQL never changes (e.g. find by id) around per connection, so they
+ * are only prepared once. A statement is borrowed for the duration of one query and given back
+ * afterwards; while it's borrowed, no other thread gets it, even if it shares the connection.
+ * The connection pool evicts the statements of a connection when it closes the connection.
+ */
+class StatementCache {
+    private static final int MAX_STATEMENTS_PER_CONNECTION = 256;
+    private static final ConcurrentHashMap<Connection, ConcurrentHashMap<String, PreparedStatement>> caches =
+            new ConcurrentHashMap<>();
+
+    private StatementCache() { }
+
+    /**
+     * @return the cached statement of the SQL, or a freshly prepared one if it isn't cached or is borrowed
+     * by another thread; it must be handed to giveBack() instead of being closed
+     */
+    static PreparedStatement borrow(Connection conn, String sql) throws SQLException {
+        ConcurrentHashMap<String, PreparedStatement> cache = caches.get(conn);
+        PreparedStatement ps = cache == null ? null : cache.remove(sql);
+
+        if (ps != null && !ps.isClosed()) {
+            ps.clearParameters();
+            return ps;
+        }
+
+        return conn.prepareStatement(sql);
+    }
+
+    /**
+     * Keeps the statement for the next borrow() of the SQL; it's closed instead if the connection is
+     * closed, the cache of the connection is full, or another thread already gave back one for the SQL
+     */
+    static void giveBack(Connection conn, String sql, PreparedStatement ps) {
+        try {
+            if (!conn.isClosed() && !ps.isClosed()) {
+                ConcurrentHashMap<String, PreparedStatement> cache =
+                        caches.computeIfAbsent(conn, c -> new ConcurrentHashMap<>());
+
+                if (cache.size() < MAX_STATEMENTS_PER_CONNECTION && cache.putIfAbsent(sql, ps) == null) {
+                    return;
+                }
+            }
+
+            ps.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes and forgets every cached statement of the connection
+     */
+    static void evict(Connection conn) {
+        ConcurrentHashMap<String, PreparedStatement> cache = caches.remove(conn);
+
+        if (cache == null) {
+            return;
+        }
+
+        for (PreparedStatement ps : cache.values()) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
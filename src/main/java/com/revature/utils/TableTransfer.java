@@ -0,0 +1,475 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * TableTransfer.java
+ * Streams whole tables between the database and files with constant memory. Where the dialect can copy
+ * (PostgreSQL) the rows go through COPY TO/FROM STDOUT/STDIN, so they are never mapped into entities or
+ * even JDBC rows; other databases export CSV through a cursor and import it with batched inserts. Files are written and read
+ * through a FileChannel in chunks of CHUNK_SIZE bytes, which is also how often progress is reported.
+ */
+class TableTransfer {
+    static final int CHUNK_SIZE = 1 << 20;
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private TableTransfer() { }
+
+    static long exportTo(Connection conn, EntityMetadata metadata, Path path, ExportFormat format, boolean gzip,
+                         TransferProgress progress, QueryHandle handle) throws SQLException, IOException {
+        requireUnsharded(metadata, "exportTo()");
+        List<ColumnRef> columns = columns(metadata);
+        String select = "select " + columnList(columns) + " from " + metadata.getTableName();
+        String sql = "copy (" + select + ") to stdout with (format " + copyFormat(format) + ")";
+        // written next to the file and moved over it once complete, so a failed export leaves the old file alone
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        long rows = 0;
+        Exception error = null;
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelOutput file = new ChannelOutput(channel, progress);
+             OutputStream out = gzip ? new GZIPOutputStream(file, GZIP_BUFFER_SIZE) : file) {
+            Dialect dialect = ConnectionFactory.getInstance().getDialect();
+
+            if (dialect.supportsCopy(conn)) {
+                rows = dialect.copyOut(conn, sql, out);
+            } else {
+                requireCsv(format);
+                sql = select;
+                rows = exportCsv(conn, select, columns, out, handle);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            error = e;
+            Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.GRAB, sql, 0,
+                    System.nanoTime() - start, 0, (int) Math.min(Integer.MAX_VALUE, rows), error));
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    static long importFrom(Connection conn, EntityMetadata metadata, Path path, ExportFormat format, boolean gzip,
+                           TransferProgress progress, QueryHandle handle) throws SQLException, IOException {
+        requireUnsharded(metadata, "importFrom()");
+        List<ColumnRef> columns = columns(metadata);
+        String sql = "copy " + metadata.getTableName() + " (" + columnList(columns) + ") from stdin with (format "
+                + copyFormat(format) + ")";
+        long start = System.nanoTime();
+        long rows = 0;
+        Exception error = null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             ChannelInput file = new ChannelInput(channel, progress);
+             InputStream in = gzip ? new GZIPInputStream(file, GZIP_BUFFER_SIZE) : file) {
+            DataSourceRouter.wrote();
+            Dialect dialect = ConnectionFactory.getInstance().getDialect();
+
+            if (dialect.supportsCopy(conn)) {
+                rows = dialect.copyIn(conn, sql, in, CHUNK_SIZE);
+            } else {
+                requireCsv(format);
+                sql = "insert into " + metadata.getTableName() + " (" + columnList(columns) + ") values ("
+                        + placeholders(columns.size()) + ")";
+                rows = importCsv(conn, metadata, sql, columns, in, handle);
+            }
+
+            return rows;
+        } catch (SQLException | IOException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.ADD, sql, 0,
+                    System.nanoTime() - start, 0, (int) Math.min(Integer.MAX_VALUE, rows), error));
+        }
+    }
+
+    private static long exportCsv(Connection conn, String select, List<ColumnRef> columns, OutputStream out,
+                                  QueryHandle handle) throws SQLException, IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), GZIP_BUFFER_SIZE);
+        long rows = 0;
+
+        for (int i = 0; i < columns.size(); i++) {
+            writer.write(i == 0 ? "" : ",");
+            writeField(writer, columns.get(i).name);
+        }
+
+        writer.write('\n');
+        boolean restoreAutoCommit = conn.getAutoCommit();
+
+        // a cursor only streams while inside of a transaction
+        if (restoreAutoCommit) {
+            conn.setAutoCommit(false);
+        }
+
+        try (PreparedStatement st = conn.prepareStatement(select)) {
+            st.setFetchSize(CrudModel.DEFAULT_FETCH_SIZE);
+
+            try (ResultSet rs = handle.execute(st, PreparedStatement::executeQuery)) {
+                while (rs.next()) {
+                    for (int i = 1; i <= columns.size(); i++) {
+                        String value = rs.getString(i);
+                        writer.write(i == 1 ? "" : ",");
+
+                        if (value != null) {
+                            writeField(writer, value);
+                        }
+                    }
+
+                    writer.write('\n');
+                    rows++;
+                }
+            }
+        } finally {
+            if (restoreAutoCommit) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Quotes the field if it has to be, the way COPY does, so that empty strings stay apart from nulls
+     */
+    private static void writeField(Writer writer, String value) throws IOException {
+        boolean quote = value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static long importCsv(Connection conn, EntityMetadata metadata, String sql, List<ColumnRef> columns,
+                                  InputStream in, QueryHandle handle) throws SQLException, IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), GZIP_BUFFER_SIZE);
+        ArrayList<String> fields = new ArrayList<>(columns.size());
+        long rows = 0;
+        int batched = 0;
+
+        readRecord(reader, fields); // the header
+
+        try (PreparedStatement insert = conn.prepareStatement(sql)) {
+            while (readRecord(reader, fields)) {
+                if (fields.size() != columns.size()) {
+                    throw new InvalidInputException("Row " + (rows + 1) + " has " + fields.size() + " fields, but "
+                            + metadata.getTableName() + " has " + columns.size() + " columns");
+                }
+
+                for (int i = 0; i < columns.size(); i++) {
+                    ColumnRef column = columns.get(i);
+                    String value = fields.get(i);
+
+                    if (value == null) {
+                        insert.setObject(i + 1, null);
+                    } else {
+                        TypeRegistry.bind(insert, i + 1, column.type, value, metadata.getColumnType(column.name));
+                    }
+                }
+
+                insert.addBatch();
+                rows++;
+
+                if (++batched == Add.MAX_BATCH_SIZE) {
+                    handle.execute(insert, PreparedStatement::executeBatch);
+                    batched = 0;
+                }
+            }
+
+            if (batched > 0) {
+                handle.execute(insert, PreparedStatement::executeBatch);
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Reads the next CSV record; an unquoted empty field is read as null
+     * @return false if the input ended before the record
+     */
+    private static boolean readRecord(Reader reader, List<String> fields) throws IOException {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        int c = reader.read();
+
+        if (c < 0) {
+            return false;
+        }
+
+        while (true) {
+            if (inQuotes) {
+                if (c < 0) {
+                    throw new InvalidInputException("The CSV file ends inside of a quoted field");
+                } else if (c == '"') {
+                    reader.mark(1);
+
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',' || c == '\n' || c < 0) {
+                fields.add(field.length() == 0 && !quoted ? null : field.toString());
+                field.setLength(0);
+                quoted = false;
+
+                if (c != ',') {
+                    return true;
+                }
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+
+            c = reader.read();
+        }
+    }
+
+    private static String copyFormat(ExportFormat format) {
+        return format == ExportFormat.BINARY ? "binary" : "csv, header";
+    }
+
+    private static void requireCsv(ExportFormat format) {
+        if (format != ExportFormat.CSV) {
+            throw new InvalidInputException(format + " files can only be exported and imported through PostgreSQL's COPY");
+        }
+    }
+
+    private static void requireUnsharded(EntityMetadata metadata, String method) {
+        if (ConnectionFactory.getInstance().getShardRouter().isSharded(metadata)) {
+            throw new InvalidInputException(method + " doesn't support sharded entities yet; export every shard's"
+                    + " database on its own instead");
+        }
+    }
+
+    /**
+     * @return every @Attr column, plus the @PK if it isn't one of them
+     */
+    private static List<ColumnRef> columns(EntityMetadata metadata) {
+        ArrayList<ColumnRef> columns = new ArrayList<>();
+        PKField pk = metadata.getPrimaryKey();
+        boolean pkMapped = pk == null;
+
+        for (AttrField attr : metadata.getAttrFields()) {
+            columns.add(new ColumnRef(attr.getColumnName(), attr.getType()));
+            pkMapped |= pk != null && attr.getColumnName().equals(pk.getColumnName());
+        }
+
+        if (!pkMapped) {
+            columns.add(0, new ColumnRef(pk.getColumnName(), pk.getType()));
+        }
+
+        return columns;
+    }
+
+    private static String columnList(List<ColumnRef> columns) {
+        StringBuilder list = new StringBuilder();
+
+        for (ColumnRef column : columns) {
+            list.append(list.length() == 0 ? "" : ", ").append(column.name);
+        }
+
+        return list.toString();
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+
+        return placeholders.toString();
+    }
+
+    private static final class ColumnRef {
+        private final String name;
+        private final Class<?> type;
+
+        ColumnRef(String name, Class<?> type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Collects writes in a direct buffer and hands it to the channel a chunk at a time
+     */
+    private static final class ChannelOutput extends OutputStream {
+        private final FileChannel channel;
+        private final TransferProgress progress;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        private long written;
+
+        ChannelOutput(FileChannel channel, TransferProgress progress) {
+            this.channel = channel;
+            this.progress = progress;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer.position() > 0) {
+                drain();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush(); // the channel is closed by whoever opened it
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+
+            buffer.clear();
+
+            if (progress != null) {
+                progress.onChunk(written);
+            }
+        }
+    }
+
+    /**
+     * Fills a direct buffer from the channel a chunk at a time and serves reads out of it
+     */
+    private static final class ChannelInput extends InputStream {
+        private final FileChannel channel;
+        private final TransferProgress progress;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        private long read;
+        private boolean eof;
+
+        ChannelInput(FileChannel channel, TransferProgress progress) {
+            this.channel = channel;
+            this.progress = progress;
+            buffer.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!fill()) {
+                return -1;
+            }
+
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, chunk);
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+
+            if (eof) {
+                return false;
+            }
+
+            buffer.clear();
+            int count = 0;
+
+            while (buffer.hasRemaining() && (count = channel.read(buffer)) >= 0) {
+                read += count;
+            }
+
+            eof = count < 0;
+            buffer.flip();
+
+            if (progress != null && buffer.hasRemaining()) {
+                progress.onChunk(read);
+            }
+
+            return buffer.hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.revature.utils;
+
+import com.revature.metrics.QueryMetrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Transaction.java
+ * A transaction bound to the current thread by Aftermath.inTransaction(). While it is bound, every
+ * CrudModel used on that thread runs its statements on the transaction's pooled connection.
+ */
+public class Transaction {
+    private static final ThreadLocal<Transaction> current = new ThreadLocal<>();
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final Connection conn;
+    private final int isolation;
+    private final int attempt;
+
+    private Transaction(Connection conn, int isolation, int attempt) {
+        this.conn = conn;
+        this.isolation = isolation;
+        this.attempt = attempt;
+    }
+
+    /**
+     * @return the transaction bound to the current thread, or null if there is none
+     */
+    public static Transaction current() {
+        return current.get();
+    }
+
+    public Connection getConnection() {
+        return conn;
+    }
+
+    /**
+     * @return one of the Connection.TRANSACTION_* isolation levels
+     */
+    public int getIsolation() {
+        return isolation;
+    }
+
+    /**
+     * @return which attempt at the transaction is running, starting at 1
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Runs the callback inside of a savepoint. If it throws, only its own changes are rolled back
+     * and the exception is rethrown; savepoints can be nested.
+     */
+    public <R> R savepoint(TransactionCallback<R> callback) throws Exception {
+        Savepoint savepoint = conn.setSavepoint();
+        R result;
+
+        try {
+            result = callback.run(this);
+        } catch (Exception e) {
+            conn.rollback(savepoint);
+            throw e;
+        }
+
+        conn.releaseSavepoint(savepoint);
+        return result;
+    }
+
+    /**
+     * Runs the callback in a new transaction on a pooled connection, or in a savepoint of the current
+     * transaction if there already is one. New transactions that fail with a serialization failure
+     * (40001) or a deadlock (40P01) are rolled back and run again, after a random backoff that doubles
+     * with every attempt, up to transactionMaxAttempts times (defaults to 5) with a base backoff of
+     * transactionBackoffMillis (defaults to 10).
+     */
+    static <R> R run(int isolation, TransactionCallback<R> callback) throws Exception {
+        Transaction outer = current();
+
+        if (outer != null) {
+            return outer.savepoint(callback);
+        }
+
+        Properties props = ConnectionFactory.getProperties();
+        int maxAttempts = Integer.parseInt(props.getProperty("transactionMaxAttempts", "5"));
+        long backoffMillis = Long.parseLong(props.getProperty("transactionBackoffMillis", "10"));
+        ConnectionPool pool = ConnectionFactory.getInstance().getPool();
+        long start = System.nanoTime();
+        int attempt = 1;
+
+        while (true) {
+            Connection conn = null;
+            Integer previousIsolation = null;
+
+            try {
+                conn = pool.acquire();
+                previousIsolation = conn.getTransactionIsolation();
+                Transaction tx = new Transaction(conn, isolation, attempt);
+
+                conn.setAutoCommit(false);
+                conn.setTransactionIsolation(isolation);
+                current.set(tx);
+
+                R result = callback.run(tx);
+                conn.commit();
+                QueryMetrics.recordTransaction(System.nanoTime() - start, attempt, true);
+                return result;
+            } catch (Exception e) {
+                if (conn != null) {
+                    rollback(conn);
+                }
+
+                if (!isRetryable(e) || attempt >= maxAttempts) {
+                    QueryMetrics.recordTransaction(System.nanoTime() - start, attempt, false);
+                    throw e;
+                }
+            } finally {
+                current.remove();
+
+                if (conn != null) {
+                    restore(conn, previousIsolation);
+                    pool.release(conn);
+                }
+            }
+
+            backOff(backoffMillis, attempt++);
+        }
+    }
+
+    /**
+     * @return whether the exception, or one of its causes, is a serialization failure or deadlock
+     */
+    static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+
+                if ("40001".equals(state) || "40P01".equals(state)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void backOff(long baseMillis, int attempt) throws SQLException {
+        // full jitter keeps the transactions that collided from colliding again on the next attempt
+        long cap = Math.min(MAX_BACKOFF_MILLIS, baseMillis << Math.min(attempt - 1, 20));
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while backing off from a failed transaction", e);
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * @param isolation isolation level the connection had before the transaction, or null if it couldn't
+     *                  be read
+     */
+    private static void restore(Connection conn, Integer isolation) {
+        try {
+            conn.setAutoCommit(true);
+
+            if (isolation != null) {
+                conn.setTransactionIsolation(isolation);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
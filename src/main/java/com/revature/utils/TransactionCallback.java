@@ -0,0 +1,11 @@
+package com.revature.utils;
+
+/**
+ * TransactionCallback.java
+ * Work to run inside of Aftermath.inTransaction(). Since a transaction can be retried, the callback
+ * may run more than once and shouldn't have side effects outside of the database.
+ */
+@FunctionalInterface
+public interface TransactionCallback<R> {
+    R run(Transaction tx) throws Exception;
+}
@@ -0,0 +1,11 @@
+package com.revature.utils;
+
+/**
+ * Called by CrudModel.exportTo() and CrudModel.importFrom() every time a chunk of the file was written or read
+ */
+public interface TransferProgress {
+    /**
+     * @param bytes amount of bytes of the file written or read so far, compressed if it is gzipped
+     */
+    void onChunk(long bytes);
+}
@@ -0,0 +1,314 @@
+package com.revature.utils;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+
+/**
+ * TypeRegistry.java
+ * Maps database column types to JDBC types and binds parameter values with them. When a column's type
+ * is known (see SchemaValidator), values are bound with that exact JDBC type; otherwise the type of the
+ * field decides, like it always has.
+ */
+public class TypeRegistry {
+    private static final HashMap<String, Integer> dbTypes = new HashMap<>();
+
+    static {
+        dbTypes.put("smallint", Types.SMALLINT);
+        dbTypes.put("integer", Types.INTEGER);
+        dbTypes.put("int", Types.INTEGER);
+        dbTypes.put("bigint", Types.BIGINT);
+        dbTypes.put("real", Types.REAL);
+        dbTypes.put("double precision", Types.DOUBLE);
+        dbTypes.put("double", Types.DOUBLE);
+        dbTypes.put("numeric", Types.NUMERIC);
+        dbTypes.put("decimal", Types.NUMERIC);
+        dbTypes.put("character varying", Types.VARCHAR);
+        dbTypes.put("varchar", Types.VARCHAR);
+        dbTypes.put("character", Types.CHAR);
+        dbTypes.put("char", Types.CHAR);
+        dbTypes.put("text", Types.VARCHAR);
+        dbTypes.put("boolean", Types.BOOLEAN);
+        dbTypes.put("date", Types.DATE);
+        dbTypes.put("time without time zone", Types.TIME);
+        dbTypes.put("time", Types.TIME);
+        dbTypes.put("timestamp without time zone", Types.TIMESTAMP);
+        dbTypes.put("timestamp", Types.TIMESTAMP);
+        dbTypes.put("timestamp with time zone", Types.TIMESTAMP_WITH_TIMEZONE);
+        dbTypes.put("bytea", Types.BINARY);
+    }
+
+    private TypeRegistry() { }
+
+    /**
+     * @param dbTypeName data_type of a column in information_schema.columns
+     * @return the matching java.sql.Types constant, or Types.OTHER for types without a JDBC equivalent
+     */
+    public static int sqlTypeOf(String dbTypeName) {
+        return dbTypes.getOrDefault(dbTypeName.toLowerCase(), Types.OTHER);
+    }
+
+    /**
+     * @param dataType DATA_TYPE of a column in DatabaseMetaData.getColumns(), as reported by the driver
+     * @return the java.sql.Types constant the rest of the registry uses for it, e.g. BOOLEAN for the BIT
+     * PgJDBC reports for boolean columns
+     */
+    public static int sqlTypeOf(int dataType) {
+        switch (dataType) {
+            case Types.BIT:
+                return Types.BOOLEAN;
+            case Types.TINYINT:
+                return Types.SMALLINT;
+            case Types.FLOAT:
+                return Types.DOUBLE;
+            case Types.DECIMAL:
+                return Types.NUMERIC;
+            case Types.NCHAR:
+                return Types.CHAR;
+            case Types.LONGVARCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+                return Types.VARCHAR;
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return Types.BINARY;
+            case Types.TIME_WITH_TIMEZONE:
+                return Types.TIME;
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.BOOLEAN:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+            case Types.BINARY:
+                return dataType;
+            default:
+                return Types.OTHER;
+        }
+    }
+
+    /**
+     * @return the JDBC type a value of the field is bound as while the type of its column isn't known;
+     * Types.OTHER, which leaves the cast to the database, for fields without an exact match (e.g. enums)
+     */
+    static int sqlTypeOf(Class<?> javaType) {
+        if (javaType == String.class || javaType == char.class || javaType == Character.class) {
+            return Types.VARCHAR;
+        } else if (isInteger(javaType)) {
+            return Types.INTEGER;
+        } else if (isLong(javaType)) {
+            return Types.BIGINT;
+        } else if (isDecimal(javaType)) {
+            return Types.DOUBLE;
+        } else if (javaType == BigDecimal.class) {
+            return Types.NUMERIC;
+        } else if (javaType == boolean.class || javaType == Boolean.class) {
+            return Types.BOOLEAN;
+        } else if (javaType == Date.class || javaType == java.time.LocalDate.class) {
+            return Types.DATE;
+        } else if (javaType == Time.class || javaType == java.time.LocalTime.class) {
+            return Types.TIME;
+        } else if (javaType == Timestamp.class || javaType == java.time.LocalDateTime.class) {
+            return Types.TIMESTAMP;
+        }
+
+        return Types.OTHER;
+    }
+
+    /**
+     * @return whether values of the column can be read into and written from a field of the Java type,
+     * possibly losing some of them (see isLossy())
+     */
+    public static boolean isCompatible(Class<?> javaType, int sqlType) {
+        if (javaType == String.class || sqlType == Types.OTHER) {
+            return true;
+        }
+
+        switch (sqlType) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                // fractions can't be written into a whole number column
+                return isInteger(javaType) || isLong(javaType);
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+                return isInteger(javaType) || isLong(javaType) || isDecimal(javaType) || javaType == BigDecimal.class;
+            case Types.CHAR:
+            case Types.VARCHAR:
+                // char fields are read and written as strings of one character
+                return javaType == char.class || javaType == Character.class;
+            case Types.BOOLEAN:
+                return javaType == boolean.class || javaType == Boolean.class;
+            case Types.DATE:
+                return javaType == Date.class || javaType == java.time.LocalDate.class;
+            case Types.TIME:
+                return javaType == Time.class || javaType == java.time.LocalTime.class;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return javaType == Timestamp.class || javaType == java.time.LocalDateTime.class
+                        || javaType == java.time.OffsetDateTime.class;
+            case Types.BINARY:
+                return javaType == byte[].class;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return whether the field is compatible with the column but holds fewer of its values, e.g. a bigint
+     * read into an int, or a numeric read into a double
+     */
+    public static boolean isLossy(Class<?> javaType, int sqlType) {
+        if (javaType == String.class || !isCompatible(javaType, sqlType)) {
+            return false;
+        }
+
+        switch (sqlType) {
+            case Types.BIGINT:
+                return isInteger(javaType);
+            case Types.REAL:
+                return isInteger(javaType) || isLong(javaType);
+            case Types.DOUBLE:
+                return isInteger(javaType) || isLong(javaType) || javaType == float.class || javaType == Float.class;
+            case Types.NUMERIC:
+                return javaType != BigDecimal.class;
+            case Types.VARCHAR:
+                return true; // only char fields get this far
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Binds a value given as a string, converting it to the column's type
+     * @param javaType type of the field the column is mapped to
+     * @param sqlType JDBC type of the column, or null if it isn't known
+     */
+    public static void bind(PreparedStatement ps, int index, Class<?> javaType, String value, Integer sqlType)
+            throws SQLException {
+        if (sqlType == null) {
+            // the column type isn't known, so the field type decides
+            sqlType = sqlTypeOf(javaType);
+        }
+
+        if (value == null) {
+            ps.setNull(index, sqlType);
+            return;
+        }
+
+        switch (sqlType) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                ps.setInt(index, Integer.parseInt(value.trim()));
+                break;
+            case Types.BIGINT:
+                ps.setLong(index, Long.parseLong(value.trim()));
+                break;
+            case Types.REAL:
+            case Types.DOUBLE:
+                ps.setDouble(index, Double.parseDouble(value.trim()));
+                break;
+            case Types.NUMERIC:
+                ps.setBigDecimal(index, new BigDecimal(value.trim()));
+                break;
+            case Types.BOOLEAN:
+                ps.setBoolean(index, Boolean.parseBoolean(value.trim()));
+                break;
+            case Types.DATE:
+                ps.setDate(index, Date.valueOf(value.trim()));
+                break;
+            case Types.TIME:
+                ps.setTime(index, Time.valueOf(value.trim()));
+                break;
+            case Types.TIMESTAMP:
+                ps.setTimestamp(index, Timestamp.valueOf(value.trim()));
+                break;
+            case Types.CHAR:
+            case Types.VARCHAR:
+                ps.setString(index, value);
+                break;
+            default:
+                // let the database cast it, e.g. uuid, json, or timestamptz literals
+                ps.setObject(index, value, Types.OTHER);
+        }
+    }
+
+    /**
+     * Converts a value given as a string the way bind() would bind it, e.g. to render it into a statement
+     * @return the typed value, or the string itself for types the database casts
+     */
+    public static Object parse(Class<?> javaType, String value, Integer sqlType) {
+        if (value == null) {
+            return null;
+        }
+
+        if (sqlType == null) {
+            sqlType = sqlTypeOf(javaType);
+        }
+
+        switch (sqlType) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return Integer.parseInt(value.trim());
+            case Types.BIGINT:
+                return Long.parseLong(value.trim());
+            case Types.REAL:
+            case Types.DOUBLE:
+                return Double.parseDouble(value.trim());
+            case Types.NUMERIC:
+                return new BigDecimal(value.trim());
+            case Types.BOOLEAN:
+                return Boolean.parseBoolean(value.trim());
+            case Types.DATE:
+                return Date.valueOf(value.trim());
+            case Types.TIME:
+                return Time.valueOf(value.trim());
+            case Types.TIMESTAMP:
+                return Timestamp.valueOf(value.trim());
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Binds an already typed value
+     * @param sqlType JDBC type of the column, or null if it isn't known
+     */
+    public static void bindObject(PreparedStatement ps, int index, Object value, Integer sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType == null ? Types.NULL : sqlType);
+        } else if (sqlType == null || sqlType == Types.OTHER) {
+            ps.setObject(index, value);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    private static boolean isInteger(Class<?> type) {
+        return type == int.class || type == Integer.class || type == short.class || type == Short.class
+                || type == byte.class || type == Byte.class;
+    }
+
+    private static boolean isLong(Class<?> type) {
+        return type == long.class || type == Long.class;
+    }
+
+    private static boolean isDecimal(Class<?> type) {
+        return type == double.class || type == Double.class || type == float.class || type == Float.class;
+    }
+}
@@ -0,0 +1,671 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.exceptions.OptimisticLockException;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * UnitOfWork.java
+ * Keeps track of loaded entities and writes back only what changed. Tracked entities are snapshotted
+ * when they are attached; flush() compares every tracked entity against its snapshot, updates only the
+ * modified columns (batched per table and set of modified columns), and inserts and deletes the
+ * registered entities ordered by their @FK dependencies. Updates of entities with a @Version column
+ * only apply to rows that still have the tracked version. What the unit of work keeps in memory (pending
+ * inserts and deletes, snapshots, generated keys) only changes once the writes succeed, so a failed
+ * flush or commit can be fixed up and retried. A UnitOfWork isn't thread safe.
+ */
+public class UnitOfWork {
+    private final IdentityHashMap<Object, Object[]> snapshots = new IdentityHashMap<>();
+    private final LinkedHashSet<Identity> newEntities = new LinkedHashSet<>();
+    private final LinkedHashSet<Identity> deletedEntities = new LinkedHashSet<>();
+    private final Map<Class<?>, CrudModel<?>> models = new LinkedHashMap<>();
+    private final QueryHandle handle = new QueryHandle(); // applies the default timeout to the batches
+
+    /**
+     * Starts tracking the changes made to a loaded entity
+     * @return the entity, for chaining
+     */
+    public <T> T track(T entity) {
+        snapshots.put(entity, snapshot(entity));
+        return entity;
+    }
+
+    /**
+     * Starts tracking the changes made to loaded entities, e.g. the result of runGrab()
+     * @return the entities, for chaining
+     */
+    public <T, C extends Collection<T>> C trackAll(C entities) {
+        entities.forEach(this::track);
+        return entities;
+    }
+
+    /**
+     * Inserts the entity on the next flush; its @PK is set to the generated one and it is tracked from then on
+     */
+    public void registerNew(Object entity) {
+        requireEntity(entity);
+        newEntities.add(new Identity(entity));
+    }
+
+    /**
+     * Deletes the entity on the next flush and stops tracking it
+     */
+    public void registerDeleted(Object entity) {
+        requireEntity(entity);
+
+        if (!newEntities.remove(new Identity(entity))) {
+            deletedEntities.add(new Identity(entity));
+        }
+
+        snapshots.remove(entity);
+    }
+
+    /**
+     * @return whether any column of the tracked entity differs from when it was tracked or last flushed
+     */
+    public boolean isDirty(Object entity) {
+        Object[] snapshot = snapshots.get(entity);
+        return snapshot != null && !dirtyColumns(entity, snapshot).isEmpty();
+    }
+
+    /**
+     * Writes all pending changes: inserts (referenced entities first), then updates of the modified
+     * columns, then deletes (referencing entities first). With auto commit on and outside of
+     * Aftermath.inTransaction(), the changes are written in a transaction of their own like commit()
+     * does; otherwise they commit with the surrounding transaction. If a statement fails, the unit of
+     * work is left as it was before the flush, so that it can be retried once the transaction is rolled
+     * back. Only the changes to sharded entities that already reached their shards are kept, since every
+     * shard commits its batches on its own.
+     * @return amount of rows affected
+     */
+    public int flush() throws SQLException {
+        if (Transaction.current() == null) {
+            Connection conn = ConnectionFactory.getInstance().getConnection();
+
+            // every statement would commit on its own, so the ones before a failure couldn't be retried
+            if (conn.getAutoCommit()) {
+                return writeInTransaction(conn);
+            }
+        }
+
+        Outcome outcome = new Outcome();
+
+        try {
+            int rowsAffected = write(outcome);
+            outcome.succeeded();
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            outcome.failed();
+            throw e;
+        }
+    }
+
+    /**
+     * Flushes the pending changes in a single transaction, rolling all of them back if any statement fails;
+     * the unit of work is then left as it was before the commit, so it can be retried.
+     * Inside of Aftermath.inTransaction() the changes are only flushed; they commit with the transaction.
+     * The transaction only spans the primary, so entities with a @ShardKey can't be committed; flush()
+     * them instead, knowing that every shard's batch commits on its own.
+     * @return amount of rows affected
+     * @throws InvalidInputException if a pending change is to a sharded entity
+     */
+    public int commit() throws SQLException {
+        requireUnsharded();
+
+        if (Transaction.current() != null) {
+            return flush();
+        }
+
+        return writeInTransaction(ConnectionFactory.getInstance().getConnection());
+    }
+
+    private int writeInTransaction(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        Outcome outcome = new Outcome();
+
+        try {
+            conn.setAutoCommit(false);
+            int rowsAffected = write(outcome);
+            conn.commit();
+            outcome.succeeded();
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            outcome.failed();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Stops tracking every entity and forgets every pending insert and delete
+     */
+    public void clear() {
+        snapshots.clear();
+        newEntities.clear();
+        deletedEntities.clear();
+    }
+
+    private void requireUnsharded() {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+        ArrayList<Object> pending = new ArrayList<>();
+
+        newEntities.forEach(key -> pending.add(key.entity));
+        deletedEntities.forEach(key -> pending.add(key.entity));
+        snapshots.forEach((entity, snapshot) -> {
+            if (!dirtyColumns(entity, snapshot).isEmpty()) {
+                pending.add(entity);
+            }
+        });
+
+        for (Object entity : pending) {
+            if (shards.isSharded(EntityRegistry.get(entity.getClass()))) {
+                throw new InvalidInputException("commit() can't roll back the writes to the shards of "
+                        + entity.getClass().getSimpleName() + "; flush() sharded entities instead");
+            }
+        }
+    }
+
+    /**
+     * Runs the statements of a flush; changes to the unit of work itself are left to the outcome
+     */
+    private int write(Outcome outcome) throws SQLException {
+        int rowsAffected = 0;
+        List<Class<?>> order = dependencyOrder();
+
+        for (Class<?> clas : order) {
+            rowsAffected += insert(clas, outcome);
+        }
+
+        rowsAffected += update(outcome);
+
+        for (int i = order.size() - 1; i >= 0; i--) {
+            rowsAffected += delete(order.get(i), outcome);
+        }
+
+        return rowsAffected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int insert(Class<?> clas, Outcome outcome) throws SQLException {
+        ArrayList<Object> pending = new ArrayList<>();
+
+        for (Identity key : newEntities) {
+            Object entity = key.entity;
+
+            if (entity.getClass() == clas) {
+                pending.add(entity);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        ArrayList<Runnable> undo = new ArrayList<>();
+
+        // saveAll() sets the generated keys right away, so they are put back if the inserts don't stick
+        for (Object entity : pending) {
+            Object key = metadata.getPrimaryKeyValue(entity);
+            undo.add(() -> metadata.setPrimaryKeyValue(entity, key));
+        }
+
+        Runnable inserted = () -> {
+            for (Object entity : pending) {
+                newEntities.remove(new Identity(entity));
+                track(entity);
+            }
+        };
+
+        if (!ConnectionFactory.getInstance().getShardRouter().isSharded(metadata)) {
+            undo.forEach(outcome::onFailure);
+            int rowsAffected = ((CrudModel<Object>) model(clas)).saveAll(pending);
+            outcome.onSuccess(inserted);
+            return rowsAffected;
+        }
+
+        // every shard commits its batches on its own, so once they went through, the inserts stick
+        try {
+            int rowsAffected = ((CrudModel<Object>) model(clas)).saveAll(pending);
+            outcome.keep(inserted);
+            return rowsAffected;
+        } catch (SQLException | RuntimeException e) {
+            undo.forEach(outcome::onFailure);
+            throw e;
+        }
+    }
+
+    /**
+     * Groups the dirty entities by table and set of modified columns, so that every group is a single
+     * JDBC batch of the same update statement
+     */
+    private int update(Outcome outcome) throws SQLException {
+        LinkedHashMap<String, ArrayList<Object>> groups = new LinkedHashMap<>();
+        LinkedHashMap<String, List<AttrField>> groupColumns = new LinkedHashMap<>();
+
+        for (Map.Entry<Object, Object[]> tracked : snapshots.entrySet()) {
+            Object entity = tracked.getKey();
+            List<AttrField> dirty = dirtyColumns(entity, tracked.getValue());
+
+            if (dirty.isEmpty()) {
+                continue;
+            }
+
+            String sql = updateSql(EntityRegistry.get(entity.getClass()), dirty);
+            groups.computeIfAbsent(sql, s -> new ArrayList<>()).add(entity);
+            groupColumns.put(sql, dirty);
+        }
+
+        int rowsAffected = 0;
+        ArrayList<Object> conflicts = new ArrayList<>();
+
+        for (Map.Entry<String, ArrayList<Object>> group : groups.entrySet()) {
+            ArrayList<Object> entities = group.getValue();
+            EntityMetadata metadata = EntityRegistry.get(entities.get(0).getClass());
+            List<AttrField> columns = groupColumns.get(group.getKey());
+            AttrField version = metadata.getVersion();
+            boolean sharded = ConnectionFactory.getInstance().getShardRouter().isSharded(metadata);
+
+            int[] counts = runBatch(metadata, OperationType.CHANGE, group.getKey(), entities, (ps, entity) -> {
+                int index = 1;
+
+                for (AttrField attr : columns) {
+                    TypeRegistry.bindObject(ps, index++, metadata.getValue(entity, attr),
+                            metadata.getColumnType(attr.getColumnName()));
+                }
+
+                ps.setObject(index++, metadata.getPrimaryKeyValue(entity));
+
+                if (version != null) {
+                    ps.setObject(index, metadata.getValue(entity, version));
+                }
+            });
+
+            for (int i = 0; i < counts.length; i++) {
+                Object entity = entities.get(i);
+
+                if (counts[i] == 0) {
+                    conflicts.add(entity);
+                    continue;
+                }
+
+                rowsAffected += counts[i];
+                Number current = version == null ? null : (Number) metadata.getValue(entity, version);
+                Runnable updated = () -> {
+                    if (current != null) {
+                        metadata.setValue(entity, version, current.longValue() + 1);
+                    }
+
+                    track(entity);
+                };
+
+                if (sharded) {
+                    outcome.keep(updated);
+                } else {
+                    outcome.onSuccess(updated);
+                }
+            }
+        }
+
+        // nothing is bumped or re-snapshotted, so that the conflicting entities can be refreshed and
+        // everything flushed again
+        if (!conflicts.isEmpty()) {
+            throw new OptimisticLockException(conflicts.size() + " tracked entities were changed or removed"
+                    + " since they were read", conflicts);
+        }
+
+        return rowsAffected;
+    }
+
+    private int delete(Class<?> clas, Outcome outcome) throws SQLException {
+        ArrayList<Object> pending = new ArrayList<>();
+
+        for (Identity key : deletedEntities) {
+            Object entity = key.entity;
+
+            if (entity.getClass() == clas) {
+                pending.add(entity);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        int rowsAffected = 0;
+
+        boolean sharded = ConnectionFactory.getInstance().getShardRouter().isSharded(metadata);
+
+        if (!sharded) {
+            rowsAffected = deleteAny(metadata, pending);
+        } else {
+            for (int count : runBatch(metadata, OperationType.REMOVE, metadata.getDeleteSql(), pending,
+                    (ps, entity) -> ps.setObject(1, metadata.getPrimaryKeyValue(entity)))) {
+                rowsAffected += count;
+            }
+        }
+
+        Runnable deleted = () -> pending.forEach(entity -> deletedEntities.remove(new Identity(entity)));
+
+        if (sharded) {
+            outcome.keep(deleted);
+        } else {
+            outcome.onSuccess(deleted);
+        }
+
+        return rowsAffected;
+    }
+
+    /**
+     * Deletes the entities by @PK with one statement per chunk instead of one per entity: a single array
+     * parameter where the dialect binds arrays, an in list of up to maxParameters() otherwise
+     * @return amount of rows deleted
+     */
+    private int deleteAny(EntityMetadata metadata, List<Object> entities) throws SQLException {
+        Dialect dialect = ConnectionFactory.getInstance().getDialect();
+        Connection conn = ConnectionFactory.getInstance().getConnection();
+        int chunkSize = dialect.supportsArrays() ? entities.size() : dialect.maxParameters();
+        int rowsAffected = 0;
+
+        for (int from = 0; from < entities.size(); from += chunkSize) {
+            ArrayList<Object> pks = new ArrayList<>();
+            entities.subList(from, Math.min(entities.size(), from + chunkSize))
+                    .forEach(entity -> pks.add(metadata.getPrimaryKeyValue(entity)));
+
+            String sql = metadata.getDeleteAnySql(pks.size());
+            long start = System.nanoTime();
+            long prepared = start;
+            int deleted = 0;
+            Exception error = null;
+
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                dialect.bindAnyOf(ps, 1, metadata.getPrimaryKey().getType(), pks);
+                prepared = System.nanoTime();
+                DataSourceRouter.wrote();
+                deleted = handle.execute(ps, PreparedStatement::executeUpdate);
+                rowsAffected += deleted;
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                QueryMetrics.record(new QueryEvent(metadata.getTableName(), OperationType.REMOVE, sql, prepared - start,
+                        System.nanoTime() - prepared, 0, deleted, error));
+            }
+        }
+
+        return rowsAffected;
+    }
+
+    /**
+     * Runs the batch on the primary, or for sharded entities, one batch per shard on the shards the
+     * entities live on
+     * @return amount of rows affected by each entity, in the order of the entities
+     */
+    private int[] runBatch(EntityMetadata metadata, OperationType operation, String sql, List<Object> entities,
+                           Binder binder) throws SQLException {
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+
+        if (!shards.isSharded(metadata)) {
+            return runBatch(ConnectionFactory.getInstance().getConnection(), metadata, operation, sql, entities, binder);
+        }
+
+        LinkedHashMap<Integer, List<Integer>> entitiesByShard = new LinkedHashMap<>();
+
+        for (int i = 0; i < entities.size(); i++) {
+            Object entity = entities.get(i);
+            int shard = shards.shardOf(metadata.getShardKey(), metadata.getValue(entity, metadata.getShardKey()));
+            entitiesByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(i);
+        }
+
+        int[] counts = new int[entities.size()];
+
+        for (Map.Entry<Integer, List<Integer>> shard : entitiesByShard.entrySet()) {
+            List<Integer> indices = shard.getValue();
+            ArrayList<Object> shardEntities = new ArrayList<>();
+            indices.forEach(i -> shardEntities.add(entities.get(i)));
+
+            int[] shardCounts = shards.onShards(Collections.singletonList(shard.getKey()),
+                    conn -> runBatch(conn, metadata, operation, sql, shardEntities, binder)).get(0);
+
+            for (int i = 0; i < indices.size(); i++) {
+                counts[indices.get(i)] = shardCounts[i];
+            }
+        }
+
+        return counts;
+    }
+
+    private int[] runBatch(Connection conn, EntityMetadata metadata, OperationType operation, String sql,
+                           List<Object> entities, Binder binder) throws SQLException {
+        long start = System.nanoTime();
+        long prepared = start;
+        int rowsAffected = 0;
+        Exception error = null;
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Object entity : entities) {
+                binder.bind(ps, entity);
+                ps.addBatch();
+            }
+
+            prepared = System.nanoTime();
+            DataSourceRouter.wrote();
+            int[] counts = handle.execute(ps, PreparedStatement::executeBatch);
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = counts[i] == Statement.SUCCESS_NO_INFO ? 1 : Math.max(counts[i], 0);
+                rowsAffected += counts[i];
+            }
+
+            return counts;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            QueryMetrics.record(new QueryEvent(metadata.getTableName(), operation, sql, prepared - start,
+                    System.nanoTime() - prepared, 0, rowsAffected, error));
+        }
+    }
+
+    private List<AttrField> dirtyColumns(Object entity, Object[] snapshot) {
+        EntityMetadata metadata = EntityRegistry.get(entity.getClass());
+        List<AttrField> attrs = metadata.getInsertableFields();
+        ArrayList<AttrField> dirty = new ArrayList<>();
+
+        for (int i = 0; i < attrs.size(); i++) {
+            if (attrs.get(i) == metadata.getVersion()) {
+                continue; // the version is bumped by the update itself, never written
+            }
+
+            if (!Objects.deepEquals(snapshot[i], metadata.getValue(entity, attrs.get(i)))) {
+                dirty.add(attrs.get(i));
+            }
+        }
+
+        return dirty;
+    }
+
+    private Object[] snapshot(Object entity) {
+        EntityMetadata metadata = requireEntity(entity);
+        List<AttrField> attrs = metadata.getInsertableFields();
+        Object[] values = new Object[attrs.size()];
+
+        for (int i = 0; i < attrs.size(); i++) {
+            Object value = metadata.getValue(entity, attrs.get(i));
+            values[i] = value instanceof byte[] ? ((byte[]) value).clone() : value;
+        }
+
+        return values;
+    }
+
+    private static String updateSql(EntityMetadata metadata, List<AttrField> columns) {
+        StringBuilder sets = new StringBuilder();
+
+        for (AttrField attr : columns) {
+            sets.append(sets.length() == 0 ? "" : ", ").append(attr.getColumnName()).append(" = ?");
+        }
+
+        AttrField version = metadata.getVersion();
+
+        if (version == null) {
+            return "update " + metadata.getTableName() + " set " + sets
+                    + " where " + metadata.getPrimaryKey().getColumnName() + " = ?";
+        }
+
+        return "update " + metadata.getTableName() + " set " + sets + ", " + version.getColumnName() + " = "
+                + version.getColumnName() + " + 1 where " + metadata.getPrimaryKey().getColumnName() + " = ? and "
+                + version.getColumnName() + " = ?";
+    }
+
+    /**
+     * Orders the entity classes with pending changes so that every class comes after the classes its
+     * @FK columns reference
+     */
+    private List<Class<?>> dependencyOrder() {
+        LinkedHashSet<Class<?>> pending = new LinkedHashSet<>();
+
+        for (Identity key : newEntities) {
+            pending.add(key.entity.getClass());
+        }
+
+        for (Identity key : deletedEntities) {
+            pending.add(key.entity.getClass());
+        }
+
+        ArrayList<Class<?>> order = new ArrayList<>();
+        HashSet<Class<?>> visiting = new HashSet<>();
+
+        for (Class<?> clas : pending) {
+            visit(clas, pending, visiting, order);
+        }
+
+        return order;
+    }
+
+    private static void visit(Class<?> clas, Set<Class<?>> pending, HashSet<Class<?>> visiting,
+                              List<Class<?>> order) {
+        // a cycle is broken wherever it's found; the database will report it if that order doesn't work
+        if (order.contains(clas) || !visiting.add(clas)) {
+            return;
+        }
+
+        for (FKField fk : EntityRegistry.get(clas).getFkFields()) {
+            EntityMetadata referenced = EntityRegistry.findReferenced(fk);
+
+            if (referenced != null && pending.contains(referenced.getEntityClass())) {
+                visit(referenced.getEntityClass(), pending, visiting, order);
+            }
+        }
+
+        visiting.remove(clas);
+        order.add(clas);
+    }
+
+    private CrudModel<?> model(Class<?> clas) throws SQLException {
+        CrudModel<?> model = models.get(clas);
+
+        if (model == null) {
+            model = new CrudModel<>(clas);
+            models.put(clas, model);
+        }
+
+        return model;
+    }
+
+    private static EntityMetadata requireEntity(Object entity) {
+        if (entity == null) {
+            throw new InvalidInputException("A unit of work can't track null");
+        }
+
+        EntityMetadata metadata = EntityRegistry.get(entity.getClass());
+
+        if (metadata.getTableName() == null || metadata.getPrimaryKey() == null) {
+            throw new InvalidInputException("A unit of work needs entities with a @Table and a @PK, got: "
+                    + entity.getClass().getName());
+        }
+
+        return metadata;
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement ps, Object entity) throws SQLException;
+    }
+
+    /**
+     * The changes a flush makes to the unit of work, applied once its writes succeeded, and the changes
+     * it made to entities along the way, undone if they didn't
+     */
+    private static class Outcome {
+        private final ArrayList<Runnable> kept = new ArrayList<>();
+        private final ArrayList<Runnable> onSuccess = new ArrayList<>();
+        private final ArrayList<Runnable> onFailure = new ArrayList<>();
+
+        void onSuccess(Runnable change) {
+            onSuccess.add(change);
+        }
+
+        void onFailure(Runnable undo) {
+            onFailure.add(undo);
+        }
+
+        /**
+         * Applies the change whether or not the flush succeeds, for writes a rollback can't undo, e.g. the
+         * batches every shard commits on its own
+         */
+        void keep(Runnable change) {
+            kept.add(change);
+        }
+
+        void succeeded() {
+            kept.forEach(Runnable::run);
+            onSuccess.forEach(Runnable::run);
+        }
+
+        void failed() {
+            kept.forEach(Runnable::run);
+            onFailure.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Compares entities by reference, so that entities with their own equals() are still told apart
+     */
+    private static class Identity {
+        private final Object entity;
+
+        Identity(Object entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity && ((Identity) o).entity == entity;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(entity);
+        }
+    }
+}
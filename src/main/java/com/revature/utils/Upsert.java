@@ -0,0 +1,255 @@
+package com.revature.utils;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.metrics.OperationType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upsert.java
+ * Inserts models, or updates the existing rows they conflict with, in a single round trip per batch
+ * through the upsert of the dialect: insert ... on conflict ... do update on postgres, insert ... on
+ * duplicate key update on MySQL, and merge on H2
+ */
+class Upsert<T> extends ModelScraper {
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private CrudModel<T> ref;
+    private ArrayList<AttrField> conflictTarget;
+    private ArrayList<AttrField> updateColumns;
+
+    Upsert(CrudModel<T> ref) {
+        setTargetClass(ref.clas);
+        this.ref = ref;
+    }
+
+    CrudModel<T> onConflict(String... attrs) {
+        if (attrs.length == 0) {
+            throw new InvalidInputException("onConflict() requires at least one input");
+        }
+
+        conflictTarget = resolve(attrs, "onConflict()");
+        return ref;
+    }
+
+    CrudModel<T> doUpdate(String... attrs) {
+        updateColumns = resolve(attrs, "doUpdate()");
+        return ref;
+    }
+
+    /**
+     * Upserts the models in batches of up to MAX_BATCH_SIZE rows. Each batch is its own statement, so
+     * with auto commit on a failure leaves earlier batches applied; since upserts are idempotent, the
+     * whole call can simply be retried. The conflict target and update columns are reset afterwards.
+     */
+    UpsertResult upsertAll(Collection<T> models) throws SQLException {
+        EntityMetadata metadata = EntityRegistry.get(clas);
+        List<AttrField> target = conflictTarget;
+        List<AttrField> updates = updateColumns;
+        PKField key = null; // the @PK as the conflict target, when no @Attr maps its column
+        conflictTarget = null;
+        updateColumns = null;
+
+        if (target == null) {
+            if (metadata.getPrimaryKey() == null) {
+                throw new InvalidInputException("upsert() needs either a @PK or a call to onConflict()");
+            }
+
+            AttrField pkAttr = getAttributeByColumnName(metadata.getPrimaryKey().getColumnName());
+
+            if (pkAttr == null) {
+                key = metadata.getPrimaryKey();
+                target = Collections.emptyList();
+            } else {
+                target = Collections.singletonList(pkAttr);
+            }
+        }
+
+        ArrayList<AttrField> columns = new ArrayList<>(target);
+
+        for (AttrField attr : metadata.getInsertableFields()) {
+            if (!columns.contains(attr)) {
+                columns.add(attr);
+            }
+        }
+
+        if (updates == null) {
+            updates = new ArrayList<>(columns);
+            updates.removeAll(target);
+        }
+
+        ShardRouter shards = ConnectionFactory.getInstance().getShardRouter();
+
+        if (!shards.isSharded(metadata)) {
+            return upsertOn(ref.connection(), metadata, new ArrayList<>(models), key, columns, target, updates);
+        }
+
+        // a row can only conflict with rows on its own shard, since the @ShardKey never changes
+        LinkedHashMap<Integer, ArrayList<T>> modelsByShard = new LinkedHashMap<>();
+
+        for (T model : models) {
+            int shard = shards.shardOf(metadata.getShardKey(), metadata.getValue(model, metadata.getShardKey()));
+            modelsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(model);
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        int ignored = 0;
+
+        for (Map.Entry<Integer, ArrayList<T>> shard : modelsByShard.entrySet()) {
+            PKField shardKey = key;
+            List<AttrField> shardTarget = target;
+            List<AttrField> shardUpdates = updates;
+            UpsertResult result = shards.onShards(Collections.singletonList(shard.getKey()), conn -> upsertOn(conn,
+                    metadata, shard.getValue(), shardKey, columns, shardTarget, shardUpdates)).get(0);
+
+            inserted += result.getInserted();
+            updated += result.getUpdated();
+            ignored += result.getIgnored();
+        }
+
+        return new UpsertResult(inserted, updated, ignored);
+    }
+
+    /**
+     * @param key the @PK, if it's the conflict target without being an @Attr; it's then inserted in front of
+     *            the columns
+     */
+    private UpsertResult upsertOn(Connection conn, EntityMetadata metadata, ArrayList<T> pending, PKField key,
+                                  List<AttrField> columns, List<AttrField> target, List<AttrField> updates)
+            throws SQLException {
+        int maxParameters = ConnectionFactory.getInstance().getDialect().maxParameters();
+        int rowParameters = columns.size() + (key == null ? 0 : 1);
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, maxParameters / rowParameters));
+        int inserted = 0;
+        int updated = 0;
+        int ignored = 0;
+
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<T> batch = pending.subList(from, Math.min(pending.size(), from + batchSize));
+
+            // a row can't be updated twice in one statement, so the last model wins
+            LinkedHashMap<List<Object>, T> unique = new LinkedHashMap<>();
+
+            for (T model : batch) {
+                ArrayList<Object> conflict = new ArrayList<>();
+
+                if (key != null) {
+                    conflict.add(metadata.getPrimaryKeyValue(model));
+                }
+
+                target.forEach(attr -> conflict.add(metadata.getValue(model, attr)));
+                unique.remove(conflict);
+                unique.put(conflict, model);
+            }
+
+            int superseded = batch.size() - unique.size();
+            int[] counts = runBatch(conn, metadata, unique.values(), key, columns, target, updates);
+            inserted += counts[0];
+            updated += counts[1] + superseded;
+            ignored += unique.size() - counts[0] - counts[1];
+        }
+
+        return new UpsertResult(inserted, updated, ignored);
+    }
+
+    /**
+     * @return the amount of inserted and updated rows
+     */
+    private int[] runBatch(Connection conn, EntityMetadata metadata, Collection<T> batch, PKField key,
+                           List<AttrField> columns, List<AttrField> target, List<AttrField> updates)
+            throws SQLException {
+        long start = System.nanoTime();
+        Dialect dialect = ConnectionFactory.getInstance().getDialect();
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Class<?>> types = new ArrayList<>();
+
+        if (key != null) {
+            names.add(key.getColumnName());
+            types.add(key.getType());
+        }
+
+        names.addAll(columnNames(columns));
+        columns.forEach(attr -> types.add(attr.getType()));
+        String sql = dialect.upsertSql(getTableName(), names, types,
+                key == null ? columnNames(target) : Collections.singletonList(key.getColumnName()),
+                columnNames(updates), batch.size());
+
+        // the SQL differs per batch size, so the statement isn't cached
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+
+            for (T model : batch) {
+                if (key != null) {
+                    TypeRegistry.bindObject(ps, index++, metadata.getPrimaryKeyValue(model),
+                            metadata.getColumnType(key.getColumnName()));
+                }
+
+                for (AttrField attr : columns) {
+                    TypeRegistry.bindObject(ps, index++, metadata.getValue(model, attr),
+                            metadata.getColumnType(attr.getColumnName()));
+                }
+            }
+
+            long prepared = System.nanoTime();
+            prepareNanos = prepared - start;
+            int[] counts = new int[2];
+            Exception error = null;
+
+            try {
+                if (!dialect.upsertReturnsRows()) {
+                    int affected = ref.getQueryHandle().execute(ps, PreparedStatement::executeUpdate);
+                    counts = dialect.upsertCounts(affected, batch.size(), !updates.isEmpty());
+                    return counts;
+                }
+
+                try (ResultSet rs = ref.getQueryHandle().execute(ps, PreparedStatement::executeQuery)) {
+                    while (rs.next()) {
+                        counts[rs.getBoolean(1) ? 0 : 1]++;
+                    }
+                }
+
+                return counts;
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                recordQuery(OperationType.UPSERT, sql, System.nanoTime() - prepared, 0, counts[0] + counts[1], error);
+            }
+        }
+    }
+
+    private static List<String> columnNames(List<AttrField> attrs) {
+        ArrayList<String> names = new ArrayList<>();
+        attrs.forEach(attr -> names.add(attr.getColumnName()));
+        return names;
+    }
+
+    private ArrayList<AttrField> resolve(String[] attrs, String method) {
+        ArrayList<AttrField> resolved = new ArrayList<>();
+
+        for (String attrStr : attrs) {
+            AttrField attr = getAttributeByColumnName(attrStr);
+
+            if (attr == null) {
+                throw new InvalidInputException(method + " was given a column that isn't mapped: " + attrStr
+                        + " (mapped columns: " + Arrays.toString(attrFields.stream()
+                        .map(AttrField::getColumnName).toArray()) + ")");
+            }
+
+            resolved.add(attr);
+        }
+
+        return resolved;
+    }
+}
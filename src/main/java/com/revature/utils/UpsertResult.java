@@ -0,0 +1,48 @@
+package com.revature.utils;
+
+/**
+ * UpsertResult.java
+ * How the rows passed to upsert() or upsertAll() were applied
+ */
+public class UpsertResult {
+    private final int inserted;
+    private final int updated;
+    private final int ignored;
+
+    UpsertResult(int inserted, int updated, int ignored) {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.ignored = ignored;
+    }
+
+    /**
+     * @return amount of rows that didn't exist yet
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * @return amount of rows that conflicted with an existing row (or with a later model in the same
+     * call) and were updated
+     */
+    public int getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return amount of rows that conflicted and were left as is, because there were no columns to update
+     */
+    public int getIgnored() {
+        return ignored;
+    }
+
+    public int getRowsAffected() {
+        return inserted + updated;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertResult{inserted=" + inserted + ", updated=" + updated + ", ignored=" + ignored + "}";
+    }
+}
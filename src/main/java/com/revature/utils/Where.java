@@ -1,45 +1,46 @@
 package com.revature.utils;
 
 import com.revature.exceptions.BadMethodChainCallException;
+import com.revature.exceptions.InvalidInputException;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
 class Where<T> extends ModelScraper {
-    private PreparedStatement ps;
-    private Connection conn;
+    private SqlStatement ps;
     private CrudModel<T> ref;
     private ArrayList<AttrField> appliedAttrs;
-    private String connStr;
+    private String shardPin; // value the where clause pins the @ShardKey to, if any
+    private boolean disjunctive;
 
     Where(CrudModel<T> ref) throws SQLException {
-        this.conn = ref.conn;
         this.ref = ref;
         setTargetClass(ref.clas);
         appliedAttrs = new ArrayList<>();
-        connStr = "";
     }
 
-    void setPreparedStatementStr(String ps) throws SQLException {
-        connStr += ps + " ";
-        this.ps = conn.prepareStatement(connStr);
+    /**
+     * Starts the where clause off of the statement of the current method chain, which it appends to
+     */
+    void setPreparedStatement(SqlStatement ps) {
+        this.ps = ps;
     }
 
     CrudModel<T> where() throws SQLException {
-        if (ps.toString().startsWith("insert"))
+        if (ps.startsWith("insert"))
         {
             throw new BadMethodChainCallException("where() can't be called off of add() since insert statements can't have where clauses");
         }
 
-        if (ps.toString().contains("where")) {
+        if (ps.getSql().contains(" where ")) {
             throw new BadMethodChainCallException("where() can only be called once in a method chain call." +
                     " Use and(), or(), or not()");
         }
 
-        ps = conn.prepareStatement(ps.toString() + " where ");
+        ps.append(" where ");
         ref.ps = ps;
+        clearShardPin();
         return ref;
     }
 
@@ -51,17 +52,18 @@ class Where<T> extends ModelScraper {
     }
 
     CrudModel<T> and() throws SQLException {
-        if (ps.toString().startsWith("insert"))
+        if (ps != null && ps.startsWith("insert"))
         {
             throw new BadMethodChainCallException("cannot call and() on add() methods");
         }
 
-        if (!ps.toString().contains("where"))
+        if (ps == null || !ps.getSql().contains(" where "))
         {
             throw new BadMethodChainCallException("cannot call and() if there is no where clause");
         }
 
-        ps = conn.prepareStatement(ps.toString() + " and ");
+        ps.append(" and ");
+        ref.ps = ps;
         return ref;
     }
 
@@ -72,17 +74,19 @@ class Where<T> extends ModelScraper {
     }
 
     CrudModel<T> or() throws SQLException {
-        if (ps.toString().startsWith("insert"))
+        if (ps != null && ps.startsWith("insert"))
         {
             throw new BadMethodChainCallException("cannot call or() on add() methods");
         }
 
-        if (!ps.toString().contains("where"))
+        if (ps == null || !ps.getSql().contains(" where "))
         {
             throw new BadMethodChainCallException("cannot call or() if there is no where clause");
         }
 
-        ps = conn.prepareStatement(ps.toString() + " or ");
+        ps.append(" or ");
+        ref.ps = ps;
+        disjunctive = true;
         return ref;
     }
 
@@ -93,53 +97,154 @@ class Where<T> extends ModelScraper {
     }
 
     CrudModel<T> not(Conditions cond, String attr, String value) throws SQLException {
+        if (ps == null) {
+            throw new BadMethodChainCallException("cannot call not() if there is no where clause");
+        }
+
         builtWhereClause(cond, "not ", attr, value);
         return ref;
     }
 
-    private void builtWhereClause(Conditions cond, String logicalOp, String attr, String value) throws SQLException {
-        AttrField selectedField = null;
+    /**
+     * Appends a parenthesized group of predicates, e.g. where a = ? and (b = ? or c = ?)
+     */
+    CrudModel<T> group(Consumer<WhereGroup<T>> predicates) throws SQLException {
+        requirePredicatePosition("A group");
+        WhereGroup<T> group = new WhereGroup<>(this);
+        predicates.accept(group);
+        appendPredicate(new SqlStatement("(").append(group.getStatement()).append(")"));
+        return ref;
+    }
+
+    /**
+     * Appends an exists predicate over the select of another grab() chain, so the database does the
+     * semi-join instead of the rows being intersected in Java
+     * @param attr column of the subquery's entity that has to match outerAttr, or null for an uncorrelated subquery
+     * @param outerAttr column of this chain's entity
+     */
+    CrudModel<T> exists(CrudModel<?> subquery, String attr, String outerAttr) throws SQLException {
+        requirePredicatePosition("exists()");
+        appendPredicate(existsSql(this, subquery, attr, outerAttr));
+        return ref;
+    }
+
+    /**
+     * Appends an attr in (select ...) predicate over the one column another grab() chain selects
+     */
+    CrudModel<T> in(String attr, CrudModel<?> subquery) throws SQLException {
+        requirePredicatePosition("in()");
+        appendPredicate(inSql(this, attr, subquery));
+        return ref;
+    }
+
+    private void requirePredicatePosition(String method) {
+        if (ps == null || !ps.endsWith(" where ") && !ps.endsWith(" and ") && !ps.endsWith(" or ")) {
+            throw new BadMethodChainCallException(method + " has to follow where(), and(), or or()");
+        }
+    }
+
+    private void appendPredicate(SqlStatement predicate) {
+        ps.append(predicate);
+        ref.ps = ps;
+    }
 
+    private void builtWhereClause(Conditions cond, String logicalOp, String attr, String value) throws SQLException {
         if (attrFields.size() == 0) {
             setAppliedFields(appliedAttrs);
         }
 
-        String psStr = ps.toString() + logicalOp;
+        AttrField selectedField = getAttributeByColumnName(attr);
+
+        if (selectedField == null) {
+            throw new InvalidInputException("There is no column " + attr + " to filter on");
+        }
+
+        ps.append(logicalOp + attr + " " + operator(cond) + " ?");
+        bindValue(ps, selectedField, value);
+        ref.ps = ps;
+
+        AttrField shardKey = EntityRegistry.get(clas).getShardKey();
+
+        if (cond == Conditions.EQUALS && logicalOp.isEmpty() && shardPin == null
+                && shardKey != null && shardKey.getColumnName().equals(attr)) {
+            shardPin = value;
+        }
+    }
+
+    static String operator(Conditions cond) {
         switch (cond) {
             case EQUALS:
-                ps = conn.prepareStatement(psStr + attr + " = ?");
-                selectedField = getAttributeByColumnName(attr);
-                break;
+                return "=";
             case NOT_EQUALS:
-                ps = conn.prepareStatement(psStr + attr + " <> ?");
-                selectedField = getAttributeByColumnName(attr);
-                break;
+                return "<>";
             case GT:
-                ps = conn.prepareStatement(psStr + attr + " > ?");
-                selectedField = getAttributeByColumnName(attr);
-                break;
+                return ">";
             case LT:
-                ps = conn.prepareStatement(psStr + attr + " < ?");
-                selectedField = getAttributeByColumnName(attr);
-                break;
+                return "<";
             case GTE:
-                ps = conn.prepareStatement(psStr + attr + " >= ?");
-                selectedField = getAttributeByColumnName(attr);
-                break;
-            case LTE:
-                ps = conn.prepareStatement(psStr + attr + " <= ?");
-                selectedField = getAttributeByColumnName(attr);
-                break;
+                return ">=";
+            default:
+                return "<=";
+        }
+    }
+
+    static SqlStatement existsSql(ModelScraper outer, CrudModel<?> subquery, String attr, String outerAttr) {
+        String correlation = null;
+
+        if (attr != null || outerAttr != null) {
+            EntityMetadata inner = EntityRegistry.get(subquery.clas);
+            EntityMetadata outerMetadata = EntityRegistry.get(outer.clas);
+
+            if (inner.getTableName().equals(outerMetadata.getTableName())) {
+                throw new InvalidInputException("exists() can't correlate " + inner.getTableName() + " with itself");
+            }
+
+            requireColumn(inner, attr);
+            requireColumn(outerMetadata, outerAttr);
+            correlation = inner.getTableName() + "." + attr + " = " + outerMetadata.getTableName() + "." + outerAttr;
+        }
+
+        return new SqlStatement("exists (").append(subquery.subquerySql(correlation)).append(")");
+    }
+
+    static SqlStatement inSql(ModelScraper outer, String attr, CrudModel<?> subquery) {
+        requireColumn(EntityRegistry.get(outer.clas), attr);
+
+        if (subquery.subqueryColumns() != 1) {
+            throw new InvalidInputException("The subquery of in() has to grab exactly one column");
         }
 
-        Class<?> type = selectedField.getType();
+        return new SqlStatement(attr + " in (").append(subquery.subquerySql(null)).append(")");
+    }
 
-        if (type == String.class) {
-            ps.setString(1, value);
-        } else if (type == int.class) {
-            ps.setInt(1, Integer.parseInt(value));
-        } else if (type == double.class) {
-            ps.setDouble(1, Double.parseDouble(value));
+    private static void requireColumn(EntityMetadata metadata, String column) {
+        for (AttrField attr : metadata.getAttrFields()) {
+            if (attr.getColumnName().equals(column)) {
+                return;
+            }
         }
+
+        throw new InvalidInputException(metadata.getTableName() + " has no column " + column);
+    }
+
+    /**
+     * @return the @ShardKey value that every row matched by the where clause has, or null if the where
+     * clause doesn't pin the rows to one shard
+     */
+    String getShardPin() {
+        return disjunctive ? null : shardPin;
+    }
+
+    /**
+     * Forgets the where clause of the previous method chain
+     */
+    void reset() {
+        ps = null;
+        clearShardPin();
+    }
+
+    void clearShardPin() {
+        shardPin = null;
+        disjunctive = false;
     }
 }
@@ -0,0 +1,141 @@
+package com.revature.utils;
+
+import com.revature.exceptions.BadMethodChainCallException;
+import com.revature.exceptions.InvalidInputException;
+
+import java.util.function.Consumer;
+
+/**
+ * WhereGroup.java
+ * Predicates that whereGroup(), andGroup(), and orGroup() put between parentheses, built with the same
+ * methods as the where clause itself. Groups nest, so any and/or precedence can be expressed in one
+ * statement:
+ *     grab().whereGroup(g -> g.where(EQUALS, "country_id", "2").or(EQUALS, "country_id", "3"))
+ *           .and(GT, "weight", "100")
+ */
+public class WhereGroup<T> {
+    private final ModelScraper scraper;
+    private final SqlStatement sql = new SqlStatement("");
+    private boolean expectingPredicate = true;
+
+    WhereGroup(ModelScraper scraper) {
+        this.scraper = scraper;
+    }
+
+    /**
+     * Opens the group; only needed before not(), exists(), in(), or a nested whereGroup()
+     */
+    public WhereGroup<T> where() {
+        if (!sql.getSql().isEmpty()) {
+            throw new BadMethodChainCallException("where() can only open a group once. Use and(), or(), or not()");
+        }
+
+        return this;
+    }
+
+    public WhereGroup<T> where(Conditions cond, String attr, String value) {
+        return where().predicate(cond, "", attr, value);
+    }
+
+    public WhereGroup<T> and() {
+        return join(" and ");
+    }
+
+    public WhereGroup<T> and(Conditions cond, String attr, String value) {
+        return and().predicate(cond, "", attr, value);
+    }
+
+    public WhereGroup<T> or() {
+        return join(" or ");
+    }
+
+    public WhereGroup<T> or(Conditions cond, String attr, String value) {
+        return or().predicate(cond, "", attr, value);
+    }
+
+    public WhereGroup<T> not(Conditions cond, String attr, String value) {
+        return predicate(cond, "not ", attr, value);
+    }
+
+    public WhereGroup<T> whereGroup(Consumer<WhereGroup<T>> group) {
+        return where().nest(group);
+    }
+
+    public WhereGroup<T> andGroup(Consumer<WhereGroup<T>> group) {
+        return and().nest(group);
+    }
+
+    public WhereGroup<T> orGroup(Consumer<WhereGroup<T>> group) {
+        return or().nest(group);
+    }
+
+    public WhereGroup<T> exists(CrudModel<?> subquery) {
+        return exists(subquery, null, null);
+    }
+
+    /**
+     * Correlated exists: only the rows of the subquery whose attr matches outerAttr of the outer row count
+     */
+    public WhereGroup<T> exists(CrudModel<?> subquery, String attr, String outerAttr) {
+        requirePredicatePosition("exists()");
+        return append(Where.existsSql(scraper, subquery, attr, outerAttr));
+    }
+
+    public WhereGroup<T> in(String attr, CrudModel<?> subquery) {
+        requirePredicatePosition("in()");
+        return append(Where.inSql(scraper, attr, subquery));
+    }
+
+    /**
+     * @return the predicates of the group, with their parameters
+     */
+    SqlStatement getStatement() {
+        if (sql.getSql().isEmpty() || expectingPredicate) {
+            throw new BadMethodChainCallException("A where group can't be empty or end with and() or or()");
+        }
+
+        return sql;
+    }
+
+    private WhereGroup<T> join(String logicalOp) {
+        if (expectingPredicate) {
+            throw new BadMethodChainCallException("and() and or() have to follow a predicate of the group");
+        }
+
+        sql.append(logicalOp);
+        expectingPredicate = true;
+        return this;
+    }
+
+    private WhereGroup<T> predicate(Conditions cond, String logicalOp, String attr, String value) {
+        requirePredicatePosition(logicalOp.isEmpty() ? "A condition" : "not()");
+        AttrField selectedField = scraper.getAttributeByColumnName(attr);
+
+        if (selectedField == null) {
+            throw new InvalidInputException("There is no column " + attr + " to filter on");
+        }
+
+        SqlStatement predicate = new SqlStatement(logicalOp + attr + " " + Where.operator(cond) + " ?");
+        scraper.bindValue(predicate, selectedField, value);
+        return append(predicate);
+    }
+
+    private WhereGroup<T> nest(Consumer<WhereGroup<T>> group) {
+        requirePredicatePosition("A nested group");
+        WhereGroup<T> nested = new WhereGroup<>(scraper);
+        group.accept(nested);
+        return append(new SqlStatement("(").append(nested.getStatement()).append(")"));
+    }
+
+    private void requirePredicatePosition(String method) {
+        if (!expectingPredicate) {
+            throw new BadMethodChainCallException(method + " has to follow where(), and(), or or() in a group");
+        }
+    }
+
+    private WhereGroup<T> append(SqlStatement predicate) {
+        sql.append(predicate);
+        expectingPredicate = false;
+        return this;
+    }
+}
@@ -0,0 +1,60 @@
+package com.revature.utils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Workers.java
+ * The threads that partitioned scans and shard scatters run on. They are daemon threads that are created
+ * as needed and reused afterwards; every task mostly waits on the database, and how many of them run at
+ * once is bounded by the pooled connections they acquire.
+ */
+final class Workers {
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService pool = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "aftermath-worker-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Workers() { }
+
+    static void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Runs the tasks concurrently and waits for all of them
+     * @param waitingFor what the caller waits for, for the message of an interruption
+     * @return the result of every task, in the order of the tasks
+     */
+    static <R> List<R> invokeAll(List<? extends Callable<R>> tasks, String waitingFor) throws SQLException {
+        ArrayList<R> results = new ArrayList<>();
+
+        try {
+            for (Future<R> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause; // keeps e.g. a QueryTimeoutException typed
+            }
+
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for " + waitingFor, e);
+        }
+
+        return results;
+    }
+}
@@ -1,18 +1,63 @@
 package unitTests;
+import com.revature.exceptions.BadMethodChainCallException;
 import com.revature.exceptions.InvalidInputException;
+import com.revature.exceptions.InvalidSnapshotException;
+import com.revature.exceptions.OptimisticLockException;
+import com.revature.exceptions.QueryCancelledException;
+import com.revature.exceptions.QueryTimeoutException;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryMetrics;
+import com.revature.utils.Aftermath;
+import com.revature.utils.Aggregate;
+import com.revature.utils.ColumnBatch;
 import com.revature.utils.ConnectionFactory;
 import com.revature.utils.CrudModel;
+import com.revature.utils.ExportFormat;
+import com.revature.utils.H2Dialect;
+import com.revature.utils.Pair;
+import com.revature.utils.SchemaGenerator;
+import com.revature.utils.Snapshot;
+import com.revature.utils.UnitOfWork;
+import com.revature.utils.UpsertResult;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import unitTests.mocks.Animal;
+import unitTests.mocks.Attempt;
+import unitTests.mocks.Countries;
 import unitTests.mocks.Country;
+import unitTests.mocks.Lift;
+import unitTests.mocks.LifterCountry;
 import unitTests.mocks.Weightlifter;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static com.revature.utils.Conditions.*;
 import static org.junit.Assert.*;
@@ -344,4 +389,742 @@ public class CrudModelTest {
 
         assertThrows(InvalidInputException.class, () -> weightlifters.add());
     }
+
+    @Test
+    public void s_crudModelShouldOnlyPublishRowsThatWereRequested() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        ArrayList<Weightlifter> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+
+        weightlifters.grab().runGrabPublisher(1).subscribe(new Subscriber<Weightlifter>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(2);
+            }
+
+            @Override
+            public void onNext(Weightlifter weightlifter) {
+                received.add(weightlifter);
+
+                if (received.size() == 2) {
+                    subscription.cancel();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail(t.getMessage());
+            }
+
+            @Override
+            public void onComplete() {
+                completed.set(true);
+            }
+        });
+
+        assertEquals(2, received.size());
+        assertFalse(completed.get());
+    }
+
+    @Test
+    public void t_crudModelShouldGrabTheSameRowsInParallel() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        ArrayList<Weightlifter> expected = weightlifters.grab().runGrab();
+        List<Weightlifter> actual = weightlifters.grab().runGrabParallel(3).collect(Collectors.toList());
+
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+
+        ConcurrentLinkedQueue<Weightlifter> sink = new ConcurrentLinkedQueue<>();
+        weightlifters.grab().runGrabParallel(3, sink::add);
+
+        assertEquals(expected.size(), sink.size());
+
+        // closing a stream that wasn't consumed to the end stops its scans and gives their connections back
+        for (int i = 0; i < 10; i++) {
+            try (Stream<Weightlifter> first = weightlifters.grab().runGrabParallel(3)) {
+                assertEquals(1, first.limit(1).count());
+            }
+        }
+
+        assertEquals(expected.size(), weightlifters.grab().runGrabParallel(100).count());
+        assertThrows(BadMethodChainCallException.class, () -> weightlifters.grab().limit(1).runGrabParallel(3));
+        assertThrows(BadMethodChainCallException.class,
+                () -> weightlifters.grab().orderBy("weight", true).runGrabParallel(3, sink::add));
+    }
+
+    @Test
+    public void u_crudModelShouldUpdateRowsThatAlreadyExistOnUpsert() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        Weightlifter existing = weightlifters.grab().runGrab().get(0);
+        existing.setWeight(existing.getWeight() + 1);
+
+        Weightlifter replayed = new Weightlifter();
+        replayed.setId(existing.getId());
+        replayed.setFirstName(existing.getFirstName());
+        replayed.setLastName(existing.getLastName());
+        replayed.setWeight(existing.getWeight());
+        replayed.setHeight(existing.getHeight());
+        replayed.setCountryId(existing.getCountryId());
+
+        UpsertResult result = weightlifters.upsertAll(Arrays.asList(existing, replayed));
+
+        assertEquals(0, result.getInserted());
+        assertEquals(2, result.getUpdated());
+        assertEquals(existing.getWeight(), weightlifters.findById(existing.getId()).getWeight(), 0.001);
+    }
+
+    @Test
+    public void v_crudModelShouldSetTheGeneratedKeysOnSave() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        Weightlifter first = new Weightlifter();
+        first.setFirstName("Mattie");
+        first.setLastName("Rogers");
+        first.setWeight(69);
+        first.setHeight(165);
+        first.setCountryId(Country.USA.ordinal() + 1);
+
+        Weightlifter second = new Weightlifter();
+        second.setFirstName("Maude");
+        second.setLastName("Charron");
+        second.setWeight(64);
+        second.setHeight(163);
+        second.setCountryId(Country.Canada.ordinal() + 1);
+
+        assertEquals(2, weightlifters.saveAll(Arrays.asList(first, second)));
+        assertNotEquals(0, first.getId());
+        assertTrue(second.getId() > first.getId());
+        assertEquals("Rogers", weightlifters.findById(first.getId()).getLastName());
+        assertEquals("Charron", weightlifters.findById(second.getId()).getLastName());
+    }
+
+    @Test
+    public void w_unitOfWorkShouldOnlyFlushEntitiesThatChanged() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        UnitOfWork work = new UnitOfWork();
+
+        ArrayList<Weightlifter> loaded = work.trackAll(weightlifters.grab().runGrab());
+        Weightlifter changed = loaded.get(0);
+        changed.setHeight(changed.getHeight() + 1);
+
+        assertTrue(work.isDirty(changed));
+        assertEquals(1, work.commit());
+        assertFalse(work.isDirty(changed));
+        assertEquals(0, work.commit());
+        assertEquals(changed.getHeight(), weightlifters.findById(changed.getId()).getHeight(), 0.001);
+    }
+
+    @Test
+    public void wa_failedFlushShouldLeaveNothingWrittenWithAutoCommitOn() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        Weightlifter existing = weightlifters.grab().runGrab().get(0);
+
+        Weightlifter lifter = new Weightlifter();
+        lifter.setFirstName("Unflushed");
+        lifter.setLastName("Lifter");
+        lifter.setWeight(80);
+        lifter.setHeight(180);
+        lifter.setCountryId(existing.getCountryId());
+
+        // the country is still referenced by the existing lifter, so deleting it fails after the insert
+        Countries referenced = new Countries();
+        referenced.setId(existing.getCountryId());
+
+        UnitOfWork work = new UnitOfWork();
+        work.registerNew(lifter);
+        work.registerDeleted(referenced);
+
+        try {
+            work.flush();
+            fail("deleting a referenced country should have thrown");
+        } catch (Exception expected) {
+            assertEquals(0, lifter.getId());
+        }
+
+        assertTrue(weightlifters.grab().where(EQUALS, "firstname", "Unflushed").runGrab().isEmpty());
+    }
+
+    @Test
+    public void x_inTransactionShouldOnlyRollBackTheFailedSavepoint() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        int before = weightlifters.grab().runGrab().size();
+
+        int added = Aftermath.inTransaction(Connection.TRANSACTION_SERIALIZABLE, tx -> {
+            int rows = weightlifters.add("firstname", "lastname", "weight", "height", "country_id")
+                    .addValues("Sarah", "Robles", "150", "178", String.valueOf(Country.USA.ordinal() + 1))
+                    .runAdd();
+
+            try {
+                tx.savepoint(inner -> weightlifters.add("firstname", "lastname", "weight", "height", "country_id")
+                        .addValues("Ruslan", "Nurudinov", "-1", "not a height", String.valueOf(Country.Russia.ordinal() + 1))
+                        .runAdd());
+                fail("the second insert should have failed");
+            } catch (Exception expected) {
+                System.out.println(expected.getMessage());
+            }
+
+            return rows;
+        });
+
+        assertEquals(1, added);
+        assertEquals(before + 1, weightlifters.grab().runGrab().size());
+    }
+
+    @Test
+    public void xa_modelsCreatedInATransactionShouldNotKeepItsConnection() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        props.setProperty("poolSize", "1"); // every transaction gets the same pooled connection
+        ConnectionFactory.addCredentials(props);
+
+        ArrayList<CrudModel<Weightlifter>> created = new ArrayList<>();
+        Aftermath.inTransaction(tx -> created.add(new CrudModel<>(Weightlifter.class)));
+        CrudModel<Weightlifter> outlived = created.get(0);
+        int before = outlived.grab().runGrab().size();
+
+        try {
+            Aftermath.inTransaction(tx -> {
+                new CrudModel<>(Weightlifter.class).add("firstname", "lastname", "weight", "height", "country_id")
+                        .addValues("Maude", "Charron", "64", "163", String.valueOf(Country.Canada.ordinal() + 1))
+                        .runAdd();
+
+                // outside of the transaction, the model must not see its uncommitted insert
+                int seen = ForkJoinPool.commonPool().submit(() -> outlived.grab().runGrab().size()).get();
+                assertEquals(before, seen);
+                throw new IllegalStateException("roll back");
+            });
+            fail("the transaction should have been rolled back");
+        } catch (IllegalStateException expected) {
+            assertEquals(before, outlived.grab().runGrab().size());
+        }
+    }
+
+    @Test
+    public void y_changeShouldIncrementAndCheckTheVersionOfVersionedEntities() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Lift> lifts = new CrudModel<>(Lift.class);
+
+        lifts.change("kilos").set("150").where(EQUALS, "kilos", "140");
+        String update = lifts.getPreparedStatement();
+
+        assertTrue(update.contains("version = version + 1"));
+        lifts.expectVersion(3);
+    }
+
+    @Test
+    public void ya_staleVersionsShouldBeReportedWithoutBumpingAnyEntity() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        SchemaGenerator.createSchema(ConnectionFactory.getInstance().getConnection(), true, Lift.class);
+        CrudModel<Lift> lifts = new CrudModel<>(Lift.class);
+
+        Lift fresh = new Lift();
+        fresh.setKilos(140);
+        Lift stale = new Lift();
+        stale.setKilos(150);
+        assertEquals(2, lifts.saveAll(Arrays.asList(fresh, stale)));
+
+        // someone else updates the second lift in the meantime
+        Lift concurrent = lifts.findById(stale.getId());
+        concurrent.setKilos(155);
+        assertEquals(1, lifts.update(concurrent));
+        assertEquals(1, concurrent.getVersion());
+
+        fresh.setKilos(141);
+        stale.setKilos(151);
+
+        try {
+            Aftermath.inTransaction(tx -> lifts.updateAll(Arrays.asList(fresh, stale)));
+            fail("updating a lift with a stale version should have thrown");
+        } catch (OptimisticLockException expected) {
+            assertEquals(Collections.singletonList(stale), expected.getConflicts());
+        }
+
+        assertEquals(0, fresh.getVersion());
+        assertEquals(0, stale.getVersion());
+        assertEquals(140, lifts.findById(fresh.getId()).getKilos(), 0);
+
+        UnitOfWork work = new UnitOfWork();
+        work.trackAll(Arrays.asList(fresh, stale));
+        fresh.setKilos(142);
+        stale.setKilos(152);
+
+        try {
+            work.commit();
+            fail("committing a lift with a stale version should have thrown");
+        } catch (OptimisticLockException expected) {
+            assertEquals(Collections.singletonList(stale), expected.getConflicts());
+        }
+
+        assertEquals(0, fresh.getVersion());
+        assertTrue(work.isDirty(fresh));
+        assertTrue(work.isDirty(stale));
+
+        // once the stale lift is refreshed, the same unit of work goes through
+        stale.setVersion(lifts.findById(stale.getId()).getVersion());
+        assertEquals(2, work.commit());
+        assertEquals(1, fresh.getVersion());
+        assertEquals(2, stale.getVersion());
+        assertFalse(work.isDirty(fresh));
+        assertEquals(152, lifts.findById(stale.getId()).getKilos(), 0);
+
+        // with auto commit on, the lift that went through keeps its new version, in the database and the model
+        Lift again = lifts.findById(stale.getId());
+        again.setKilos(153);
+        assertEquals(1, lifts.update(again));
+        fresh.setKilos(144);
+        stale.setKilos(154);
+
+        try {
+            lifts.updateAll(Arrays.asList(fresh, stale));
+            fail("updating a lift with a stale version should have thrown");
+        } catch (OptimisticLockException expected) {
+            assertEquals(Collections.singletonList(stale), expected.getConflicts());
+        }
+
+        assertEquals(2, fresh.getVersion());
+        assertEquals(2, stale.getVersion());
+        fresh.setKilos(145);
+        assertEquals(1, lifts.update(fresh));
+        assertEquals(145, lifts.findById(fresh.getId()).getKilos(), 0);
+    }
+
+    @Test
+    public void yb_upsertShouldTargetThePrimaryKeyEvenIfItIsntAnAttr() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        SchemaGenerator.createSchema(ConnectionFactory.getInstance().getConnection(), true, Lift.class);
+        CrudModel<Lift> lifts = new CrudModel<>(Lift.class);
+
+        Lift lift = new Lift();
+        lift.setKilos(160);
+        lifts.save(lift);
+
+        Lift replayed = new Lift();
+        replayed.setId(lift.getId());
+        replayed.setKilos(165);
+
+        UpsertResult result = lifts.upsert(replayed);
+
+        assertEquals(0, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(165, lifts.findById(lift.getId()).getKilos(), 0);
+    }
+
+    @Test
+    public void z_skipLockedShouldLetWorkersClaimDifferentRows() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        try {
+            weightlifters.grab().limit(1).forUpdate().skipLocked().runGrab();
+            fail("forUpdate() outside of a transaction should have thrown");
+        } catch (BadMethodChainCallException expected) {
+            System.out.println(expected.getMessage());
+        }
+
+        Aftermath.inTransaction(tx -> {
+            Weightlifter claimed = weightlifters.grab().orderBy("weightlifter_id", true).limit(1)
+                    .forUpdate().skipLocked().runGrab().get(0);
+
+            // a second worker has its own transaction, so it has to skip the row claimed above
+            Weightlifter other = ForkJoinPool.commonPool().submit(() -> Aftermath.inTransaction(inner ->
+                    new CrudModel<>(Weightlifter.class).grab().orderBy("weightlifter_id", true).limit(1)
+                            .forUpdate().skipLocked().runGrab().get(0))).get();
+
+            assertNotEquals(claimed.getId(), other.getId());
+            return null;
+        });
+    }
+
+    @Test
+    public void za_queryHandleShouldOnlyCancelRunningStatements() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        props.setProperty("queryTimeoutMillis", "1500");
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        assertEquals(Duration.ofMillis(1500), weightlifters.getQueryHandle().getTimeout());
+        weightlifters.grab().timeout(Duration.ofSeconds(5));
+        assertEquals(Duration.ofSeconds(5), weightlifters.getQueryHandle().getTimeout());
+
+        // a new head resets the override back to the default
+        assertFalse(weightlifters.grab().runGrab().isEmpty());
+        assertEquals(Duration.ofMillis(1500), weightlifters.getQueryHandle().getTimeout());
+        assertFalse(weightlifters.getQueryHandle().cancel());
+    }
+
+    @Test
+    public void zaa_statementsRunningPastTheirTimeoutShouldThrowQueryTimeoutException() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        props.setProperty("queryTimeoutMillis", "1000");
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        long start = System.nanoTime();
+        assertThrows(QueryTimeoutException.class,
+                () -> weightlifters.query("select w.* from weightlifters w cross join pg_sleep(10) s"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertFalse(weightlifters.getQueryHandle().isRunning());
+
+        // the connection the statement timed out on keeps working
+        assertFalse(weightlifters.grab().runGrab().isEmpty());
+    }
+
+    @Test
+    public void zab_cancelShouldStopAStatementRunningOnAnotherThread() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        Future<List<Weightlifter>> sleeping = ForkJoinPool.commonPool().submit(
+                () -> weightlifters.query("select w.* from weightlifters w cross join pg_sleep(30) s"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (!weightlifters.getQueryHandle().isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Thread.sleep(200); // lets the statement reach the database before it's cancelled
+        assertTrue(weightlifters.getQueryHandle().cancel());
+
+        try {
+            sleeping.get(10, TimeUnit.SECONDS);
+            fail("the cancelled statement should have thrown");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof QueryCancelledException);
+        }
+
+        assertFalse(weightlifters.getQueryHandle().isRunning());
+        assertFalse(weightlifters.getQueryHandle().cancel());
+
+        // the connection the statement was cancelled on keeps working
+        assertFalse(weightlifters.grab().runGrab().isEmpty());
+    }
+
+    @Test
+    public void zb_runGrabColumnarShouldHoldTheSameValuesAsRunGrab() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+
+        ArrayList<Weightlifter> rows = weightlifters.grab("weight", "firstname").runGrab();
+        ColumnBatch onHeap = weightlifters.grab("weight", "firstname").runGrabColumnar();
+        ColumnBatch offHeap = weightlifters.grab("weight", "firstname").runGrabColumnar(true);
+
+        assertEquals(rows.size(), onHeap.size());
+        assertEquals(rows.size(), offHeap.size());
+        assertEquals(rows.stream().mapToDouble(Weightlifter::getWeight).sum(),
+                Arrays.stream(onHeap.getDoubles("weight")).sum(), 0.001);
+
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(onHeap.getString("firstname", i), offHeap.getString("firstname", i));
+            assertEquals(onHeap.getDouble("weight", i), offHeap.getDoubleBuffer("weight").get(i), 0);
+        }
+    }
+
+    @Test
+    public void zc_loadSnapshotShouldReadBackTheRowsWithoutTheDatabase() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        Path file = Files.createTempFile("weightlifters", ".snapshot");
+
+        try {
+            int written = weightlifters.snapshotTo(file);
+            Snapshot<Weightlifter> snapshot = weightlifters.loadSnapshot(file);
+
+            assertEquals(written, snapshot.size());
+            assertEquals(new HashSet<>(weightlifters.grab().runGrab()), new HashSet<>(snapshot));
+            assertTrue(snapshot.isCurrent());
+
+            // flip a byte in the middle of the rows, the checksum has to catch it
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(file, bytes);
+
+            try {
+                weightlifters.loadSnapshot(file);
+                fail("a corrupt snapshot should have been rejected");
+            } catch (InvalidSnapshotException expected) {
+                System.out.println(expected.getMessage());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void zd_exportToShouldStreamEveryRowIntoTheFile() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        Path file = Files.createTempFile("weightlifters", ".csv.gz");
+        AtomicLong reported = new AtomicLong();
+
+        try {
+            long exported = weightlifters.exportTo(file, ExportFormat.CSV, true, reported::set);
+
+            assertEquals(weightlifters.grab().runGrab().size(), exported);
+            assertEquals(Files.size(file), reported.get());
+
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                assertTrue(lines.readLine().startsWith("weightlifter_id,firstname"));
+                assertEquals(exported, lines.lines().count());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void ze_queryShouldMapNativeSqlLikeRunGrab() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        QueryMetrics.reset();
+
+        List<Weightlifter> heavy = weightlifters.query("with ranked as (select *, rank() over (order by weight desc) as r"
+                + " from weightlifters) select * from ranked where r <= ?", 3);
+        List<Weightlifter> grabbed = weightlifters.grab().orderBy("weight", false).limit(heavy.size()).runGrab();
+
+        assertEquals(new HashSet<>(grabbed), new HashSet<>(heavy));
+
+        try (Stream<Weightlifter> streamed = weightlifters.queryStream("select * from weightlifters where weight > ?", 0)) {
+            assertEquals(weightlifters.grab().where(GT, "weight", "0").runGrab().size(), streamed.count());
+        }
+
+        // native SQL might write, so it's never recorded (and explained) as a grab
+        assertEquals(2, QueryMetrics.getStats("weightlifters", OperationType.NATIVE).getCount());
+    }
+
+    @Test
+    public void zf_groupsAndSubqueriesShouldMatchFilteringInJava() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        CrudModel<Countries> countries = new CrudModel<>(Countries.class);
+        List<Weightlifter> all = weightlifters.grab().runGrab();
+
+        List<Weightlifter> grouped = weightlifters.grab()
+                .whereGroup(g -> g.where(EQUALS, "country_id", "1").or(EQUALS, "country_id", "2"))
+                .and(GT, "weight", "0")
+                .runGrab();
+        assertEquals(all.stream().filter(w -> (w.getCountryId() == 1 || w.getCountryId() == 2) && w.getWeight() > 0)
+                .count(), grouped.size());
+
+        List<Weightlifter> anded = weightlifters.grab()
+                .where(EQUALS, "country_id", "2")
+                .and(GT, "weight", "0")
+                .runGrab();
+        assertEquals(all.stream().filter(w -> w.getCountryId() == 2 && w.getWeight() > 0).count(), anded.size());
+
+        List<Weightlifter> inCountries = weightlifters.grab()
+                .where()
+                .in("country_id", countries.grab("country_id").where(LTE, "country_id", "2"))
+                .runGrab();
+        assertEquals(all.stream().filter(w -> w.getCountryId() <= 2).count(), inCountries.size());
+
+        List<Weightlifter> withCountry = weightlifters.grab()
+                .where()
+                .exists(countries.grab(), "country_id", "country_id")
+                .runGrab();
+        assertEquals(all.size(), withCountry.size());
+
+        assertThrows(InvalidInputException.class, () -> weightlifters.grab()
+                .where()
+                .in("country_id", countries.grab()));
+    }
+
+    @Test
+    public void zg_joinShouldMapBothEntitiesOffOfTheSameRow() throws Exception {
+        Properties props = new Properties();
+        props.load(new FileReader("src/main/resources/application.properties"));
+        ConnectionFactory.addCredentials(props);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        CrudModel<Countries> countries = new CrudModel<>(Countries.class);
+        List<Weightlifter> heavy = weightlifters.grab().where(GT, "weight", "0").runGrab();
+
+        List<Pair<Weightlifter, Countries>> joined = weightlifters.grab()
+                .where(GT, "weight", "0")
+                .join(countries.grab())
+                .runJoin();
+
+        assertEquals(heavy.size(), joined.size());
+
+        for (Pair<Weightlifter, Countries> row : joined) {
+            assertEquals(row.getLeft().getCountryId(), row.getRight().getId());
+        }
+
+        List<LifterCountry> projected = weightlifters.grab("firstname", "lastname")
+                .join(countries.grab("name"))
+                .runJoin(LifterCountry.class);
+
+        assertEquals(weightlifters.grab().runGrab().size(), projected.size());
+        assertTrue(projected.stream().allMatch(row -> row.getFirstName() != null && row.getName() != null));
+
+        List<Pair<Weightlifter, Countries>> unmatched = weightlifters.grab()
+                .leftJoin(countries.grab().where(EQUALS, "country_id", "-1"))
+                .runJoin();
+
+        assertTrue(unmatched.stream().allMatch(row -> row.getRight() == null));
+        assertThrows(InvalidInputException.class, () -> weightlifters.grab().join(weightlifters.grab()));
+    }
+
+    @Test
+    public void zh_chainsShouldRunUnchangedOnAnInProcessH2Database() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("url", "jdbc:h2:mem:aftermath;DB_CLOSE_DELAY=-1");
+        props.setProperty("username", "sa");
+        props.setProperty("password", "");
+        props.setProperty("currentSchema", "public");
+        ConnectionFactory.addCredentials(props);
+
+        assertTrue(ConnectionFactory.getInstance().getDialect() instanceof H2Dialect);
+        SchemaGenerator.createSchema(ConnectionFactory.getInstance().getConnection(), true, Countries.class,
+                Weightlifter.class);
+
+        CrudModel<Countries> countries = new CrudModel<>(Countries.class);
+        CrudModel<Weightlifter> weightlifters = new CrudModel<>(Weightlifter.class);
+        Countries country = new Countries();
+        country.setName("Ireland");
+        countries.save(country);
+
+        ArrayList<Weightlifter> lifters = new ArrayList<>();
+
+        for (String name : new String[] {"Siobhan", "O'Neil", "Aoife"}) {
+            Weightlifter lifter = new Weightlifter();
+            lifter.setFirstName(name);
+            lifter.setLastName("Murphy");
+            lifter.setWeight(70);
+            lifter.setHeight(170);
+            lifter.setCountryId(country.getId());
+            lifters.add(lifter);
+        }
+
+        assertEquals(3, weightlifters.saveAll(lifters));
+        assertTrue(lifters.stream().allMatch(lifter -> lifter.getId() > 0));
+
+        weightlifters.grab().where(EQUALS, "firstname", "O'Neil");
+        assertTrue(weightlifters.getPreparedStatement().endsWith("where firstname = 'O''Neil'"));
+        assertEquals(1, weightlifters.runGrab().size());
+
+        lifters.forEach(lifter -> lifter.setWeight(80));
+        UpsertResult result = weightlifters.upsertAll(lifters);
+        assertEquals(3, result.getInserted() + result.getUpdated());
+        assertEquals(3, weightlifters.grab().where(EQUALS, "weight", "80").runGrab().size());
+
+        assertEquals(3, weightlifters.grab().join(countries.grab()).runJoin().size());
+        assertEquals(1, weightlifters.remove().where(EQUALS, "firstname", "Aoife").runRemove());
+        assertEquals(2L, weightlifters.grab().runAggregate(Aggregate.COUNT, null));
+    }
+
+    @Test
+    public void zi_runGrabColumnarShouldAppendTheRowsOfEveryShard() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("url", "jdbc:h2:mem:aftermath;DB_CLOSE_DELAY=-1");
+        props.setProperty("username", "sa");
+        props.setProperty("password", "");
+        props.setProperty("currentSchema", "public");
+        props.setProperty("shards", "shard0,shard1");
+
+        for (String shard : new String[] {"shard0", "shard1"}) {
+            props.setProperty(shard + ".url", "jdbc:h2:mem:" + shard + ";DB_CLOSE_DELAY=-1");
+
+            try (Connection conn = DriverManager.getConnection(props.getProperty(shard + ".url"), "sa", "")) {
+                SchemaGenerator.createSchema(conn, true, Attempt.class);
+            }
+        }
+
+        // lifters starting with an A live on the first shard, the rest on the second
+        ConnectionFactory.setShardResolver((key, shards) -> key.toString().startsWith("A") ? 0 : 1);
+        ConnectionFactory.addCredentials(props);
+
+        try {
+            CrudModel<Attempt> attempts = new CrudModel<>(Attempt.class);
+            String[][] added = {{"Bea", "110"}, {"Ada", "100"}, {"Bo", "130"}, {"Anna", "120"}, {"Ada", "105"}};
+            attempts.add("lifter", "kilos");
+
+            for (String[] values : added) {
+                attempts.addValues(values);
+            }
+
+            List<Object> keys = attempts.runAddReturningKeys();
+            assertEquals(added.length, keys.size());
+
+            // every key belongs to the row at its index, even though the rows were split over the shards
+            for (int i = 0; i < added.length; i++) {
+                int key = ((Number) keys.get(i)).intValue();
+                Attempt attempt = attempts.grab().where(EQUALS, "lifter", added[i][0]).runGrab().stream()
+                        .filter(row -> row.getId() == key).findFirst().orElseThrow(AssertionError::new);
+                assertEquals(Double.parseDouble(added[i][1]), attempt.getKilos(), 0);
+            }
+
+            ColumnBatch onHeap = attempts.grab("lifter", "kilos").runGrabColumnar();
+            ColumnBatch offHeap = attempts.grab("lifter", "kilos").runGrabColumnar(true);
+
+            assertEquals(5, onHeap.size());
+            assertEquals(5, offHeap.size());
+            assertEquals(5, onHeap.getDoubles("kilos").length);
+            assertEquals(5, onHeap.getCodes("lifter").length);
+            assertEquals(new HashSet<>(Arrays.asList("Ada", "Anna", "Bea", "Bo")),
+                    new HashSet<>(onHeap.getDictionary("lifter")));
+            assertEquals(565, Arrays.stream(onHeap.getDoubles("kilos")).sum(), 0.001);
+
+            for (int i = 0; i < onHeap.size(); i++) {
+                assertEquals(onHeap.getString("lifter", i), offHeap.getString("lifter", i));
+                assertEquals(onHeap.getDouble("kilos", i), offHeap.getDoubleBuffer("kilos").get(i), 0);
+            }
+
+            // these only read a single database, so they'd miss the rows on the shards
+            assertThrows(BadMethodChainCallException.class, () -> attempts.grab().runGrabParallel(2));
+            assertThrows(BadMethodChainCallException.class, () -> attempts.grab().runGrabPublisher());
+            assertThrows(InvalidInputException.class, () -> attempts.query("select * from attempts"));
+        } finally {
+            ConnectionFactory.setShardResolver(null);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package unitTests;
+
+import com.revature.metrics.LatencyHistogram;
+import com.revature.metrics.OperationType;
+import com.revature.metrics.QueryEvent;
+import com.revature.metrics.QueryListener;
+import com.revature.metrics.QueryMetrics;
+import com.revature.metrics.QueryStats;
+import com.revature.metrics.SlowQuery;
+import com.revature.metrics.SlowQueryLog;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class QueryMetricsTest {
+    private QueryListener listener;
+
+    @After
+    public void tearDown() {
+        if (listener != null) {
+            QueryMetrics.removeListener(listener);
+        }
+
+        QueryMetrics.reset();
+    }
+
+    @Test
+    public void latencyHistogramShouldReportPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.getPercentile(50), 500_000 * 0.125);
+        assertEquals(990_000, histogram.getPercentile(99), 990_000 * 0.125);
+        assertEquals(1_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void latencyHistogramShouldReportZeroWhenEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void queryMetricsShouldTagStatsByTableAndOperation() {
+        ArrayList<QueryEvent> received = new ArrayList<>();
+        QueryMetrics.setJmxEnabled(false);
+        listener = received::add;
+        QueryMetrics.addListener(listener);
+
+        QueryMetrics.record(new QueryEvent("metrics_test", OperationType.GRAB, "select * from metrics_test",
+                10, 200, 30, 5, null));
+        QueryMetrics.record(new QueryEvent("metrics_test", OperationType.GRAB, "select * from metrics_test",
+                10, 400, 30, 0, new RuntimeException("boom")));
+
+        QueryStats stats = QueryMetrics.getStats("metrics_test", OperationType.GRAB);
+
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getErrors());
+        assertEquals(5, stats.getRows());
+        assertNull(QueryMetrics.getStats("metrics_test", OperationType.REMOVE));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void slowQueryLogShouldNormalizeLiteralsIntoBindValues() {
+        ArrayList<String> bindValues = new ArrayList<>();
+        String normalized = SlowQueryLog.normalize(
+                "select * from weightlifters  where firstname = 'O''Neil' and country_id = 2", bindValues);
+
+        assertEquals("select * from weightlifters where firstname = ? and country_id = ?", normalized);
+        assertEquals(Arrays.asList("'O''Neil'", "2"), bindValues);
+    }
+
+    @Test
+    public void slowQueryLogShouldKeepOnlyTheMostRecentSlowQueries() {
+        SlowQueryLog log = new SlowQueryLog(1, TimeUnit.MILLISECONDS, 2);
+        log.setMaskBindValues(true);
+
+        log.onQuery(new QueryEvent("t", OperationType.CHANGE, "update t set a = 'x'", 0, 5_000_000, 0, 1, null));
+        log.onQuery(new QueryEvent("t", OperationType.CHANGE, "update t set a = 'y'", 0, 10, 0, 1, null));
+        log.onQuery(new QueryEvent("t", OperationType.REMOVE, "delete from t where a = 1", 0, 5_000_000, 0, 1, null));
+        log.onQuery(new QueryEvent("t", OperationType.ADD, "insert into t (a) values (3)", 0, 5_000_000, 0, 1, null));
+
+        List<SlowQuery> recent = log.getRecent();
+
+        assertEquals(2, recent.size());
+        assertEquals(OperationType.ADD, recent.get(0).getOperation());
+        assertEquals(OperationType.REMOVE, recent.get(1).getOperation());
+        assertEquals(Arrays.asList("***"), recent.get(1).getBindValues());
+    }
+
+    @Test
+    public void slowQueryLogShouldStartOverWhenCleared() {
+        SlowQueryLog log = new SlowQueryLog(1, TimeUnit.MILLISECONDS, 2);
+
+        log.onQuery(new QueryEvent("t", OperationType.REMOVE, "delete from t where a = 1", 0, 5_000_000, 0, 1, null));
+        log.onQuery(new QueryEvent("t", OperationType.REMOVE, "delete from t where a = 2", 0, 5_000_000, 0, 1, null));
+        log.clear();
+        log.onQuery(new QueryEvent("t", OperationType.ADD, "insert into t (a) values (3)", 0, 5_000_000, 0, 1, null));
+
+        List<SlowQuery> recent = log.getRecent();
+
+        assertEquals(1, recent.size());
+        assertEquals(OperationType.ADD, recent.get(0).getOperation());
+        assertTrue(recent.get(0).getOrigin().startsWith(QueryMetricsTest.class.getName()));
+    }
+}
@@ -0,0 +1,63 @@
+package unitTests;
+
+import com.revature.utils.ConnectionFactory;
+import com.revature.utils.H2Dialect;
+import com.revature.utils.SchemaGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import unitTests.mocks.Countries;
+import unitTests.mocks.Weightlifter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SchemaGeneratorTest {
+    @Before
+    public void setUp() {
+        ConnectionFactory.setDialect(new H2Dialect());
+    }
+
+    @After
+    public void tearDown() {
+        ConnectionFactory.setDialect(null);
+    }
+
+    @Test
+    public void schemaGeneratorShouldCreateTablesFromTheAnnotations() {
+        assertEquals("create table if not exists countries (\n"
+                + "    country_id integer generated by default as identity primary key,\n"
+                + "    name varchar(255)\n"
+                + ")", SchemaGenerator.createTable(Countries.class));
+
+        String weightlifters = SchemaGenerator.createTable(Weightlifter.class);
+
+        assertTrue(weightlifters, weightlifters.contains("    weight double precision not null,\n"));
+        assertTrue(weightlifters, weightlifters.contains("    foreign key (country_id) references "));
+    }
+
+    @Test
+    public void schemaGeneratorShouldDiffTheEntitiesAgainstTheLiveColumnTypes() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:");
+             Statement st = conn.createStatement()) {
+            st.execute("create table countries (country_id integer primary key, name varchar(40), founded date)");
+            st.execute("create table weightlifters (weightlifter_id integer primary key, firstname varchar(40), "
+                    + "weight varchar(10), height double precision, country_id integer)");
+
+            String script = SchemaGenerator.migrationScript(conn, Countries.class, Weightlifter.class);
+            List<String> statements = Arrays.asList(script.split("\n"));
+
+            assertTrue(script, statements.contains("-- countries.founded is not mapped by Countries"));
+            assertTrue(script, statements.contains("alter table weightlifters add column lastname varchar(255);"));
+            assertTrue(script, statements.contains(
+                    "-- weightlifters.weight is CHARACTER VARYING but is mapped to double"));
+            assertFalse(script, script.contains("height"));
+            assertFalse(script, script.contains("create table"));
+        }
+    }
+}
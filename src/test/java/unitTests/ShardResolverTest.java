@@ -0,0 +1,52 @@
+package unitTests;
+
+import com.revature.exceptions.InvalidInputException;
+import com.revature.utils.HashShardResolver;
+import com.revature.utils.RangeShardResolver;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ShardResolverTest {
+    @Test
+    public void hashShardResolverShouldAlwaysPickTheSameShardForAKey() {
+        HashShardResolver resolver = new HashShardResolver();
+
+        assertEquals(resolver.shardOf(42L, 4), resolver.shardOf(42L, 4));
+        assertEquals(resolver.shardOf("Klokov", 4), resolver.shardOf("Klokov", 4));
+    }
+
+    @Test
+    public void hashShardResolverShouldSpreadSequentialKeysOverEveryShard() {
+        HashShardResolver resolver = new HashShardResolver();
+        int[] counts = new int[4];
+
+        for (long key = 0; key < 4000; key++) {
+            counts[resolver.shardOf(key, 4)]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200);
+        }
+    }
+
+    @Test
+    public void rangeShardResolverShouldTreatBoundsAsExclusive() {
+        RangeShardResolver resolver = new RangeShardResolver(1000, 2000);
+
+        assertEquals(0, resolver.shardOf(-5L, 3));
+        assertEquals(0, resolver.shardOf(999L, 3));
+        assertEquals(1, resolver.shardOf(1000L, 3));
+        assertEquals(2, resolver.shardOf(2000L, 3));
+        assertEquals(2, resolver.shardOf(Long.MAX_VALUE, 3));
+    }
+
+    @Test
+    public void rangeShardResolverShouldRejectBoundsThatDontMatchTheShards() {
+        RangeShardResolver resolver = new RangeShardResolver(1000);
+
+        assertThrows(InvalidInputException.class, () -> resolver.shardOf(5L, 3));
+        assertThrows(InvalidInputException.class, () -> resolver.shardOf("Klokov", 2));
+        assertThrows(InvalidInputException.class, () -> new RangeShardResolver(2000, 1000));
+    }
+}
@@ -0,0 +1,117 @@
+package unitTests;
+
+import com.revature.utils.TypeRegistry;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class TypeRegistryTest {
+    @Test
+    public void typeRegistryShouldMapInformationSchemaTypesToJdbcTypes() {
+        assertEquals(Types.INTEGER, TypeRegistry.sqlTypeOf("integer"));
+        assertEquals(Types.DOUBLE, TypeRegistry.sqlTypeOf("double precision"));
+        assertEquals(Types.VARCHAR, TypeRegistry.sqlTypeOf("character varying"));
+        assertEquals(Types.OTHER, TypeRegistry.sqlTypeOf("jsonb"));
+        assertEquals(Types.BOOLEAN, TypeRegistry.sqlTypeOf(Types.BIT));
+        assertEquals(Types.VARCHAR, TypeRegistry.sqlTypeOf(Types.LONGVARCHAR));
+        assertEquals(Types.OTHER, TypeRegistry.sqlTypeOf(Types.ARRAY));
+    }
+
+    @Test
+    public void typeRegistryShouldRejectFieldsThatCantHoldTheColumn() {
+        assertTrue(TypeRegistry.isCompatible(int.class, Types.INTEGER));
+        assertTrue(TypeRegistry.isCompatible(double.class, Types.NUMERIC));
+        assertTrue(TypeRegistry.isCompatible(String.class, Types.DATE));
+        assertFalse(TypeRegistry.isCompatible(int.class, Types.VARCHAR));
+        assertFalse(TypeRegistry.isCompatible(BigDecimal.class, Types.BOOLEAN));
+    }
+
+    @Test
+    public void typeRegistryShouldFlagNarrowingMappings() {
+        assertTrue(TypeRegistry.isLossy(int.class, Types.BIGINT));
+        assertTrue(TypeRegistry.isLossy(int.class, Types.DOUBLE));
+        assertFalse(TypeRegistry.isLossy(long.class, Types.BIGINT));
+    }
+
+    @Test
+    public void typeRegistryShouldOnlyFlagNarrowingForCompatibleMappings() {
+        Class<?>[] javaTypes = {int.class, Integer.class, long.class, double.class, float.class, BigDecimal.class,
+                String.class, boolean.class};
+        int[] sqlTypes = {Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.REAL, Types.DOUBLE, Types.NUMERIC,
+                Types.VARCHAR, Types.BOOLEAN};
+
+        for (Class<?> javaType : javaTypes) {
+            for (int sqlType : sqlTypes) {
+                if (TypeRegistry.isLossy(javaType, sqlType)) {
+                    assertTrue(javaType + " on " + sqlType, TypeRegistry.isCompatible(javaType, sqlType));
+                }
+            }
+        }
+
+        // narrower fields are accepted with a warning
+        for (int sqlType : new int[] {Types.BIGINT, Types.REAL, Types.DOUBLE, Types.NUMERIC}) {
+            assertTrue(TypeRegistry.isCompatible(int.class, sqlType));
+            assertTrue(TypeRegistry.isLossy(int.class, sqlType));
+        }
+
+        // fractions can't be written into whole number columns
+        assertFalse(TypeRegistry.isCompatible(double.class, Types.INTEGER));
+        assertFalse(TypeRegistry.isCompatible(BigDecimal.class, Types.BIGINT));
+        assertFalse(TypeRegistry.isLossy(double.class, Types.INTEGER));
+
+        assertFalse(TypeRegistry.isLossy(long.class, Types.INTEGER));
+        assertFalse(TypeRegistry.isLossy(BigDecimal.class, Types.NUMERIC));
+        assertFalse(TypeRegistry.isLossy(String.class, Types.NUMERIC));
+
+        // char fields are mapped through strings
+        assertTrue(TypeRegistry.isCompatible(char.class, Types.CHAR));
+        assertTrue(TypeRegistry.isCompatible(Character.class, Types.VARCHAR));
+        assertFalse(TypeRegistry.isLossy(char.class, Types.CHAR));
+        assertTrue(TypeRegistry.isLossy(char.class, Types.VARCHAR));
+        assertFalse(TypeRegistry.isCompatible(char.class, Types.INTEGER));
+    }
+
+    @Test
+    public void typeRegistryShouldBindEveryFieldTypeWhileTheColumnTypesArentKnown() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:")) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("create table meets (meet_id bigint, held date, indoor boolean, grade char(1), "
+                        + "attendance integer, notes varchar(40))");
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("insert into meets values (?, ?, ?, ?, ?, ?)")) {
+                TypeRegistry.bind(ps, 1, long.class, "9000000000", null);
+                TypeRegistry.bind(ps, 2, LocalDate.class, "2020-02-29", null);
+                TypeRegistry.bind(ps, 3, Boolean.class, "true", null);
+                TypeRegistry.bind(ps, 4, char.class, "A", null);
+                TypeRegistry.bind(ps, 5, Integer.class, null, null);
+                TypeRegistry.bind(ps, 6, String.class, null, null);
+                assertEquals(1, ps.executeUpdate());
+            }
+
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("select * from meets")) {
+                assertTrue(rs.next());
+                assertEquals(9000000000L, rs.getLong(1));
+                assertEquals(Date.valueOf("2020-02-29"), rs.getDate(2));
+                assertTrue(rs.getBoolean(3));
+                assertEquals("A", rs.getString(4));
+                assertNull(rs.getObject(5));
+                assertNull(rs.getObject(6));
+            }
+        }
+
+        assertEquals(9000000000L, TypeRegistry.parse(long.class, "9000000000", null));
+        assertEquals(true, TypeRegistry.parse(boolean.class, "true", null));
+    }
+}
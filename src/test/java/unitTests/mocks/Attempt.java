@@ -0,0 +1,43 @@
+package unitTests.mocks;
+
+import com.revature.annotations.Attr;
+import com.revature.annotations.PK;
+import com.revature.annotations.ShardKey;
+import com.revature.annotations.Table;
+
+@Table(tableName = "attempts")
+public class Attempt {
+    @PK(columnName = "attempt_id")
+    private int id;
+
+    @ShardKey
+    @Attr(columnName = "lifter")
+    private String lifter;
+
+    @Attr(columnName = "kilos")
+    private double kilos;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getLifter() {
+        return lifter;
+    }
+
+    public void setLifter(String lifter) {
+        this.lifter = lifter;
+    }
+
+    public double getKilos() {
+        return kilos;
+    }
+
+    public void setKilos(double kilos) {
+        this.kilos = kilos;
+    }
+}
@@ -0,0 +1,43 @@
+package unitTests.mocks;
+
+import com.revature.annotations.Attr;
+import com.revature.annotations.PK;
+import com.revature.annotations.Table;
+import com.revature.annotations.Version;
+
+@Table(tableName = "lifts")
+public class Lift {
+    @PK(columnName = "lift_id")
+    private int id;
+
+    @Attr(columnName = "kilos")
+    private double kilos;
+
+    @Version
+    @Attr(columnName = "version")
+    private long version;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public double getKilos() {
+        return kilos;
+    }
+
+    public void setKilos(double kilos) {
+        this.kilos = kilos;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,34 @@
+package unitTests.mocks;
+
+/**
+ * Projection of a join of weightlifters with countries
+ */
+public class LifterCountry {
+    private String firstName;
+    private String lastName;
+    private String name;
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}